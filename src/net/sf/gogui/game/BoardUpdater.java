@@ -10,15 +10,36 @@ import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.IntPointList;
 import net.sf.gogui.go.Move;
-import net.sf.gogui.go.PointList;
 
-/** Updates a go.Board to a node in a GameTree. */
+/** Updates a go.Board to a node in a GameTree.
+    Remembers the path of nodes of the last update. If the next update
+    uses the same board and tree and the board was not changed in between,
+    only the moves after the last common node of both paths are taken back
+    and the moves of the new path are played. The position is rebuilt from
+    the root, if a node with setup stones lies on the part of the old path
+    that needs to be taken back or a node on the common path was changed.
+    If a CheckpointCache is used, the update can also start from a copy of
+    the board at the nearest cached ancestor of the new node, if this needs
+    fewer moves to be played than the other options. */
 public class BoardUpdater
 {
+    /** Constructor without checkpoint cache. */
     public BoardUpdater()
     {
+        this(null);
+    }
+
+    /** Constructor.
+        @param cache The checkpoint cache to use and to add new checkpoints
+        to, or null for no checkpoints. The cache is cleared, if the tree
+        used in update() changes. */
+    public BoardUpdater(CheckpointCache cache)
+    {
+        m_cache = cache;
         m_nodes = new ArrayList<ConstNode>(400);
+        m_path = new ArrayList<PathEntry>(400);
     }
 
     public void update(ConstGameTree tree, ConstNode currentNode, Board board)
@@ -27,11 +48,54 @@ public class BoardUpdater
         int size = tree.getBoardSize();
         int handicap = info.getHandicap();
         NodeUtil.getPathToRoot(currentNode, m_nodes);
-        board.init(size);
+        int nuNodes = m_nodes.size();
+        int start = 0;
+        // Cost in number of nodes to execute or moves to take back
+        int cost = nuNodes;
+        if (tree == m_tree && board == m_board && handicap == m_handicap
+            && size == board.getSize()
+            && board.getNumberMoves() == m_numberMoves
+            && board.getHashCode() == m_hashCode)
+        {
+            start = getStartIncremental();
+            if (start > 0)
+                cost = board.getNumberMoves()
+                    - m_path.get(start - 1).m_numberMoves + nuNodes - start;
+        }
+        CheckpointCache.Checkpoint checkpoint = null;
+        if (m_cache != null)
+        {
+            if (tree != m_tree)
+                m_cache.clear();
+            checkpoint = findCheckpoint(size, handicap, cost);
+        }
+        if (checkpoint != null)
+        {
+            board.copyFrom(checkpoint.m_board);
+            m_pathLength = 0;
+            for (PathEntry entry : checkpoint.m_path)
+                getNewPathEntry().copyFrom(entry);
+            start = m_pathLength;
+        }
+        else if (start == 0)
+        {
+            board.init(size);
+            m_pathLength = 0;
+        }
+        else
+        {
+            PathEntry entry = m_path.get(start - 1);
+            board.undo(board.getNumberMoves() - entry.m_numberMoves);
+            if (board.getToMove() != entry.m_toMove)
+                board.setToMove(entry.m_toMove);
+            m_pathLength = start;
+        }
         boolean isFirstPlacement = true;
-        for (int i = m_nodes.size() - 1; i >= 0; --i)
+        if (m_pathLength > 0)
+            isFirstPlacement = m_path.get(m_pathLength - 1).m_isFirstPlacement;
+        for (int i = nuNodes - 1 - start; i >= 0; --i)
         {
-            ConstNode node = (ConstNode)m_nodes.get(i);
+            ConstNode node = m_nodes.get(i);
             GoColor player = node.getPlayer();
             if (node.hasSetup())
             {
@@ -43,8 +107,10 @@ public class BoardUpdater
                     board.setupHandicap(setupBlack);
                 else
                 {
-                    PointList black = new PointList();
-                    PointList white = new PointList();
+                    IntPointList black = m_black;
+                    IntPointList white = m_white;
+                    black.clear();
+                    white.clear();
                     for (GoPoint p : board)
                     {
                         if (board.getColor(p) == BLACK)
@@ -52,24 +118,27 @@ public class BoardUpdater
                         else if (board.getColor(p) == WHITE)
                             white.add(p);
                     }
-                    for (GoPoint p : setupBlack)
+                    // Don't use an iterator for efficiency
+                    for (int j = 0; j < setupBlack.size(); ++j)
                     {
+                        GoPoint p = setupBlack.get(j);
                         white.remove(p);
-                        if (! black.contains(p))
-                            black.add(p);
+                        black.add(p);
                     }
-                    for (GoPoint p : setupWhite)
+                    for (int j = 0; j < setupWhite.size(); ++j)
                     {
+                        GoPoint p = setupWhite.get(j);
                         black.remove(p);
-                        if (! white.contains(p))
-                            white.add(p);
+                        white.add(p);
                     }
-                    for (GoPoint p : setupEmpty)
+                    for (int j = 0; j < setupEmpty.size(); ++j)
                     {
+                        GoPoint p = setupEmpty.get(j);
                         black.remove(p);
                         white.remove(p);
                     }
-                    board.setup(black, white, player);
+                    board.setup(black.toPointList(), white.toPointList(),
+                                player);
                 }
                 isFirstPlacement = false;
             }
@@ -81,10 +150,211 @@ public class BoardUpdater
                 board.play(move);
                 isFirstPlacement = false;
             }
+            addPathEntry(node, board, isFirstPlacement);
+            if (m_cache != null
+                && m_pathLength % m_cache.getInterval() == 0
+                && ! m_cache.contains(node))
+                addCheckpoint(node, board, handicap);
+        }
+        m_tree = tree;
+        m_board = board;
+        m_handicap = handicap;
+        m_numberMoves = board.getNumberMoves();
+        m_hashCode = board.getHashCode();
+    }
+
+    /** State of the board after a node of the last update. */
+    static final class PathEntry
+    {
+        public void copyFrom(PathEntry entry)
+        {
+            m_node = entry.m_node;
+            m_move = entry.m_move;
+            m_player = entry.m_player;
+            m_hasSetup = entry.m_hasSetup;
+            m_setupBlack = entry.m_setupBlack;
+            m_setupWhite = entry.m_setupWhite;
+            m_setupEmpty = entry.m_setupEmpty;
+            m_isFirstPlacement = entry.m_isFirstPlacement;
+            m_numberMoves = entry.m_numberMoves;
+            m_toMove = entry.m_toMove;
         }
+
+        public ConstNode m_node;
+
+        /** Move of the node at the time of the update.
+            Used to detect changes of the node. */
+        public Move m_move;
+
+        /** Player of the node at the time of the update. */
+        public GoColor m_player;
+
+        public boolean m_hasSetup;
+
+        /** Setup stones of the node at the time of the update.
+            Compared by identity, because Node replaces the lists on
+            changes. */
+        public ConstPointList m_setupBlack;
+
+        public ConstPointList m_setupWhite;
+
+        public ConstPointList m_setupEmpty;
+
+        /** No setup stones or moves were placed up to this node. */
+        public boolean m_isFirstPlacement;
+
+        /** Number of moves on the board after the node. */
+        public int m_numberMoves;
+
+        /** Color to move after the node. */
+        public GoColor m_toMove;
     }
 
+    /** Minimum cost of starting from a checkpoint.
+        Accounts for copying the board compared to playing moves. */
+    private static final int RESTORE_COST = 10;
+
+    private final CheckpointCache m_cache;
+
     /** Local variable used in update.
         Member variable for avoiding frequent new memory allocations. */
     private final ArrayList<ConstNode> m_nodes;
+
+    /** Local variable used in update. */
+    private final IntPointList m_black = new IntPointList();
+
+    /** Local variable used in update. */
+    private final IntPointList m_white = new IntPointList();
+
+    /** Path of the last update starting with the root.
+        Contains m_pathLength valid entries, the entries above are kept for
+        reuse. */
+    private final ArrayList<PathEntry> m_path;
+
+    private int m_pathLength;
+
+    private ConstGameTree m_tree;
+
+    private Board m_board;
+
+    private int m_handicap;
+
+    /** Number of moves on the board after the last update. */
+    private int m_numberMoves;
+
+    /** Hash code of the board after the last update.
+        Used to detect changes of the board between updates. */
+    private long m_hashCode;
+
+    private void addCheckpoint(ConstNode node, Board board, int handicap)
+    {
+        Board copy = new Board(board.getSize());
+        copy.copyFrom(board);
+        PathEntry[] path = new PathEntry[m_pathLength];
+        for (int i = 0; i < m_pathLength; ++i)
+        {
+            path[i] = new PathEntry();
+            path[i].copyFrom(m_path.get(i));
+        }
+        m_cache.put(node, new CheckpointCache.Checkpoint(copy, handicap,
+                                                         path));
+    }
+
+    private void addPathEntry(ConstNode node, Board board,
+                              boolean isFirstPlacement)
+    {
+        PathEntry entry = getNewPathEntry();
+        entry.m_node = node;
+        entry.m_move = node.getMove();
+        entry.m_player = node.getPlayer();
+        entry.m_hasSetup = node.hasSetup();
+        entry.m_setupBlack = node.getSetup(BLACK);
+        entry.m_setupWhite = node.getSetup(WHITE);
+        entry.m_setupEmpty = node.getSetup(EMPTY);
+        entry.m_isFirstPlacement = isFirstPlacement;
+        entry.m_numberMoves = board.getNumberMoves();
+        entry.m_toMove = board.getToMove();
+    }
+
+    /** Find the checkpoint of the nearest ancestor of the new node.
+        Invalid checkpoints found during the search are removed from the
+        cache.
+        @param cost The cost of the update without checkpoint. Only
+        checkpoints with a lower cost are searched for.
+        @return The checkpoint or null, if no suitable checkpoint exists. */
+    private CheckpointCache.Checkpoint findCheckpoint(int size, int handicap,
+                                                      int cost)
+    {
+        int nuNodes = m_nodes.size();
+        for (int i = 0; i < nuNodes && i + RESTORE_COST < cost; ++i)
+        {
+            ConstNode node = m_nodes.get(i);
+            CheckpointCache.Checkpoint checkpoint = m_cache.get(node);
+            if (checkpoint == null)
+                continue;
+            if (checkpoint.m_board.getSize() == size
+                && checkpoint.m_handicap == handicap
+                && checkpoint.m_path.length == nuNodes - i
+                && isValid(checkpoint.m_path))
+                return checkpoint;
+            m_cache.remove(node);
+        }
+        return null;
+    }
+
+    /** Get the next entry of m_path and increment m_pathLength.
+        Reuses existing entries. */
+    private PathEntry getNewPathEntry()
+    {
+        PathEntry entry;
+        if (m_pathLength < m_path.size())
+            entry = m_path.get(m_pathLength);
+        else
+        {
+            entry = new PathEntry();
+            m_path.add(entry);
+        }
+        ++m_pathLength;
+        return entry;
+    }
+
+    /** Get the number of nodes of the new path that can be kept from the
+        last update.
+        @return The length of the unchanged common path, or zero, if the
+        board needs to be rebuilt from the root. */
+    private int getStartIncremental()
+    {
+        int nuNodes = m_nodes.size();
+        int start = 0;
+        while (start < nuNodes && start < m_pathLength
+               && isUnchanged(m_path.get(start), start))
+            ++start;
+        // Setup nodes cannot be taken back with Board.undo()
+        for (int i = start; i < m_pathLength; ++i)
+            if (m_path.get(i).m_hasSetup)
+                return 0;
+        return start;
+    }
+
+    /** Check that a path entry matches the node at a position of the new
+        path. */
+    private boolean isUnchanged(PathEntry entry, int position)
+    {
+        ConstNode node = m_nodes.get(m_nodes.size() - 1 - position);
+        return (entry.m_node == node && entry.m_move == node.getMove()
+                && entry.m_player == node.getPlayer()
+                && entry.m_setupBlack == node.getSetup(BLACK)
+                && entry.m_setupWhite == node.getSetup(WHITE)
+                && entry.m_setupEmpty == node.getSetup(EMPTY));
+    }
+
+    /** Check that all entries of the path of a checkpoint match the new
+        path. */
+    private boolean isValid(PathEntry[] path)
+    {
+        for (int i = 0; i < path.length; ++i)
+            if (! isUnchanged(path[i], i))
+                return false;
+        return true;
+    }
 }
@@ -0,0 +1,113 @@
+// CheckpointCache.java
+
+package net.sf.gogui.game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.sf.gogui.go.Board;
+
+/** Cache of board positions at nodes of a game tree.
+    Used by BoardUpdater to start an update from the nearest cached
+    ancestor of the target node instead of from the root. The checkpoints
+    are stored at regular intervals along the paths of the updates. The
+    number of checkpoints is bounded; if the cache is full, the least
+    recently used checkpoint is removed.
+    This class is not thread-safe. */
+public final class CheckpointCache
+{
+    /** Default number of nodes between checkpoints along a path. */
+    public static final int DEFAULT_INTERVAL = 50;
+
+    /** Constructor using the default interval.
+        @param capacity The maximum number of checkpoints. */
+    public CheckpointCache(int capacity)
+    {
+        this(capacity, DEFAULT_INTERVAL);
+    }
+
+    /** Constructor.
+        @param capacity The maximum number of checkpoints.
+        @param interval The number of nodes between checkpoints along a
+        path. */
+    public CheckpointCache(final int capacity, int interval)
+    {
+        assert capacity > 0;
+        assert interval > 0;
+        m_interval = interval;
+        m_map = new LinkedHashMap<ConstNode,Checkpoint>(16, 0.75f, true)
+            {
+                protected boolean removeEldestEntry(Map.Entry<ConstNode,
+                                                    Checkpoint> eldest)
+                {
+                    return size() > capacity;
+                }
+            };
+    }
+
+    /** Remove all checkpoints. */
+    public void clear()
+    {
+        m_map.clear();
+    }
+
+    /** Get the number of nodes between checkpoints along a path. */
+    public int getInterval()
+    {
+        return m_interval;
+    }
+
+    /** Get the number of stored checkpoints. */
+    public int size()
+    {
+        return m_map.size();
+    }
+
+    /** Board position after a node and the path used to create it. */
+    static final class Checkpoint
+    {
+        public Checkpoint(Board board, int handicap,
+                          BoardUpdater.PathEntry[] path)
+        {
+            m_board = board;
+            m_handicap = handicap;
+            m_path = path;
+        }
+
+        /** Private copy of the board after the node. */
+        public final Board m_board;
+
+        /** Handicap of the game info used for the update. */
+        public final int m_handicap;
+
+        /** Path from the root to the node at the time of the checkpoint.
+            Used to detect changes of nodes on the path. */
+        public final BoardUpdater.PathEntry[] m_path;
+    }
+
+    private final int m_interval;
+
+    private final LinkedHashMap<ConstNode,Checkpoint> m_map;
+
+    /** Get the checkpoint of a node.
+        Marks the checkpoint as recently used.
+        @return The checkpoint or null, if the node has no checkpoint. */
+    Checkpoint get(ConstNode node)
+    {
+        return m_map.get(node);
+    }
+
+    boolean contains(ConstNode node)
+    {
+        return m_map.containsKey(node);
+    }
+
+    void put(ConstNode node, Checkpoint checkpoint)
+    {
+        m_map.put(node, checkpoint);
+    }
+
+    void remove(ConstNode node)
+    {
+        m_map.remove(node);
+    }
+}
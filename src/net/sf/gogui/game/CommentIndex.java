@@ -0,0 +1,357 @@
+// CommentIndex.java
+
+package net.sf.gogui.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/** Inverted index of the words in the comments of a game tree.
+    Speeds up NodeUtil.findInComments() for large trees by checking the
+    pattern only for nodes that contain all words of the pattern, if the
+    pattern is a literal string. The comments are collected in the
+    constructor and split into words in a background thread; the index is
+    used after the thread has finished.
+    Comments of Node objects changed after the construction and comments
+    of new nodes are detected during the search and always checked with
+    the pattern, such that the result is the same as without index.
+    The words of the pattern are looked up in a sorted array of the
+    suffixes of all words, so that also parts of words are found without
+    scanning the vocabulary. */
+public final class CommentIndex
+{
+    /** Start building the index for a tree.
+        Must be called in the thread that modifies the tree. Takes time
+        linear in the number of nodes, but does not decode the comments.
+        @param root The root node of the tree. */
+    public CommentIndex(ConstNode root)
+    {
+        m_root = root;
+        final ArrayList<ConstNode> nodes = new ArrayList<ConstNode>();
+        final ArrayList<Object> comments = new ArrayList<Object>();
+        ConstNode node = root;
+        while (node != null)
+        {
+            if (node.hasComment())
+            {
+                Object comment = getCommentData(node);
+                if (comment == null)
+                    comment = node.getComment();
+                nodes.add(node);
+                comments.add(comment);
+                m_indexed.put(node, getCommentData(node));
+            }
+            node = NodeUtil.nextNode(node);
+        }
+        Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    buildIndex(nodes, comments);
+                }
+            });
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /** Stop building the index and release the nodes.
+        Should be called, if the index is no longer used, for example if
+        the tree is replaced. Must be called in the thread that created the
+        index. */
+    public void close()
+    {
+        m_isClosed = true;
+        m_indexed.clear();
+        m_index = null;
+    }
+
+    /** Find next node with a comment matching a pattern in the iteration
+        through the complete tree.
+        Same result as NodeUtil.findInComments(), but faster if the index
+        is ready and the pattern is a literal string.
+        @param node The current node in the iteration.
+        @param pattern The pattern.
+        @return The next node that contains a match of the pattern or
+        null. */
+    public ConstNode findInComments(ConstNode node, Pattern pattern)
+    {
+        Set<ConstNode> candidates = getCandidates(pattern);
+        if (candidates == null)
+            return NodeUtil.findInComments(node, pattern);
+        node = NodeUtil.nextNode(node);
+        while (node != null)
+        {
+            if (node.hasComment()
+                && (candidates.contains(node) || isChanged(node))
+                && NodeUtil.commentContains(node, pattern))
+                return node;
+            node = NodeUtil.nextNode(node);
+        }
+        return null;
+    }
+
+    /** Get the root node of the tree the index was created for. */
+    public ConstNode getRoot()
+    {
+        return m_root;
+    }
+
+    /** Check if the background thread has finished building the index. */
+    public boolean isReady()
+    {
+        return (m_index != null);
+    }
+
+    /** Words with the nodes containing them and the sorted suffixes of the
+        words. */
+    private static final class Index
+    {
+        public Index(String[] words, ArrayList<ArrayList<ConstNode>> nodes,
+                     long[] suffixes)
+        {
+            m_words = words;
+            m_nodes = nodes;
+            m_suffixes = suffixes;
+        }
+
+        /** The nodes containing each word. */
+        public final ArrayList<ArrayList<ConstNode>> m_nodes;
+
+        /** The suffixes of all words sorted by their strings.
+            Each suffix is encoded as the index of the word in the upper 32
+            bits and the start of the suffix in the lower 32 bits. */
+        public final long[] m_suffixes;
+
+        public final String[] m_words;
+    }
+
+    /** Characters with a special meaning in a regular expression. */
+    private static final String SPECIAL_CHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final ConstNode m_root;
+
+    /** Comment data of the indexed nodes at the time of indexing.
+        Only accessed in the thread that created the index.
+        @see #getCommentData */
+    private final Map<ConstNode,Object> m_indexed =
+        new HashMap<ConstNode,Object>();
+
+    /** Set by close() to stop the background thread. */
+    private volatile boolean m_isClosed;
+
+    /** The index of the words.
+        Null, until the background thread has finished. */
+    private volatile Index m_index;
+
+    private void buildIndex(ArrayList<ConstNode> nodes,
+                            ArrayList<Object> comments)
+    {
+        Map<String,ArrayList<ConstNode>> wordNodes =
+            new HashMap<String,ArrayList<ConstNode>>();
+        Set<String> nodeWords = new HashSet<String>();
+        for (int i = 0; i < nodes.size(); ++i)
+        {
+            if (m_isClosed)
+                return;
+            ConstNode node = nodes.get(i);
+            nodeWords.clear();
+            splitWords(decode(comments.get(i)), nodeWords, null);
+            for (String word : nodeWords)
+            {
+                ArrayList<ConstNode> list = wordNodes.get(word);
+                if (list == null)
+                {
+                    list = new ArrayList<ConstNode>(2);
+                    wordNodes.put(word, list);
+                }
+                list.add(node);
+            }
+        }
+        final String[] words = new String[wordNodes.size()];
+        ArrayList<ArrayList<ConstNode>> wordNodeList =
+            new ArrayList<ArrayList<ConstNode>>(words.length);
+        int numberSuffixes = 0;
+        for (Map.Entry<String,ArrayList<ConstNode>> entry
+                 : wordNodes.entrySet())
+        {
+            words[wordNodeList.size()] = entry.getKey();
+            wordNodeList.add(entry.getValue());
+            numberSuffixes += entry.getKey().length();
+        }
+        wordNodes = null;
+        Long[] suffixes = new Long[numberSuffixes];
+        int n = 0;
+        for (int i = 0; i < words.length; ++i)
+            for (int j = 0; j < words[i].length(); ++j)
+                suffixes[n++] = Long.valueOf(((long)i << 32) | j);
+        Arrays.sort(suffixes, new Comparator<Long>() {
+                public int compare(Long suffix1, Long suffix2)
+                {
+                    long s1 = suffix1.longValue();
+                    long s2 = suffix2.longValue();
+                    return compareSuffix(words[(int)(s1 >>> 32)], (int)s1,
+                                         words[(int)(s2 >>> 32)], (int)s2);
+                }
+            });
+        long[] sortedSuffixes = new long[numberSuffixes];
+        for (int i = 0; i < numberSuffixes; ++i)
+            sortedSuffixes[i] = suffixes[i].longValue();
+        if (! m_isClosed)
+            m_index = new Index(words, wordNodeList, sortedSuffixes);
+    }
+
+    /** Compare the suffixes of two strings lexicographically. */
+    private static int compareSuffix(String s1, int start1, String s2,
+                                     int start2)
+    {
+        int length1 = s1.length() - start1;
+        int length2 = s2.length() - start2;
+        int length = Math.min(length1, length2);
+        for (int i = 0; i < length; ++i)
+        {
+            char c1 = s1.charAt(start1 + i);
+            char c2 = s2.charAt(start2 + i);
+            if (c1 != c2)
+                return c1 - c2;
+        }
+        return length1 - length2;
+    }
+
+    private static String decode(Object comment)
+    {
+        if (comment instanceof String)
+            return (String)comment;
+        return Node.decodeComment((byte[])comment);
+    }
+
+    /** Get the nodes that can contain a match of a pattern.
+        @return The candidate nodes, or null if the index is not ready or
+        cannot be used for the pattern. */
+    private Set<ConstNode> getCandidates(Pattern pattern)
+    {
+        Index index = m_index;
+        if (index == null)
+            return null;
+        String regex = pattern.pattern();
+        for (int i = 0; i < regex.length(); ++i)
+            if (SPECIAL_CHARACTERS.indexOf(regex.charAt(i)) >= 0)
+                return null;
+        ArrayList<String> patternWords = new ArrayList<String>();
+        ArrayList<Integer> patternWordStarts = new ArrayList<Integer>();
+        splitWords(regex, patternWords, patternWordStarts);
+        if (patternWords.isEmpty())
+            return null;
+        // Start positions refer to the lower case pattern, which can have
+        // a different length
+        int length = regex.toLowerCase(Locale.ENGLISH).length();
+        Set<ConstNode> candidates = null;
+        for (int i = 0; i < patternWords.size(); ++i)
+        {
+            String word = patternWords.get(i);
+            int start = patternWordStarts.get(i).intValue();
+            // Words at the beginning or end of the pattern can match a
+            // part of a word in the comment
+            boolean isSuffix = (start == 0);
+            boolean isPrefix = (start + word.length() == length);
+            Set<ConstNode> nodes = new HashSet<ConstNode>();
+            long[] suffixes = index.m_suffixes;
+            for (int j = findFirstSuffix(index, word);
+                 j < suffixes.length; ++j)
+            {
+                String indexWord = index.m_words[(int)(suffixes[j] >>> 32)];
+                int suffixStart = (int)suffixes[j];
+                if (! indexWord.startsWith(word, suffixStart))
+                    break;
+                if ((isSuffix || suffixStart == 0)
+                    && (isPrefix
+                        || suffixStart + word.length() == indexWord.length()))
+                    nodes.addAll(index.m_nodes.get((int)(suffixes[j]
+                                                         >>> 32)));
+            }
+            if (candidates == null)
+                candidates = nodes;
+            else
+                candidates.retainAll(nodes);
+        }
+        return candidates;
+    }
+
+    /** Find the first suffix in the sorted suffixes, which is greater or
+        equal to a word.
+        @return The position in the suffix array or its length, if all
+        suffixes are smaller. */
+    private static int findFirstSuffix(Index index, String word)
+    {
+        long[] suffixes = index.m_suffixes;
+        int low = 0;
+        int high = suffixes.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            long suffix = suffixes[mid];
+            if (compareSuffix(index.m_words[(int)(suffix >>> 32)],
+                              (int)suffix, word, 0) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /** Get the data that identifies the current comment of a node.
+        @return The comment bytes for a Node, which are replaced by
+        Node.setComment(), or null for other nodes, which cannot be
+        changed. */
+    private static Object getCommentData(ConstNode node)
+    {
+        if (node instanceof Node)
+            return ((Node)node).getCommentBytes();
+        return null;
+    }
+
+    /** Check if the comment of a node was changed after the index was
+        created. */
+    private boolean isChanged(ConstNode node)
+    {
+        if (! m_indexed.containsKey(node))
+            return true;
+        return (getCommentData(node) != m_indexed.get(node));
+    }
+
+    /** Split a text into lower case words of letters and digits.
+        Uses a fixed locale for converting to lower case, because the
+        conversion depends on the locale (e.g. the dotless i in Turkish),
+        while the case-insensitive search in FindDialog does not.
+        @param text The text.
+        @param words The collection to add the words to.
+        @param starts The list to add the start positions of the words in
+        the text to, or null. */
+    private static void splitWords(String text, Collection<String> words,
+                                   List<Integer> starts)
+    {
+        text = text.toLowerCase(Locale.ENGLISH);
+        int start = -1;
+        for (int i = 0; i <= text.length(); ++i)
+        {
+            boolean isWordChar =
+                (i < text.length()
+                 && Character.isLetterOrDigit(text.charAt(i)));
+            if (isWordChar && start < 0)
+                start = i;
+            else if (! isWordChar && start >= 0)
+            {
+                words.add(text.substring(start, i));
+                if (starts != null)
+                    starts.add(Integer.valueOf(start));
+                start = -1;
+            }
+        }
+    }
+}
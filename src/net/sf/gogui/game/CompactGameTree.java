@@ -0,0 +1,959 @@
+// CompactGameTree.java
+
+package net.sf.gogui.game;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import net.sf.gogui.go.BitPointList;
+import net.sf.gogui.go.ConstPointList;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+import net.sf.gogui.go.PointList;
+
+/** Read-only game tree with a compact memory layout.
+    Intended for very large trees, like SGF search traces, that are only
+    viewed. The tree structure and the moves are stored in parallel int
+    arrays indexed by the node number. The comments of all nodes are stored
+    in one byte array and the markup and labels in one char array, with the
+    end of the data of each node in another parallel int array. Information
+    that is rare in large trees (setup, player, game information, time left
+    and unknown SGF properties) is stored in a map from the node number to
+    an object containing it.
+    The ConstNode objects are created on demand and kept as long as they
+    are referenced, such that a node is always represented by the same
+    object.
+    A tree can be copied from another tree, or built node by node with a
+    Builder, which allows readers to create large trees without creating a
+    tree of Node objects first (see sgf.SgfCompactReader).
+    The tree cannot be modified after construction. It can be read by
+    multiple threads; only the creation of the node objects is
+    synchronized.
+    @see GameTree#getSnapshot */
+public final class CompactGameTree
+    implements ConstGameTree
+{
+    /** Builder for creating a tree node by node.
+        Each node must be added after its father; the children of a node
+        are in the order in which they are added. */
+    public static final class Builder
+    {
+        public Builder()
+        {
+        }
+
+        /** Add a node.
+            @param father The index of the father as returned by add(), or
+            -1 for the root node, which must be the first node.
+            @param node The node to copy the information from. Only the
+            information stored in the node itself is copied, not its
+            children.
+            @return The index of the new node. */
+        public int add(int father, ConstNode node)
+        {
+            assert (father < 0) == (m_nuNodes == 0);
+            assert father < m_nuNodes;
+            if (m_nuNodes == m_move.length)
+                grow();
+            int index = m_nuNodes++;
+            m_father[index] = (father < 0 ? NO_NODE : father);
+            m_firstChild[index] = NO_NODE;
+            m_nextSibling[index] = NO_NODE;
+            m_lastChild[index] = NO_NODE;
+            m_commentStart[index] = m_commentSize;
+            m_commentEnd[index] = m_commentSize;
+            m_markedStart[index] = m_markedSize;
+            m_markedEnd[index] = m_markedSize;
+            if (father >= 0)
+            {
+                if (m_lastChild[father] == NO_NODE)
+                    m_firstChild[father] = index;
+                else
+                {
+                    m_nextSibling[m_lastChild[father]] = index;
+                    m_hasVariations = true;
+                }
+                m_lastChild[father] = index;
+            }
+            set(index, node);
+            return index;
+        }
+
+        /** Create the tree.
+            The builder must not be used after this call.
+            @param boardSize The board size. */
+        public CompactGameTree create(int boardSize)
+        {
+            assert m_nuNodes > 0;
+            return new CompactGameTree(this, boardSize);
+        }
+
+        public int getNumberNodes()
+        {
+            return m_nuNodes;
+        }
+
+        /** Replace the information of a node.
+            Does not change the tree structure. Can be used to change a
+            node after its children are known.
+            @param index The index of the node.
+            @param node The node to copy the information from. */
+        public void set(int index, ConstNode node)
+        {
+            assert index < m_nuNodes;
+            m_move[index] = encodeMove(node.getMove());
+            float value = node.getValue();
+            if (! Float.isNaN(value))
+            {
+                if (m_value == null)
+                {
+                    m_value = new float[m_move.length];
+                    Arrays.fill(m_value, Float.NaN);
+                }
+                m_value[index] = value;
+            }
+            else if (m_value != null)
+                m_value[index] = Float.NaN;
+            setComment(index, node);
+            setMarked(index, node);
+            RareInfo info = createRareInfo(node);
+            if (info == null)
+                m_rareInfo.remove(Integer.valueOf(index));
+            else
+                m_rareInfo.put(Integer.valueOf(index), info);
+        }
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private boolean m_hasVariations;
+
+        private int m_nuNodes;
+
+        private int m_commentSize;
+
+        private int m_markedSize;
+
+        private int[] m_move = new int[INITIAL_CAPACITY];
+
+        private int[] m_father = new int[INITIAL_CAPACITY];
+
+        private int[] m_firstChild = new int[INITIAL_CAPACITY];
+
+        private int[] m_nextSibling = new int[INITIAL_CAPACITY];
+
+        /** Last child of each node, needed only for linking the
+            siblings. */
+        private int[] m_lastChild = new int[INITIAL_CAPACITY];
+
+        /** Start of the comment of each node in m_comments.
+            The comments are in the order of the nodes, unless set() was
+            used to change the comment of a node. */
+        private int[] m_commentStart = new int[INITIAL_CAPACITY];
+
+        private int[] m_commentEnd = new int[INITIAL_CAPACITY];
+
+        private int[] m_markedStart = new int[INITIAL_CAPACITY];
+
+        private int[] m_markedEnd = new int[INITIAL_CAPACITY];
+
+        private byte[] m_comments = new byte[INITIAL_CAPACITY];
+
+        private char[] m_marked = new char[INITIAL_CAPACITY];
+
+        private float[] m_value;
+
+        private final HashMap<Integer,RareInfo> m_rareInfo =
+            new HashMap<Integer,RareInfo>();
+
+        /** Different label texts. */
+        private final ArrayList<String> m_labels = new ArrayList<String>();
+
+        /** Index of each label text in m_labels. */
+        private final HashMap<String,Integer> m_labelIndex =
+            new HashMap<String,Integer>();
+
+        private void grow()
+        {
+            int capacity = 2 * m_move.length;
+            m_move = resize(m_move, capacity);
+            m_father = resize(m_father, capacity);
+            m_firstChild = resize(m_firstChild, capacity);
+            m_nextSibling = resize(m_nextSibling, capacity);
+            m_lastChild = resize(m_lastChild, capacity);
+            m_commentStart = resize(m_commentStart, capacity);
+            m_commentEnd = resize(m_commentEnd, capacity);
+            m_markedStart = resize(m_markedStart, capacity);
+            m_markedEnd = resize(m_markedEnd, capacity);
+            if (m_value != null)
+            {
+                float[] value = new float[capacity];
+                System.arraycopy(m_value, 0, value, 0, m_value.length);
+                Arrays.fill(value, m_value.length, capacity, Float.NaN);
+                m_value = value;
+            }
+        }
+
+        /** Pack the comments in the order of the nodes.
+            @return The end of the comment of each node in the packed
+            comments, or null if no node has a comment. */
+        private int[] packComments()
+        {
+            int n = m_nuNodes;
+            if (m_commentSize == 0)
+                return null;
+            int size = 0;
+            boolean isPacked = true;
+            for (int i = 0; i < n; ++i)
+            {
+                int length = m_commentEnd[i] - m_commentStart[i];
+                if (length > 0 && m_commentStart[i] != size)
+                    isPacked = false;
+                size += length;
+            }
+            byte[] comments = new byte[size];
+            if (isPacked)
+                System.arraycopy(m_comments, 0, comments, 0, size);
+            int[] end = new int[n];
+            int pos = 0;
+            for (int i = 0; i < n; ++i)
+            {
+                int length = m_commentEnd[i] - m_commentStart[i];
+                if (! isPacked)
+                    System.arraycopy(m_comments, m_commentStart[i], comments,
+                                     pos, length);
+                pos += length;
+                end[i] = pos;
+            }
+            m_comments = comments;
+            return end;
+        }
+
+        /** Pack the markup in the order of the nodes.
+            @return The end of the markup of each node in the packed
+            markup, or null if no node has markup.
+            @see #packComments */
+        private int[] packMarked()
+        {
+            int n = m_nuNodes;
+            if (m_markedSize == 0)
+                return null;
+            int size = 0;
+            boolean isPacked = true;
+            for (int i = 0; i < n; ++i)
+            {
+                int length = m_markedEnd[i] - m_markedStart[i];
+                if (length > 0 && m_markedStart[i] != size)
+                    isPacked = false;
+                size += length;
+            }
+            char[] marked = new char[size];
+            if (isPacked)
+                System.arraycopy(m_marked, 0, marked, 0, size);
+            int[] end = new int[n];
+            int pos = 0;
+            for (int i = 0; i < n; ++i)
+            {
+                int length = m_markedEnd[i] - m_markedStart[i];
+                if (! isPacked)
+                    System.arraycopy(m_marked, m_markedStart[i], marked, pos,
+                                     length);
+                pos += length;
+                end[i] = pos;
+            }
+            m_marked = marked;
+            return end;
+        }
+
+        /** Store the comment of a node.
+            The comment is appended to the comments, unless it is
+            unchanged. */
+        private void setComment(int index, ConstNode node)
+        {
+            byte[] comment;
+            if (node instanceof Node)
+                // Avoid decoding and encoding the comment again
+                comment = ((Node)node).getCommentBytes();
+            else
+            {
+                String s = node.getComment();
+                comment = (s == null ? null : Node.encodeComment(s));
+            }
+            int start = m_commentStart[index];
+            int length = m_commentEnd[index] - start;
+            if (comment == null)
+            {
+                m_commentEnd[index] = start;
+                return;
+            }
+            if (comment.length == length)
+            {
+                boolean isEqual = true;
+                for (int i = 0; i < length && isEqual; ++i)
+                    isEqual = (comment[i] == m_comments[start + i]);
+                if (isEqual)
+                    return;
+            }
+            if (m_commentSize + comment.length > m_comments.length)
+            {
+                long capacity = Math.max(2L * m_comments.length,
+                                         m_commentSize + comment.length);
+                capacity = Math.min(capacity, Integer.MAX_VALUE);
+                byte[] comments = new byte[(int)capacity];
+                System.arraycopy(m_comments, 0, comments, 0, m_commentSize);
+                m_comments = comments;
+            }
+            System.arraycopy(comment, 0, m_comments, m_commentSize,
+                             comment.length);
+            m_commentStart[index] = m_commentSize;
+            m_commentSize += comment.length;
+            m_commentEnd[index] = m_commentSize;
+        }
+
+        /** Store the markup and labels of a node.
+            The markup is appended to the markup of all nodes. */
+        private void setMarked(int index, ConstNode node)
+        {
+            int length = 0;
+            for (MarkType type : MarkType.values())
+            {
+                ConstPointList marked = node.getMarkedConst(type);
+                if (marked != null)
+                    length += marked.size();
+            }
+            Map<GoPoint,String> labels = node.getLabelsUnmodifiable();
+            if (labels != null)
+                length += 3 * labels.size();
+            if (length == 0)
+            {
+                m_markedEnd[index] = m_markedStart[index];
+                return;
+            }
+            if (m_markedSize + length > m_marked.length)
+            {
+                char[] marked =
+                    new char[Math.max(2 * m_marked.length,
+                                      m_markedSize + length)];
+                System.arraycopy(m_marked, 0, marked, 0, m_markedSize);
+                m_marked = marked;
+            }
+            m_markedStart[index] = m_markedSize;
+            for (MarkType type : MarkType.values())
+            {
+                ConstPointList marked = node.getMarkedConst(type);
+                if (marked == null)
+                    continue;
+                for (GoPoint p : marked)
+                    m_marked[m_markedSize++] =
+                        encodeMarked(type.ordinal(), p);
+            }
+            if (labels != null)
+                for (Map.Entry<GoPoint,String> entry : labels.entrySet())
+                {
+                    Integer label = m_labelIndex.get(entry.getValue());
+                    if (label == null)
+                    {
+                        label = Integer.valueOf(m_labels.size());
+                        m_labels.add(entry.getValue());
+                        m_labelIndex.put(entry.getValue(), label);
+                    }
+                    m_marked[m_markedSize++] =
+                        encodeMarked(LABEL_TYPE, entry.getKey());
+                    m_marked[m_markedSize++] = (char)(label >>> 16);
+                    m_marked[m_markedSize++] = (char)label.intValue();
+                }
+            m_markedEnd[index] = m_markedSize;
+        }
+    }
+
+    /** Create a compact copy of a game tree.
+        @param tree The tree to copy. */
+    public CompactGameTree(ConstGameTree tree)
+    {
+        this(copy(tree.getRootConst()), tree.getBoardSize());
+    }
+
+    public int getBoardSize()
+    {
+        return m_boardSize;
+    }
+
+    /** Find the game information valid for this node.
+        @return The game information from the nearest ancestor node,
+        which has a game information. */
+    public ConstGameInfo getGameInfoConst(ConstNode node)
+    {
+        while (node.getGameInfoConst() == null)
+            node = node.getFatherConst();
+        return node.getGameInfoConst();
+    }
+
+    /** Get the number of nodes in the tree. */
+    public int getNumberNodes()
+    {
+        return m_move.length;
+    }
+
+    public ConstNode getRootConst()
+    {
+        return getNode(0);
+    }
+
+    public boolean hasVariations()
+    {
+        return m_hasVariations;
+    }
+
+    /** Node information that is rare in large trees.
+        Setup stones are stored in bit sets, which are returned by
+        getSetup(), so that BoardUpdater can recognize unchanged setups. */
+    private static final class RareInfo
+    {
+        public GoColor m_player;
+
+        public BitPointList m_setupBlack;
+
+        public BitPointList m_setupWhite;
+
+        public BitPointList m_setupEmpty;
+
+        public GameInfo m_info;
+
+        public SgfProperties m_sgfProperties;
+
+        public int m_movesLeftBlack = -1;
+
+        public int m_movesLeftWhite = -1;
+
+        public double m_timeLeftBlack = Double.NaN;
+
+        public double m_timeLeftWhite = Double.NaN;
+    }
+
+    /** Node of a CompactGameTree.
+        Contains only the node number, all data is stored in the tree. */
+    private final class CompactNode
+        implements ConstNode
+    {
+        public CompactNode(int index)
+        {
+            m_index = index;
+        }
+
+        public String getComment()
+        {
+            if (! hasComment())
+                return null;
+            int start = getCommentStart();
+            byte[] comment = new byte[m_commentEnd[m_index] - start];
+            System.arraycopy(m_comments, start, comment, 0, comment.length);
+            return Node.decodeComment(comment);
+        }
+
+        public ConstNode getFatherConst()
+        {
+            return getNode(m_father[m_index]);
+        }
+
+        public ConstNode getChildConst()
+        {
+            return getNode(m_firstChild[m_index]);
+        }
+
+        public ConstNode getChildConst(int i)
+        {
+            int child = m_firstChild[m_index];
+            for (int j = 0; j < i; ++j)
+                child = m_nextSibling[child];
+            return getNode(child);
+        }
+
+        public int getChildIndex(ConstNode child)
+        {
+            if (! (child instanceof CompactNode))
+                return -1;
+            int i = 0;
+            for (int c = m_firstChild[m_index]; c != NO_NODE;
+                 c = m_nextSibling[c])
+            {
+                if (((CompactNode)child).m_index == c)
+                    return (getNode(c) == child ? i : -1);
+                ++i;
+            }
+            return -1;
+        }
+
+        public ConstGameInfo getGameInfoConst()
+        {
+            RareInfo info = getRareInfo();
+            return (info == null ? null : info.m_info);
+        }
+
+        public String getLabel(GoPoint point)
+        {
+            int end = getMarkedEnd();
+            for (int i = getMarkedStart(); i < end; i += getMarkedLength(i))
+                if ((m_marked[i] >> MARKED_TYPE_SHIFT) == LABEL_TYPE
+                    && (m_marked[i] & MARKED_POINT_MASK) == point.getIndex())
+                    return getLabelText(i);
+            return null;
+        }
+
+        /** Get all labels on the board.
+            @return A new unmodifiable map or null, if there are no
+            labels. */
+        public Map<GoPoint,String> getLabelsUnmodifiable()
+        {
+            Map<GoPoint,String> labels = null;
+            int end = getMarkedEnd();
+            for (int i = getMarkedStart(); i < end; i += getMarkedLength(i))
+                if ((m_marked[i] >> MARKED_TYPE_SHIFT) == LABEL_TYPE)
+                {
+                    if (labels == null)
+                        labels = new HashMap<GoPoint,String>();
+                    labels.put(getMarkedPoint(i), getLabelText(i));
+                }
+            if (labels == null)
+                return null;
+            return Collections.unmodifiableMap(labels);
+        }
+
+        /** Get the markup of a type.
+            @return A new list with the marked points, or null if there are
+            none. */
+        public ConstPointList getMarkedConst(MarkType type)
+        {
+            PointList list = null;
+            int end = getMarkedEnd();
+            for (int i = getMarkedStart(); i < end; i += getMarkedLength(i))
+                if ((m_marked[i] >> MARKED_TYPE_SHIFT) == type.ordinal())
+                {
+                    if (list == null)
+                        list = new PointList();
+                    list.add(getMarkedPoint(i));
+                }
+            return list;
+        }
+
+        public Move getMove()
+        {
+            return decodeMove(m_move[m_index]);
+        }
+
+        public int getMovesLeft(GoColor color)
+        {
+            assert color.isBlackWhite();
+            RareInfo info = getRareInfo();
+            if (info == null)
+                return -1;
+            return (color == BLACK ? info.m_movesLeftBlack
+                    : info.m_movesLeftWhite);
+        }
+
+        public int getNumberChildren()
+        {
+            int n = 0;
+            for (int c = m_firstChild[m_index]; c != NO_NODE;
+                 c = m_nextSibling[c])
+                ++n;
+            return n;
+        }
+
+        public GoColor getPlayer()
+        {
+            RareInfo info = getRareInfo();
+            return (info == null ? null : info.m_player);
+        }
+
+        public ConstPointList getSetup(GoColor c)
+        {
+            RareInfo info = getRareInfo();
+            ConstPointList list = null;
+            if (info != null)
+            {
+                if (c == BLACK)
+                    list = info.m_setupBlack;
+                else if (c == WHITE)
+                    list = info.m_setupWhite;
+                else
+                {
+                    assert c == EMPTY;
+                    list = info.m_setupEmpty;
+                }
+            }
+            return (list == null ? PointList.getEmptyList() : list);
+        }
+
+        public ConstSgfProperties getSgfPropertiesConst()
+        {
+            RareInfo info = getRareInfo();
+            return (info == null ? null : info.m_sgfProperties);
+        }
+
+        public double getTimeLeft(GoColor color)
+        {
+            assert color.isBlackWhite();
+            RareInfo info = getRareInfo();
+            if (info == null)
+                return Double.NaN;
+            return (color == BLACK ? info.m_timeLeftBlack
+                    : info.m_timeLeftWhite);
+        }
+
+        public GoColor getToMove()
+        {
+            GoColor player = getPlayer();
+            if (player != null)
+                return player;
+            Move move = getMove();
+            if (move != null)
+                return move.getColor().otherColor();
+            return null;
+        }
+
+        public float getValue()
+        {
+            if (m_value == null)
+                return Float.NaN;
+            return m_value[m_index];
+        }
+
+        public boolean hasChildren()
+        {
+            return (m_firstChild[m_index] != NO_NODE);
+        }
+
+        public boolean hasComment()
+        {
+            return (m_commentEnd != null
+                    && m_commentEnd[m_index] > getCommentStart());
+        }
+
+        public boolean hasFather()
+        {
+            return (m_father[m_index] != NO_NODE);
+        }
+
+        public boolean hasSetup()
+        {
+            RareInfo info = getRareInfo();
+            return (info != null
+                    && (info.m_setupBlack != null
+                        || info.m_setupWhite != null
+                        || info.m_setupEmpty != null));
+        }
+
+        public boolean isEmpty()
+        {
+            return (m_move[m_index] == 0 && ! hasComment()
+                    && getMarkedEnd() == getMarkedStart()
+                    && getRareInfo() == null && Float.isNaN(getValue()));
+        }
+
+        public ConstNode variationAfter(ConstNode child)
+        {
+            int i = getChildIndex(child);
+            if (i < 0)
+                return null;
+            return getNode(m_nextSibling[((CompactNode)child).m_index]);
+        }
+
+        public ConstNode variationBefore(ConstNode child)
+        {
+            int i = getChildIndex(child);
+            if (i <= 0)
+                return null;
+            return getChildConst(i - 1);
+        }
+
+        private final int m_index;
+
+        private int getCommentStart()
+        {
+            return (m_index == 0 ? 0 : m_commentEnd[m_index - 1]);
+        }
+
+        private String getLabelText(int i)
+        {
+            return m_labels[(m_marked[i + 1] << 16) | m_marked[i + 2]];
+        }
+
+        private int getMarkedEnd()
+        {
+            return (m_markedEnd == null ? 0 : m_markedEnd[m_index]);
+        }
+
+        /** Get the number of chars of an encoded markup.
+            Labels are followed by two chars containing the index of the
+            label text. */
+        private int getMarkedLength(int i)
+        {
+            return ((m_marked[i] >> MARKED_TYPE_SHIFT) == LABEL_TYPE ? 3 : 1);
+        }
+
+        private GoPoint getMarkedPoint(int i)
+        {
+            return GoPoint.getByIndex(m_marked[i] & MARKED_POINT_MASK);
+        }
+
+        private int getMarkedStart()
+        {
+            if (m_markedEnd == null || m_index == 0)
+                return 0;
+            return m_markedEnd[m_index - 1];
+        }
+
+        private RareInfo getRareInfo()
+        {
+            if (m_rareInfo.isEmpty())
+                return null;
+            return m_rareInfo.get(Integer.valueOf(m_index));
+        }
+    }
+
+    /** Weak reference to a node object, which knows the node number. */
+    private static final class NodeReference
+        extends WeakReference<CompactNode>
+    {
+        public NodeReference(CompactNode node,
+                             ReferenceQueue<CompactNode> queue)
+        {
+            super(node, queue);
+            m_index = Integer.valueOf(node.m_index);
+        }
+
+        public final Integer m_index;
+    }
+
+    /** Marker for an undefined node. */
+    private static final int NO_NODE = -1;
+
+    /** Shift of the markup type in an encoded markup.
+        @see #encodeMarked */
+    private static final int MARKED_TYPE_SHIFT = 12;
+
+    private static final int MARKED_POINT_MASK = (1 << MARKED_TYPE_SHIFT) - 1;
+
+    /** Markup type used for labels in an encoded markup.
+        Follows the ordinals of MarkType. */
+    private static final int LABEL_TYPE = MarkType.values().length;
+
+    private final boolean m_hasVariations;
+
+    private final int m_boardSize;
+
+    /** Encoded move of each node.
+        @see #encodeMove */
+    private final int[] m_move;
+
+    private final int[] m_father;
+
+    private final int[] m_firstChild;
+
+    private final int[] m_nextSibling;
+
+    /** Comments of all nodes in the order of the nodes.
+        Encoded like in Node for space efficiency.
+        @see Node#encodeComment */
+    private final byte[] m_comments;
+
+    /** End of the comment of each node in m_comments.
+        The comment of a node starts at the end of the comment of the
+        previous node. Null, if no node has a comment. */
+    private final int[] m_commentEnd;
+
+    /** Markup and labels of all nodes in the order of the nodes.
+        @see #encodeMarked */
+    private final char[] m_marked;
+
+    /** Different label texts.
+        Referenced by the encoded labels in m_marked. */
+    private final String[] m_labels;
+
+    /** End of the markup of each node in m_marked.
+        Like m_commentEnd. Null, if no node has markup. */
+    private final int[] m_markedEnd;
+
+    /** Value of each node.
+        Null, if no node has a value. */
+    private final float[] m_value;
+
+    /** Information that is rare in large trees by node number. */
+    private final HashMap<Integer,RareInfo> m_rareInfo;
+
+    /** Node objects that are still referenced.
+        Guarded by synchronizing on this tree. */
+    private final HashMap<Integer,NodeReference> m_nodes =
+        new HashMap<Integer,NodeReference>();
+
+    /** Queue of the references to node objects that were collected. */
+    private final ReferenceQueue<CompactNode> m_collectedNodes =
+        new ReferenceQueue<CompactNode>();
+
+    private CompactGameTree(Builder builder, int boardSize)
+    {
+        int nuNodes = builder.m_nuNodes;
+        m_boardSize = boardSize;
+        m_hasVariations = builder.m_hasVariations;
+        m_move = resize(builder.m_move, nuNodes);
+        m_father = resize(builder.m_father, nuNodes);
+        m_firstChild = resize(builder.m_firstChild, nuNodes);
+        m_nextSibling = resize(builder.m_nextSibling, nuNodes);
+        m_commentEnd = builder.packComments();
+        m_comments = builder.m_comments;
+        m_markedEnd = builder.packMarked();
+        m_marked = builder.m_marked;
+        m_labels = builder.m_labels.toArray(new String[0]);
+        if (builder.m_value == null)
+            m_value = null;
+        else
+        {
+            m_value = new float[nuNodes];
+            System.arraycopy(builder.m_value, 0, m_value, 0, nuNodes);
+        }
+        m_rareInfo = builder.m_rareInfo;
+    }
+
+    /** Copy a tree into a builder.
+        Does not use recursion, because trees can be very deep. */
+    private static Builder copy(ConstNode root)
+    {
+        Builder builder = new Builder();
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        // Index of the father of each node on the stack
+        ArrayList<Integer> fatherStack = new ArrayList<Integer>();
+        stack.add(root);
+        fatherStack.add(Integer.valueOf(NO_NODE));
+        while (! stack.isEmpty())
+        {
+            ConstNode node = stack.remove(stack.size() - 1);
+            int father = fatherStack.remove(fatherStack.size() - 1);
+            int index = builder.add(father, node);
+            for (int i = node.getNumberChildren() - 1; i >= 0; --i)
+            {
+                stack.add(node.getChildConst(i));
+                fatherStack.add(Integer.valueOf(index));
+            }
+        }
+        return builder;
+    }
+
+    /** Create the rare information of a node.
+        @return The information or null, if the node has none. */
+    private static RareInfo createRareInfo(ConstNode node)
+    {
+        RareInfo info = new RareInfo();
+        boolean isEmpty = true;
+        if (node.getPlayer() != null)
+        {
+            info.m_player = node.getPlayer();
+            isEmpty = false;
+        }
+        if (node.hasSetup())
+        {
+            info.m_setupBlack = copyPoints(node.getSetup(BLACK));
+            info.m_setupWhite = copyPoints(node.getSetup(WHITE));
+            info.m_setupEmpty = copyPoints(node.getSetup(EMPTY));
+            isEmpty = false;
+        }
+        if (node.getGameInfoConst() != null)
+        {
+            info.m_info = new GameInfo(node.getGameInfoConst());
+            isEmpty = false;
+        }
+        ConstSgfProperties sgfProperties = node.getSgfPropertiesConst();
+        if (sgfProperties != null && ! sgfProperties.isEmpty())
+        {
+            info.m_sgfProperties = new SgfProperties(sgfProperties);
+            isEmpty = false;
+        }
+        info.m_movesLeftBlack = node.getMovesLeft(BLACK);
+        info.m_movesLeftWhite = node.getMovesLeft(WHITE);
+        info.m_timeLeftBlack = node.getTimeLeft(BLACK);
+        info.m_timeLeftWhite = node.getTimeLeft(WHITE);
+        if (info.m_movesLeftBlack != -1 || info.m_movesLeftWhite != -1
+            || ! Double.isNaN(info.m_timeLeftBlack)
+            || ! Double.isNaN(info.m_timeLeftWhite))
+            isEmpty = false;
+        return (isEmpty ? null : info);
+    }
+
+    /** Copy a list of setup stones.
+        @return The copy or null, if the list is empty. */
+    private static BitPointList copyPoints(ConstPointList list)
+    {
+        if (list.isEmpty())
+            return null;
+        return new BitPointList(list);
+    }
+
+    /** Decode a move.
+        @see #encodeMove */
+    private static Move decodeMove(int code)
+    {
+        if (code == 0)
+            return null;
+        --code;
+        GoColor c = ((code & 1) == 0 ? BLACK : WHITE);
+        int index = (code >> 1) - 1;
+        return Move.get(c, index < 0 ? null : GoPoint.getByIndex(index));
+    }
+
+    /** Encode a marked point as a char.
+        The upper bits contain the ordinal of the markup type or LABEL_TYPE,
+        the lower bits the point index. */
+    private static char encodeMarked(int type, GoPoint p)
+    {
+        assert GoPoint.NUMBER_INDEXES <= MARKED_POINT_MASK + 1;
+        return (char)((type << MARKED_TYPE_SHIFT) | p.getIndex());
+    }
+
+    /** Encode a move as an int.
+        Zero means no move, otherwise the lowest bit of the value minus one
+        is the color and the remaining bits are the point index plus one,
+        or zero for a pass move. */
+    private static int encodeMove(Move move)
+    {
+        if (move == null)
+            return 0;
+        GoPoint p = move.getPoint();
+        int index = (p == null ? 0 : p.getIndex() + 1);
+        return ((index << 1) | (move.getColor() == BLACK ? 0 : 1)) + 1;
+    }
+
+    /** Get the node object for a node number.
+        Creates the object, if there is no object for the node that is
+        still referenced. */
+    private synchronized ConstNode getNode(int index)
+    {
+        if (index == NO_NODE)
+            return null;
+        NodeReference reference;
+        while ((reference = (NodeReference)m_collectedNodes.poll()) != null)
+            if (m_nodes.get(reference.m_index) == reference)
+                m_nodes.remove(reference.m_index);
+        Integer key = Integer.valueOf(index);
+        reference = m_nodes.get(key);
+        CompactNode node = (reference == null ? null : reference.get());
+        if (node == null)
+        {
+            node = new CompactNode(index);
+            m_nodes.put(key, new NodeReference(node, m_collectedNodes));
+        }
+        return node;
+    }
+
+    private static int[] resize(int[] array, int length)
+    {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+        return result;
+    }
+}
@@ -399,7 +399,15 @@ public class Game
 
     private final Board m_board;
 
-    private final BoardUpdater m_boardUpdater = new BoardUpdater();
+    /** Maximum number of board checkpoints kept for jumping between
+        nodes. */
+    private static final int CHECKPOINT_CAPACITY = 64;
+
+    private final CheckpointCache m_checkpointCache
+        = new CheckpointCache(CHECKPOINT_CAPACITY);
+
+    private final BoardUpdater m_boardUpdater
+        = new BoardUpdater(m_checkpointCache);
 
     private GameTree m_tree;
 
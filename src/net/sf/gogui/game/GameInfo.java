@@ -32,6 +32,7 @@ public class GameInfo
 
     public final void copyFrom(ConstGameInfo info)
     {
+        modified();
         GameInfo infoNonConst = (GameInfo)info;
         m_handicap = infoNonConst.m_handicap;
         m_komi = infoNonConst.m_komi;
@@ -127,6 +128,7 @@ public class GameInfo
 
     public void set(StringInfo type, String value)
     {
+        modified();
         value = checkEmpty(value);
         if (value == null)
             m_stringInfo.remove(type);
@@ -136,6 +138,7 @@ public class GameInfo
 
     public void set(StringInfoColor type, GoColor c, String value)
     {
+        modified();
         value = checkEmpty(value);
         BlackWhiteSet<String> set = m_stringInfoColor.get(type);
         if (set == null)
@@ -150,17 +153,20 @@ public class GameInfo
 
     public void setHandicap(int handicap)
     {
+        modified();
         m_handicap = handicap;
     }
 
     public void setKomi(Komi komi)
     {
+        modified();
         m_komi = komi;
     }
 
     /** Set time settings. */
     public void setTimeSettings(TimeSettings timeSettings)
     {
+        modified();
         m_timeSettings = timeSettings;
     }
 
@@ -186,8 +192,19 @@ public class GameInfo
         return playerWhite + " vs " + playerBlack + " (B)";
     }
 
+    /** Set the node that contains this game information.
+        Changes are counted as modifications of the tree of the node.
+        @see GameTree#getSnapshot */
+    void setNode(Node node)
+    {
+        m_node = node;
+    }
+
     private int m_handicap;
 
+    /** Node that contains this game information or null. */
+    private Node m_node;
+
     private Komi m_komi;
 
     private TimeSettings m_timeSettings;
@@ -204,4 +221,10 @@ public class GameInfo
             return null;
         return s;
     }
+
+    private void modified()
+    {
+        if (m_node != null)
+            m_node.countModification();
+    }
 }
@@ -3,7 +3,13 @@
 package net.sf.gogui.game;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sf.gogui.go.Board;
 import net.sf.gogui.go.ConstPointList;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -85,7 +91,10 @@ public class GameTree
     /** @see #getGameInfo */
     public ConstGameInfo getGameInfoConst(ConstNode node)
     {
-        return getGameInfo((Node)node);
+        assert NodeUtil.getRoot(node) == getRoot();
+        while (node.getGameInfoConst() == null)
+            node = node.getFatherConst();
+        return node.getGameInfoConst();
     }
 
     /** Get a non-const reference to a const node.
@@ -96,6 +105,19 @@ public class GameTree
         return (Node)node;
     }
 
+    /** Get the hash code of the position after a node.
+        @param node A node of this tree.
+        @return The hash code as returned by Board.getHashCode() after
+        updating a board to the node.
+        @see #getTranspositions */
+    public long getPositionHash(ConstNode node)
+    {
+        updateTranspositions();
+        Long hash = m_nodeHash.get(node);
+        assert hash != null;
+        return hash.longValue();
+    }
+
     public Node getRoot()
     {
         return m_root;
@@ -106,6 +128,44 @@ public class GameTree
         return m_root;
     }
 
+    /** Get a read-only copy of the tree for use in other threads.
+        Must be called in the thread that modifies the tree. The copy is
+        immutable and can be traversed in another thread, while this tree
+        is modified, for example for saving or analyzing it in the
+        background. It is created in time linear in the size of the tree
+        on the first call after a modification of a node of this tree and
+        reused otherwise.
+        @return A CompactGameTree copy of this tree. */
+    public ConstGameTree getSnapshot()
+    {
+        int modificationCount = m_root.getModificationCount();
+        if (m_snapshot == null
+            || m_snapshotModificationCount != modificationCount)
+        {
+            m_snapshot = new CompactGameTree(this);
+            m_snapshotModificationCount = modificationCount;
+        }
+        return m_snapshot;
+    }
+
+    /** Get all nodes with the same position as a given node.
+        The positions are compared by their hash codes, which include the
+        color to move and the ko point. The index of the positions is built
+        on the first call. Nodes appended later are added to it on the next
+        call, other changes of the moves, setup stones or the structure of
+        this tree rebuild it.
+        @param node A node of this tree.
+        @return The nodes with the same position including the given node
+        (unmodifiable). The nodes are in the order of the iteration through
+        the tree, apart from appended nodes, which follow the nodes that
+        were already in the index. */
+    public List<ConstNode> getTranspositions(ConstNode node)
+    {
+        List<ConstNode> nodes =
+            m_transpositions.get(Long.valueOf(getPositionHash(node)));
+        return Collections.unmodifiableList(nodes);
+    }
+
     public boolean hasVariations()
     {
         ConstNode node = m_root;
@@ -132,6 +192,76 @@ public class GameTree
 
     private final Node m_root;
 
+    /** Last snapshot or null.
+        @see #getSnapshot */
+    private CompactGameTree m_snapshot;
+
+    /** Modification count of the root node for which m_snapshot is
+        valid. */
+    private int m_snapshotModificationCount;
+
+    /** Version of the root node for which the transposition index is
+        valid. */
+    private int m_transpositionsVersion = -1;
+
+    private final Map<Long,ArrayList<ConstNode>> m_transpositions
+        = new HashMap<Long,ArrayList<ConstNode>>();
+
+    private final Map<ConstNode,Long> m_nodeHash
+        = new HashMap<ConstNode,Long>();
+
+    /** Add the nodes of a subtree to the transposition index.
+        Skips the subtrees of nodes that are already in the index. */
+    private void addTranspositions(ConstNode root, Board board,
+                                   BoardUpdater updater)
+    {
+        ArrayList<ConstNode> stack = new ArrayList<ConstNode>();
+        stack.add(root);
+        while (! stack.isEmpty())
+        {
+            ConstNode node = stack.remove(stack.size() - 1);
+            if (m_nodeHash.containsKey(node))
+                continue;
+            updater.update(this, node, board);
+            Long hash = Long.valueOf(board.getHashCode());
+            ArrayList<ConstNode> nodes = m_transpositions.get(hash);
+            if (nodes == null)
+            {
+                nodes = new ArrayList<ConstNode>(1);
+                m_transpositions.put(hash, nodes);
+            }
+            nodes.add(node);
+            m_nodeHash.put(node, hash);
+            // Iterating in pre-order lets the updater undo and play only a
+            // few moves per node
+            for (int i = node.getNumberChildren() - 1; i >= 0; --i)
+                stack.add(node.getChildConst(i));
+        }
+    }
+
+    /** Update the transposition index, if the tree was changed.
+        Adds the nodes that were appended since the last update, which
+        takes time proportional to their number and depth. Other changes
+        of moves, setup stones or the tree structure rebuild the index. */
+    private void updateTranspositions()
+    {
+        int version = m_root.getPositionVersion();
+        List<Node> appended = m_root.takeAppendedNodes();
+        if (version == m_transpositionsVersion && appended.isEmpty())
+            return;
+        if (version != m_transpositionsVersion)
+        {
+            m_transpositions.clear();
+            m_nodeHash.clear();
+            appended = Collections.singletonList(m_root);
+            m_transpositionsVersion = version;
+        }
+        Board board = new Board(m_boardSize);
+        BoardUpdater updater = new BoardUpdater();
+        for (Node node : appended)
+            addTranspositions(node, board, updater);
+    }
+
     private void setDate()
     {
         Calendar cal = Calendar.getInstance();
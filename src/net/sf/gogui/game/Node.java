@@ -5,9 +5,15 @@ package net.sf.gogui.game;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 import net.sf.gogui.go.BlackWhiteSet;
+import net.sf.gogui.go.BitPointList;
 import net.sf.gogui.go.BlackWhiteEmptySet;
 import net.sf.gogui.go.ConstPointList;
 import net.sf.gogui.go.GoColor;
@@ -25,7 +31,9 @@ import net.sf.gogui.util.StringUtil;
     search traces of Explorer. */
 final class ExtraInfo
 {
-    public Map<MarkType,PointList> m_marked;
+    /** Markup indexed by MarkType.ordinal().
+        Bit sets, because many nodes in search traces contain markup. */
+    public BitPointList[] m_marked;
 
     /** Node value.
         Float instead of double for space efficiency. */
@@ -35,8 +43,11 @@ final class ExtraInfo
 
     public boolean isEmpty()
     {
-        return ((m_marked == null || m_marked.size() == 0)
-                && Float.isNaN(m_value)
+        if (m_marked != null)
+            for (BitPointList pointList : m_marked)
+                if (pointList != null && pointList.size() > 0)
+                    return false;
+        return (Float.isNaN(m_value)
                 && (m_moreExtraInfo == null || m_moreExtraInfo.isEmpty()));
     }
 }
@@ -70,10 +81,12 @@ final class SetupInfo
     public GoColor m_player;
 
     /** Stones added or removed.
-        The array is indexed by Black, White, Empty. */
-    public BlackWhiteEmptySet<PointList> m_stones
-        = new BlackWhiteEmptySet<PointList>(new PointList(), new PointList(),
-                                            new PointList());
+        The array is indexed by Black, White, Empty. The lists are replaced
+        instead of modified (see Node.getSetup()). */
+    public BlackWhiteEmptySet<BitPointList> m_stones
+        = new BlackWhiteEmptySet<BitPointList>(new BitPointList(),
+                                               new BitPointList(),
+                                               new BitPointList());
 
     public boolean isEmpty()
     {
@@ -99,6 +112,43 @@ final class TimeInfo
     }
 }
 
+/** Modification stamps and cached information of a game tree.
+    Shared by all nodes of a tree. Only accessed by the thread that modifies
+    the tree, so trees built in different threads don't interfere. */
+final class TreeState
+{
+    /** Incremented on each change of the tree structure, of a move or of
+        the setup, apart from appending nodes, which does not change the
+        positions of existing nodes. */
+    public int m_positionVersion;
+
+    /** Nodes appended since the last call of Node.takeAppendedNodes(),
+        or null if the appended nodes are not recorded. */
+    public ArrayList<Node> m_appended;
+
+    /** Incremented on each change of any information in the tree. */
+    public int m_modificationCount;
+
+    /** Cached depth (upper 32 bits) and move number (lower 32 bits) of
+        nodes.
+        Created on the first use. Only contains the nodes, for which the
+        information was requested, and at most Node.MAX_CACHE_SIZE nodes.
+        Set to null on changes of the tree structure and of moves, apart
+        from appending new nodes. */
+    public IdentityHashMap<Node,Long> m_pathInfo;
+
+    /** Cached number of nodes (upper 32 bits) and moves (lower 32 bits)
+        in the main variation of nodes.
+        Like m_pathInfo, but also set to null, if a first child is
+        appended. */
+    public IdentityHashMap<Node,Long> m_mainVariationInfo;
+
+    /** Cached number of nodes in the subtree of nodes.
+        Like m_pathInfo, but not cleared on changes of moves. Updated for
+        the ancestors, if a new node is appended. */
+    public IdentityHashMap<Node,Integer> m_subtreeSize;
+}
+
 /** Node in a game tree.
     The memory requirement is optimized for nodes containing only a move and
     comment property (e.g. for GNU Go's large SGF traces).
@@ -123,6 +173,7 @@ public final class Node
     @SuppressWarnings("unchecked")
     public void append(Node node)
     {
+        countModification();
         assert node.m_father == null;
         if (m_children == null)
         {
@@ -143,6 +194,25 @@ public final class Node
             }
         }
         node.m_father = this;
+        TreeState state = getTreeState();
+        if (node.m_treeState == null && ! node.hasChildren())
+        {
+            // New node, changes only the main variation information, if
+            // it is the first child
+            node.m_treeState = state;
+            if (m_children == node)
+                state.m_mainVariationInfo = null;
+            if (state.m_subtreeSize != null)
+                addSubtreeSize(state.m_subtreeSize);
+        }
+        else
+        {
+            if (node.m_treeState != state)
+                node.setTreeState(state);
+            clearCache();
+        }
+        if (state.m_appended != null)
+            state.m_appended.add(node);
     }
 
     /** Add a markup.
@@ -150,17 +220,16 @@ public final class Node
         @param type The type of the markup from Node.MARK_TYPES. */
     public void addMarked(GoPoint point, MarkType type)
     {
+        countModification();
         assert point != null;
-        Map<MarkType,PointList> marked = createMarked();
-        PointList pointList = (PointList)marked.get(type);
+        BitPointList[] marked = createMarked();
+        BitPointList pointList = marked[type.ordinal()];
         if (pointList == null)
         {
-            pointList = new PointList(1);
-            pointList.add(point);
-            marked.put(type, pointList);
+            pointList = new BitPointList();
+            marked[type.ordinal()] = pointList;
         }
-        else if (! pointList.contains(point))
-            pointList.add(point);
+        pointList.add(point);
     }
 
     /** Add other unspecified SGF property.
@@ -176,34 +245,47 @@ public final class Node
         @param values The values of the property */
     public void addSgfProperty(String label, ArrayList<String> values)
     {
+        countModification();
         createSgfProperties().add(label, values);
     }
 
     public void addSgfProperty(String label, String value)
     {
+        countModification();
         createSgfProperties().add(label, value);
     }
 
     /** Add or remove a setup stone.
-        It is not checked, if this stone is already in the list of added
-        or removed stones.
+        It is not checked, if this stone is already in one of the other lists
+        of added or removed stones. The lists of setup stones are sorted and
+        contain each point at most once.
         @param c The color of the stone (Black or White; Empty for removal).
         @param p The location of the setup stone. */
     public void addStone(GoColor c, GoPoint p)
     {
+        countModification();
         assert p != null;
-        createSetupInfo().m_stones.get(c).add(p);
+        BlackWhiteEmptySet<BitPointList> stones = createSetupInfo().m_stones;
+        BitPointList list = new BitPointList(stones.get(c));
+        list.add(p);
+        stones.set(c, list);
+        incrementPositionVersion();
     }
 
     /** Add or remove a list of setup stones.
-        It is not checked, if this stone is already in the list of added
-        or removed stones.
+        It is not checked, if this stone is already in one of the other lists
+        of added or removed stones.
         @param c The color of the stone (Black or White; Empty for removal).
         @param list The locations of the setup stones. */
     public void addStones(GoColor c, ConstPointList list)
     {
+        countModification();
         assert list != null;
-        createSetupInfo().m_stones.get(c).addAllFromConst(list);
+        BlackWhiteEmptySet<BitPointList> stones = createSetupInfo().m_stones;
+        BitPointList newList = new BitPointList(stones.get(c));
+        newList.addAll(list);
+        stones.set(c, newList);
+        incrementPositionVersion();
     }
 
     /** Create game information or return it if already existing. */
@@ -211,7 +293,11 @@ public final class Node
     {
         MoreExtraInfo moreExtraInfo = createMoreExtraInfo();
         if (moreExtraInfo.m_info == null)
+        {
+            countModification();
             moreExtraInfo.m_info = new GameInfo();
+            moreExtraInfo.m_info.setNode(this);
+        }
         return moreExtraInfo.m_info;
     }
 
@@ -267,14 +353,7 @@ public final class Node
     {
         if (m_comment == null)
             return null;
-        try
-        {
-            return new String(m_comment, "UTF-8");
-        }
-        catch (UnsupportedEncodingException e)
-        {
-            return new String(m_comment);
-        }
+        return decodeComment(m_comment);
     }
 
     /** Get father node.
@@ -291,6 +370,10 @@ public final class Node
         return m_father;
     }
 
+    /** Get game information.
+        Changes of the returned object are counted as modifications of the
+        tree.
+        @return The game information or null, if the node has none. */
     public GameInfo getGameInfo()
     {
         if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
@@ -300,7 +383,9 @@ public final class Node
 
     public ConstGameInfo getGameInfoConst()
     {
-        return getGameInfo();
+        if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
+            return null;
+        return m_extraInfo.m_moreExtraInfo.m_info;
     }
 
     /** Get label for a location on the board.
@@ -308,38 +393,39 @@ public final class Node
         @return Label at location or null, if no label. */
     public String getLabel(GoPoint point)
     {
-        Map<GoPoint,String> map = getLabels();
+        Map<GoPoint,String> map = getLabelsConst();
         if (map == null || ! map.containsKey(point))
             return null;
         return map.get(point);
     }
 
     /** Get all labels on the board.
+        Same as getLabelsUnmodifiable(); use setLabel() for changing labels.
         @return Map containing (Point,String) pairs. */
     public Map<GoPoint,String> getLabels()
     {
-        if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
-            return null;
-        return m_extraInfo.m_moreExtraInfo.m_label;
+        return getLabelsUnmodifiable();
     }
 
     /** Get all labels on the board (unmodifiable). */
     public Map<GoPoint,String> getLabelsUnmodifiable()
     {
-        Map<GoPoint,String> labels = getLabels();
+        Map<GoPoint,String> labels = getLabelsConst();
         if (labels == null)
             return null;
         return Collections.unmodifiableMap(labels);
     }
 
     /** Get all markups of a type.
+        Same as getMarkedConst(); use addMarked() and removeMarked() for
+        changing the markup.
         @param type Markup type from Node.MARK_TYPES.
         @return Map containing (Point,String) pairs. */
-    public PointList getMarked(MarkType type)
+    public ConstPointList getMarked(MarkType type)
     {
         if (m_extraInfo == null || m_extraInfo.m_marked == null)
             return null;
-        return m_extraInfo.m_marked.get(type);
+        return m_extraInfo.m_marked[type.ordinal()];
     }
 
     /** Get all markups of a type (const).
@@ -347,7 +433,9 @@ public final class Node
         @return Map containing (Point,String) pairs. */
     public ConstPointList getMarkedConst(MarkType type)
     {
-        return getMarked(type);
+        if (m_extraInfo == null || m_extraInfo.m_marked == null)
+            return null;
+        return m_extraInfo.m_marked[type.ordinal()];
     }
 
     /** Get move contained in this node.
@@ -393,6 +481,9 @@ public final class Node
     }
 
     /** Get setup stones.
+        The list is never modified; changes of the setup stones replace it
+        by a new list, so comparing the returned lists by identity detects
+        changes.
         @param c Color of the stones; EMPTY for removed stones.
         @return The added or removed stones. */
     public ConstPointList getSetup(GoColor c)
@@ -404,6 +495,8 @@ public final class Node
     }
 
     /** Get other unspecified SGF properties.
+        Changes of the returned object are counted as modifications of the
+        tree.
         @return The map with other SGF properties mapping String label
         to String value
         @see #addSgfProperty */
@@ -420,7 +513,9 @@ public final class Node
         @see #addSgfProperty */
     public ConstSgfProperties getSgfPropertiesConst()
     {
-        return getSgfProperties();
+        if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
+            return null;
+        return m_extraInfo.m_moreExtraInfo.m_sgfProperties;
     }
 
     /** Time left for color after move was made.
@@ -509,18 +604,22 @@ public final class Node
     @SuppressWarnings("unchecked")
     public void makeMainVariation(Node child)
     {
+        countModification();
         assert child.isChildOf(this);
         if (getNumberChildren() <= 1)
             return;
         ArrayList<Node> list = (ArrayList<Node>)m_children;
         list.remove(child);
         list.add(0, child);
+        getTreeState().m_mainVariationInfo = null;
+        incrementPositionVersion();
     }
 
     /** Remove child of this node.
         @param child Child to remove. */
     public void removeChild(Node child)
     {
+        countModification();
         assert child.isChildOf(this);
         int numberChildren = getNumberChildren();
         if (numberChildren == 1)
@@ -535,6 +634,8 @@ public final class Node
         else
             assert false;
         child.m_father = null;
+        clearCache();
+        incrementPositionVersion();
     }
 
     /** Remove markup.
@@ -542,9 +643,11 @@ public final class Node
         @param type Type of the markup from Node.MARK_TYPES. */
     public void removeMarked(GoPoint point, MarkType type)
     {
+        countModification();
         assert point != null;
-        Map<MarkType,PointList> marked = createMarked();
-        PointList pointList = (PointList)marked.get(type);
+        if (m_extraInfo == null || m_extraInfo.m_marked == null)
+            return;
+        BitPointList pointList = m_extraInfo.m_marked[type.ordinal()];
         if (pointList != null)
             pointList.remove(point);
     }
@@ -554,21 +657,34 @@ public final class Node
         @param p Location of the setup. */
     public void removeSetup(GoPoint p)
     {
+        countModification();
         assert p != null;
         SetupInfo setupInfo = getSetupInfo();
         if (setupInfo == null)
             return;
         for (GoColor c : BLACK_WHITE_EMPTY)
-            while (setupInfo.m_stones.get(c).remove(p));
+        {
+            BitPointList list = setupInfo.m_stones.get(c);
+            if (list.contains(p))
+            {
+                list = new BitPointList(list);
+                list.remove(p);
+                setupInfo.m_stones.set(c, list);
+            }
+        }
+        incrementPositionVersion();
     }
 
     /** Remove all children but the first. */
     public void removeVariations()
     {
+        countModification();
         if (getNumberChildren() <= 1)
             return;
         Node child = getChild(0);
         m_children = child;
+        clearCache();
+        incrementPositionVersion();
     }
 
     /** Store comment in this node.
@@ -577,35 +693,43 @@ public final class Node
         node. */
     public void setComment(String comment)
     {
+        countModification();
         if (StringUtil.isEmpty(comment))
         {
             m_comment = null;
             return;
         }
-        try
-        {
-            m_comment = comment.getBytes("UTF-8");
-        }
-        catch (UnsupportedEncodingException e)
-        {
-            m_comment = comment.getBytes();
-        }
+        m_comment = encodeComment(comment);
     }
 
     /** Set father of this node.
         @param father The new father. */
     public void setFather(Node father)
     {
+        countModification();
+        clearCache();
+        incrementPositionVersion();
         m_father = father;
+        if (father != null)
+        {
+            TreeState state = father.getTreeState();
+            if (m_treeState != state)
+                setTreeState(state);
+            father.countModification();
+            father.clearCache();
+            father.incrementPositionVersion();
+        }
     }
 
     /** Add label at a location on the board.
-        Whitespaces will be trimmed.
+        Whitespaces will be trimmed. The text is interned, because traces
+        often use the same short labels in many nodes.
         @param point The location.
         @param label The text of the label; empty string or null to delete
         the label. */
     public void setLabel(GoPoint point, String label)
     {
+        countModification();
         assert point != null;
         Map<GoPoint,String> map = createLabel();
         map.remove(point);
@@ -614,14 +738,20 @@ public final class Node
         label = label.trim();
         if (label.equals(""))
             return;
-        map.put(point, label);
+        map.put(point, label.intern());
     }
 
     /** Set move stored in this node.
         @param move The move or null, if no move. */
     public void setMove(Move move)
     {
+        countModification();
         m_move = move;
+        // Does not change the subtree sizes
+        TreeState state = getTreeState();
+        state.m_pathInfo = null;
+        state.m_mainVariationInfo = null;
+        incrementPositionVersion();
     }
 
     /** Set byoyomi moves left.
@@ -629,6 +759,7 @@ public final class Node
         @param n Number of moves left. */
     public void setMovesLeft(GoColor c, int n)
     {
+        countModification();
         assert c.isBlackWhite();
         createTimeInfo().m_movesLeft.set(c, n);
     }
@@ -638,6 +769,7 @@ public final class Node
         @param seconds Time left in seconds. */
     public void setTimeLeft(GoColor c, double seconds)
     {
+        countModification();
         assert c.isBlackWhite();
         createTimeInfo().m_timeLeft.set(c, seconds);
     }
@@ -646,8 +778,10 @@ public final class Node
         @param color Color to play. */
     public void setPlayer(GoColor color)
     {
+        countModification();
         assert color.isBlackWhite();
         createSetupInfo().m_player = color;
+        incrementPositionVersion();
     }
 
     /** Set value for this node.
@@ -655,18 +789,18 @@ public final class Node
         @param value The value */
     public void setValue(float value)
     {
+        countModification();
         createExtraInfo();
         m_extraInfo.m_value = value;
     }
 
     /** Sort the lists of setup stones (add stones and remove stones.
         Sorted lists for setup stones make it easier to compare, if
-        two nodes have the same lists. */
+        two nodes have the same lists.
+        Does nothing, because the lists are always sorted. Kept for
+        compatibility. */
     public void sortSetup()
     {
-        for (GoColor c : BLACK_WHITE_EMPTY)
-            if (getSetup(c).size() > 0)
-                Collections.sort(getSetupInfo().m_stones.get(c));
     }
 
     /** Return next child after a given child.
@@ -703,9 +837,150 @@ public final class Node
         return getChildConst(i - 1);
     }
 
+    /** Count a modification of the tree.
+        Also used by GameInfo and SgfProperties of the node.
+        @see #getModificationCount */
+    void countModification()
+    {
+        ++getTreeState().m_modificationCount;
+    }
+
+    /** Get the comment as stored in the node.
+        The array is never modified, setComment() replaces it.
+        @return The comment encoded in UTF-8, possibly compressed, or null.
+        @see #decodeComment */
+    byte[] getCommentBytes()
+    {
+        return m_comment;
+    }
+
+    /** Get the number of modifications of the tree of this node.
+        Changes on each change of any node of the tree. Only valid in the
+        thread that modifies the tree. */
+    int getModificationCount()
+    {
+        return getTreeState().m_modificationCount;
+    }
+
+    /** Get the position version of the tree of this node.
+        Changes, if the structure, a move or a setup of the tree changes,
+        but not if nodes are appended. Only valid in the thread that
+        modifies the tree. */
+    int getPositionVersion()
+    {
+        return getTreeState().m_positionVersion;
+    }
+
+    /** Get the nodes appended to the tree of this node since the last
+        call.
+        Starts recording the appended nodes on the first call.
+        @return The appended nodes, which can have children that were
+        appended before or after them. Empty on the first call. */
+    List<Node> takeAppendedNodes()
+    {
+        TreeState state = getTreeState();
+        List<Node> nodes = state.m_appended;
+        state.m_appended = new ArrayList<Node>();
+        if (nodes == null)
+            return Collections.emptyList();
+        return nodes;
+    }
+
+    /** Get the number of nodes in the subtree of this node.
+        Computed on the first call and then updated incrementally, if nodes
+        are appended.
+        @see NodeUtil#subtreeSize */
+    int getSubtreeSize()
+    {
+        TreeState state = getTreeState();
+        if (state.m_subtreeSize == null)
+            state.m_subtreeSize = new IdentityHashMap<Node,Integer>();
+        IdentityHashMap<Node,Integer> cache = state.m_subtreeSize;
+        Integer size = cache.get(this);
+        if (size != null)
+            return size.intValue();
+        // Don't use recursion, because trees can be very deep
+        int result = 0;
+        ArrayList<Node> stack = new ArrayList<Node>();
+        stack.add(this);
+        while (! stack.isEmpty())
+        {
+            Node node = stack.remove(stack.size() - 1);
+            ++result;
+            for (int i = 0; i < node.getNumberChildren(); ++i)
+            {
+                Node child = node.getChild(i);
+                Integer childSize = cache.get(child);
+                if (childSize == null)
+                    stack.add(child);
+                else
+                    result += childSize.intValue();
+            }
+        }
+        putCache(cache, this, Integer.valueOf(result));
+        return result;
+    }
+
+    /** Get the number of nodes on the path to the root.
+        @see NodeUtil#getDepth */
+    int getDepth()
+    {
+        return (int)(getPathInfo() >>> 32);
+    }
+
+    /** Get the number of moves on the path from the root to this node.
+        @see NodeUtil#getMoveNumber */
+    int getMoveNumber()
+    {
+        return (int)getPathInfo();
+    }
+
+    /** Get the number of moves in the main variation after this node.
+        @see NodeUtil#getMovesLeft */
+    int getMovesLeftInMainVariation()
+    {
+        return (int)getMainVariationInfo();
+    }
+
+    /** Get the number of nodes in the main variation starting with this
+        node.
+        @see NodeUtil#getNodesLeft */
+    int getNodesLeft()
+    {
+        return (int)(getMainVariationInfo() >>> 32);
+    }
+
+    /** Maximum number of nodes in each cache of the tree state.
+        The cache is cleared, if it is full. Limits the memory used by the
+        caches, if the information is requested for all nodes, e.g. while
+        writing a file. */
+    private static final int MAX_CACHE_SIZE = 10000;
+
+    /** First byte of a compressed comment.
+        Cannot occur in UTF-8. */
+    private static final byte COMPRESSED_MARKER = (byte)0xff;
+
+    /** Preset dictionary for compressing comments.
+        Contains words common in game commentary and engine output, which
+        helps to compress comments of a few hundred bytes. */
+    private static final byte[] COMPRESSION_DICTIONARY =
+        getAsciiBytes("pass resign komi handicap ko atari capture dead alive "
+                      + "territory influence moyo joseki fuseki tesuji sente "
+                      + "gote seki ladder net Black White black white wins "
+                      + "move moves best variation better mistake good bad "
+                      + "is a the of to and winrate visits playouts score "
+                      + "lead policy value nodes time seconds depth pv PV ");
+
+    /** Minimum size of the UTF-8 encoded comment in bytes for storing it
+        compressed.
+        Compression saves memory for large comments like engine output, at
+        the cost of decompressing on each call of getComment(). */
+    private static final int COMPRESSION_THRESHOLD = 512;
+
     /** Comment stored as bytes.
         Store comments in UTF-8, because that saves up to a factor of 2 in
-        size compared to a string. */
+        size compared to a string. Large comments are compressed.
+        @see #encodeComment */
     private byte[] m_comment;
 
     private ExtraInfo m_extraInfo;
@@ -717,6 +992,146 @@ public final class Node
     /** Node if one child only, ArrayList otherwise. */
     private Object m_children;
 
+    /** Modification stamps and cached information of the tree.
+        Shared with the father and the children. Created on the first use,
+        if the node was not appended to another node yet.
+        @see #getTreeState */
+    private TreeState m_treeState;
+
+    /** Add a new node to the cached subtree sizes of this node and its
+        ancestors. */
+    private void addSubtreeSize(IdentityHashMap<Node,Integer> cache)
+    {
+        if (cache.isEmpty())
+            return;
+        for (Node node = this; node != null; node = node.m_father)
+        {
+            Integer size = cache.get(node);
+            if (size != null)
+                cache.put(node, Integer.valueOf(size.intValue() + 1));
+        }
+    }
+
+    /** Decode a comment as stored in a node.
+        @param bytes The UTF-8 encoded comment, or COMPRESSED_MARKER followed
+        by the length of the UTF-8 encoded comment in 4 bytes and the
+        deflated UTF-8 encoded comment.
+        @throws IllegalStateException If the compressed comment is corrupt
+        or truncated. Cannot happen for comments created by
+        encodeComment(). */
+    static String decodeComment(byte[] bytes)
+    {
+        if (bytes.length > 0 && bytes[0] == COMPRESSED_MARKER)
+        {
+            if (bytes.length < 5)
+                throw new IllegalStateException("Truncated comment");
+            int length = ((bytes[1] & 0xff) << 24) | ((bytes[2] & 0xff) << 16)
+                | ((bytes[3] & 0xff) << 8) | (bytes[4] & 0xff);
+            byte[] result = new byte[length];
+            Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput(bytes, 5, bytes.length - 5);
+                int n = 0;
+                while (n < length)
+                {
+                    int k = inflater.inflate(result, n, length - n);
+                    if (k == 0 && inflater.needsDictionary())
+                        inflater.setDictionary(COMPRESSION_DICTIONARY);
+                    else if (k == 0 && (inflater.finished()
+                                        || inflater.needsInput()))
+                        break;
+                    n += k;
+                }
+                if (n < length)
+                    throw new IllegalStateException("Truncated comment");
+            }
+            catch (DataFormatException e)
+            {
+                throw new IllegalStateException("Corrupt comment", e);
+            }
+            finally
+            {
+                inflater.end();
+            }
+            bytes = result;
+        }
+        try
+        {
+            return new String(bytes, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            return new String(bytes);
+        }
+    }
+
+    /** Encode a comment for storing it in a node.
+        @see #decodeComment */
+    static byte[] encodeComment(String comment)
+    {
+        byte[] bytes;
+        try
+        {
+            bytes = comment.getBytes("UTF-8");
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            bytes = comment.getBytes();
+        }
+        if (bytes.length < COMPRESSION_THRESHOLD)
+            return bytes;
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        byte[] buffer = new byte[bytes.length + 5];
+        int n;
+        try
+        {
+            deflater.setDictionary(COMPRESSION_DICTIONARY);
+            deflater.setInput(bytes);
+            deflater.finish();
+            n = deflater.deflate(buffer, 5, buffer.length - 5);
+            if (! deflater.finished())
+                // Not smaller than the uncompressed comment
+                return bytes;
+        }
+        finally
+        {
+            deflater.end();
+        }
+        if (n + 5 >= bytes.length)
+            return bytes;
+        byte[] result = new byte[n + 5];
+        result[0] = COMPRESSED_MARKER;
+        result[1] = (byte)(bytes.length >>> 24);
+        result[2] = (byte)(bytes.length >>> 16);
+        result[3] = (byte)(bytes.length >>> 8);
+        result[4] = (byte)bytes.length;
+        System.arraycopy(buffer, 5, result, 5, n);
+        return result;
+    }
+
+    /** Convert a string of ASCII characters into bytes.
+        Does not depend on the platform charset, because the compressed
+        comments depend on the exact bytes of the dictionary. */
+    private static byte[] getAsciiBytes(String s)
+    {
+        byte[] result = new byte[s.length()];
+        for (int i = 0; i < s.length(); ++i)
+        {
+            assert s.charAt(i) < 128;
+            result[i] = (byte)s.charAt(i);
+        }
+        return result;
+    }
+
+    /** Get the labels without counting a modification. */
+    private Map<GoPoint,String> getLabelsConst()
+    {
+        if (m_extraInfo == null || m_extraInfo.m_moreExtraInfo == null)
+            return null;
+        return m_extraInfo.m_moreExtraInfo.m_label;
+    }
+
     private void createExtraInfo()
     {
         if (m_extraInfo == null)
@@ -739,11 +1154,11 @@ public final class Node
         return moreExtraInfo.m_label;
     }
 
-    private Map<MarkType,PointList> createMarked()
+    private BitPointList[] createMarked()
     {
         createExtraInfo();
         if (m_extraInfo.m_marked == null)
-            m_extraInfo.m_marked = new TreeMap<MarkType,PointList>();
+            m_extraInfo.m_marked = new BitPointList[MarkType.values().length];
         return m_extraInfo.m_marked;
     }
 
@@ -759,7 +1174,10 @@ public final class Node
     {
         MoreExtraInfo moreExtraInfo = createMoreExtraInfo();
         if (moreExtraInfo.m_sgfProperties == null)
+        {
             moreExtraInfo.m_sgfProperties = new SgfProperties();
+            moreExtraInfo.m_sgfProperties.setNode(this);
+        }
         return moreExtraInfo.m_sgfProperties;
     }
 
@@ -784,4 +1202,159 @@ public final class Node
             return null;
         return m_extraInfo.m_moreExtraInfo.m_timeInfo;
     }
+
+    /** Get the main variation information from the cache or compute it.
+        Uses the information of the first child or of the father, if this
+        node is the first child, if it is cached. Otherwise follows the
+        main variation down to the first node with cached information.
+        @return The number of nodes in the upper 32 bits and the number of
+        moves in the lower 32 bits. */
+    private long getMainVariationInfo()
+    {
+        TreeState state = getTreeState();
+        if (state.m_mainVariationInfo == null)
+            state.m_mainVariationInfo = new IdentityHashMap<Node,Long>();
+        IdentityHashMap<Node,Long> cache = state.m_mainVariationInfo;
+        Long info = cache.get(this);
+        if (info != null)
+            return info.longValue();
+        Node child = getChild();
+        Long childInfo = (child == null ? null : cache.get(child));
+        Long fatherInfo = null;
+        if (m_father != null && m_father.getChild() == this)
+            fatherInfo = cache.get(m_father);
+        long result;
+        if (child == null)
+            result = (1L << 32);
+        else if (childInfo != null)
+            result = childInfo.longValue() + (1L << 32)
+                + (child.m_move == null ? 0 : 1);
+        else if (fatherInfo != null)
+            result = fatherInfo.longValue() - (1L << 32)
+                - (m_move == null ? 0 : 1);
+        else
+        {
+            int nodes = 1;
+            int moves = 0;
+            Node node = child;
+            while (node != null)
+            {
+                Long nodeInfo = cache.get(node);
+                if (node.m_move != null)
+                    ++moves;
+                if (nodeInfo != null)
+                {
+                    nodes += (int)(nodeInfo.longValue() >>> 32);
+                    moves += (int)nodeInfo.longValue();
+                    break;
+                }
+                ++nodes;
+                node = node.getChild();
+            }
+            result = ((long)nodes << 32) | moves;
+        }
+        putCache(cache, this, Long.valueOf(result));
+        return result;
+    }
+
+    /** Get the depth and move number from the cache or compute them.
+        Uses the information of a child, if it is cached. Otherwise
+        follows the path to the root up to the first node with cached
+        information. Usually this is the father, if it was visited before.
+        @return The depth in the upper 32 bits and the move number in the
+        lower 32 bits. */
+    private long getPathInfo()
+    {
+        TreeState state = getTreeState();
+        if (state.m_pathInfo == null)
+            state.m_pathInfo = new IdentityHashMap<Node,Long>();
+        IdentityHashMap<Node,Long> cache = state.m_pathInfo;
+        Long info = cache.get(this);
+        if (info != null)
+            return info.longValue();
+        for (int i = 0; i < getNumberChildren(); ++i)
+        {
+            Node child = getChild(i);
+            Long childInfo = cache.get(child);
+            if (childInfo != null)
+            {
+                long result = childInfo.longValue() - (1L << 32)
+                    - (child.m_move == null ? 0 : 1);
+                putCache(cache, this, Long.valueOf(result));
+                return result;
+            }
+        }
+        int depth = 0;
+        int moveNumber = 0;
+        Node node = this;
+        while (true)
+        {
+            if (node.m_move != null)
+                ++moveNumber;
+            Node father = node.m_father;
+            if (father == null)
+                break;
+            ++depth;
+            Long fatherInfo = cache.get(father);
+            if (fatherInfo != null)
+            {
+                depth += (int)(fatherInfo.longValue() >>> 32);
+                moveNumber += (int)fatherInfo.longValue();
+                break;
+            }
+            node = father;
+        }
+        long result = ((long)depth << 32) | moveNumber;
+        putCache(cache, this, Long.valueOf(result));
+        return result;
+    }
+
+    private TreeState getTreeState()
+    {
+        if (m_treeState == null)
+            m_treeState = new TreeState();
+        return m_treeState;
+    }
+
+    private void incrementPositionVersion()
+    {
+        ++getTreeState().m_positionVersion;
+    }
+
+    /** Clear the cached information of the tree.
+        Used after changes that can change the information of existing
+        nodes. */
+    private void clearCache()
+    {
+        TreeState state = getTreeState();
+        state.m_pathInfo = null;
+        state.m_mainVariationInfo = null;
+        state.m_subtreeSize = null;
+    }
+
+    /** Put information into a cache of the tree state.
+        Clears the cache, if it is full. */
+    private static <V> void putCache(IdentityHashMap<Node,V> cache,
+                                     Node node, V info)
+    {
+        if (cache.size() >= MAX_CACHE_SIZE)
+            cache.clear();
+        cache.put(node, info);
+    }
+
+    /** Use the modification stamps and cache of another tree for this
+        subtree.
+        Used if the subtree is appended to a node of another tree. */
+    private void setTreeState(TreeState state)
+    {
+        ArrayList<Node> stack = new ArrayList<Node>();
+        stack.add(this);
+        while (! stack.isEmpty())
+        {
+            Node node = stack.remove(stack.size() - 1);
+            node.m_treeState = state;
+            for (int i = 0; i < node.getNumberChildren(); ++i)
+                stack.add(node.getChild(i));
+        }
+    }
 }
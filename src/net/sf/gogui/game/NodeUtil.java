@@ -285,6 +285,8 @@ public final class NodeUtil
         root node has depth 0). */
     public static int getDepth(ConstNode node)
     {
+        if (node instanceof Node)
+            return ((Node)node).getDepth();
         int depth = 0;
         while (node.getFatherConst() != null)
         {
@@ -308,6 +310,8 @@ public final class NodeUtil
         the root node to the given node, including the given node. */
     public static int getMoveNumber(ConstNode node)
     {
+        if (node instanceof Node)
+            return ((Node)node).getMoveNumber();
         int moveNumber = 0;
         while (node != null)
         {
@@ -321,6 +325,8 @@ public final class NodeUtil
     /** Moves left in main variation. */
     public static int getMovesLeft(ConstNode node)
     {
+        if (node instanceof Node)
+            return ((Node)node).getMovesLeftInMainVariation();
         int movesLeft = 0;
         node = node.getChildConst();
         while (node != null)
@@ -359,6 +365,8 @@ public final class NodeUtil
     /** Nodes left in main variation. */
     public static int getNodesLeft(ConstNode node)
     {
+        if (node instanceof Node)
+            return ((Node)node).getNodesLeft();
         int nodesLeft = 0;
         while (node != null)
         {
@@ -754,6 +762,8 @@ public final class NodeUtil
         than a given limit. */
     public static boolean subtreeGreaterThan(ConstNode node, int size)
     {
+        if (node instanceof Node)
+            return (((Node)node).getSubtreeSize() > size);
         int n = 0;
         int depth = NodeUtil.getDepth(node);
         while (node != null)
@@ -772,6 +782,8 @@ public final class NodeUtil
         node). */
     public static int subtreeSize(ConstNode node)
     {
+        if (node instanceof Node)
+            return ((Node)node).getSubtreeSize();
         int n = 0;
         int depth = NodeUtil.getDepth(node);
         while (node != null)
@@ -31,11 +31,13 @@ public final class SgfProperties
 
     public void add(String key, ArrayList<String> values)
     {
+        modified();
         m_properties.put(key, new ArrayList<String>(values));
     }
 
     public void add(String key, String value)
     {
+        modified();
         ArrayList<String> values = new ArrayList<String>();
         values.add(value);
         m_properties.put(key, values);
@@ -75,8 +77,26 @@ public final class SgfProperties
 
     public void remove(String key)
     {
+        modified();
         m_properties.remove(key);
     }
 
+    /** Set the node that contains these properties.
+        Changes are counted as modifications of the tree of the node.
+        @see GameTree#getSnapshot */
+    void setNode(Node node)
+    {
+        m_node = node;
+    }
+
     private Map<String,ArrayList<String>> m_properties;
+
+    /** Node that contains these properties or null. */
+    private Node m_node;
+
+    private void modified()
+    {
+        if (m_node != null)
+            m_node.countModification();
+    }
 }
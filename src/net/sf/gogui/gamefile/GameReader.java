@@ -12,6 +12,7 @@ import java.util.Locale;
 import net.sf.gogui.game.GameTree;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.FileUtil;
+import net.sf.gogui.util.MappedFileInputStream;
 import net.sf.gogui.util.ProgressShow;
 import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.xml.XmlReader;
@@ -27,14 +28,29 @@ public class GameReader
         GameFile.Format format = detectFormat(file);
         m_gameFile.m_file = file;
         m_gameFile.m_format = format;
-        InputStream in;
-        try
+        InputStream in = null;
+        if (file.length() >= MAPPED_INPUT_THRESHOLD)
         {
-            in = new FileInputStream(file);
+            try
+            {
+                in = new MappedFileInputStream(file);
+            }
+            catch (IOException e)
+            {
+                // Fall back to FileInputStream, which also reports the
+                // error, if the file cannot be opened
+            }
         }
-        catch (FileNotFoundException e)
+        if (in == null)
         {
-            throw new ErrorMessage("File \"" + file + "\"not found");
+            try
+            {
+                in = new FileInputStream(file);
+            }
+            catch (FileNotFoundException e)
+            {
+                throw new ErrorMessage("File \"" + file + "\"not found");
+            }
         }
         switch (format)
         {
@@ -77,6 +93,9 @@ public class GameReader
         return m_warnings;
     }
 
+    /** Minimum file size for reading files with memory mapping. */
+    private static final long MAPPED_INPUT_THRESHOLD = 16 * 1024 * 1024;
+
     private GameFile m_gameFile;
 
     private String m_warnings;
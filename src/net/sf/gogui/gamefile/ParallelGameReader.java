@@ -0,0 +1,144 @@
+// ParallelGameReader.java
+
+package net.sf.gogui.gamefile;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import net.sf.gogui.util.ErrorMessage;
+
+/** Read a list of game files in parallel.
+    Intended for tools that process many files. The files are read with
+    GameReader by a pool of threads, while the calling thread processes
+    the games, which are returned by next() in the order of the files. To
+    limit the memory used, only a bounded number of files is read ahead
+    of the file returned last. */
+public final class ParallelGameReader
+{
+    /** Constructor using one thread per available processor.
+        @param files The files to read. */
+    public ParallelGameReader(List<File> files)
+    {
+        this(files, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Constructor.
+        Starts reading the first files.
+        @param files The files to read.
+        @param numberThreads The number of threads. */
+    public ParallelGameReader(List<File> files, int numberThreads)
+    {
+        assert numberThreads > 0;
+        m_files = new ArrayList<File>(files);
+        m_maxPending = 2 * numberThreads;
+        m_executor =
+            Executors.newFixedThreadPool(numberThreads, new ThreadFactory() {
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable);
+                        // Don't prevent tools from exiting on errors
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        while (m_pending.size() < m_maxPending && submitNext());
+        if (m_pending.isEmpty())
+            close();
+    }
+
+    /** Stop reading files.
+        Only needs to be called, if not all files were returned by
+        next(). */
+    public void close()
+    {
+        m_executor.shutdownNow();
+    }
+
+    /** Get the file of the game returned by the last call of next(). */
+    public File getFile()
+    {
+        return m_files.get(m_index - 1);
+    }
+
+    public boolean hasNext()
+    {
+        return ! m_pending.isEmpty();
+    }
+
+    /** Get the next game.
+        Waits until the file is read.
+        @return The reader containing the game tree and the warnings.
+        @throws ErrorMessage If reading the file failed. The remaining
+        files can still be read with further calls of next(). */
+    public GameReader next() throws ErrorMessage
+    {
+        if (m_pending.isEmpty())
+            throw new NoSuchElementException();
+        Future<GameReader> future = m_pending.removeFirst();
+        ++m_index;
+        submitNext();
+        if (m_pending.isEmpty())
+            m_executor.shutdown();
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            close();
+            throw new ErrorMessage("Interrupted while reading "
+                                   + getFile());
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof ErrorMessage)
+                throw (ErrorMessage)cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /** Index of the next file to return with next(). */
+    private int m_index;
+
+    /** Index of the next file to submit for reading. */
+    private int m_nextSubmit;
+
+    private final int m_maxPending;
+
+    private final ExecutorService m_executor;
+
+    private final List<File> m_files;
+
+    /** Results of the submitted files in the order of the files. */
+    private final LinkedList<Future<GameReader>> m_pending =
+        new LinkedList<Future<GameReader>>();
+
+    /** Submit the next file for reading.
+        @return false, if all files were already submitted. */
+    private boolean submitNext()
+    {
+        if (m_nextSubmit == m_files.size())
+            return false;
+        final File file = m_files.get(m_nextSubmit++);
+        m_pending.addLast(m_executor.submit(new Callable<GameReader>() {
+                public GameReader call() throws ErrorMessage
+                {
+                    return new GameReader(file);
+                }
+            }));
+        return true;
+    }
+}
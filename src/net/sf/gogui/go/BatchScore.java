@@ -0,0 +1,183 @@
+// BatchScore.java
+
+package net.sf.gogui.go;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import net.sf.gogui.go.Score.ScoringMethod;
+
+/** Count the score of many final positions in parallel.
+    All stones on the boards are considered alive, as is the case for
+    games that were played out until the end. The positions are scored in
+    chunks by a pool of threads, each using its own CountScore instance that
+    reuses its buffers for all positions. The pool is created once and
+    reused for all calls of scoreAll().
+    The boards must not be modified during scoring; use
+    <code>Board.getSnapshot</code> to score a board that is still in use. */
+public final class BatchScore
+{
+    /** Constructor using one thread per available processor.
+        @param komi The komi.
+        @param rules The scoring method. */
+    public BatchScore(Komi komi, ScoringMethod rules)
+    {
+        this(komi, rules, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Constructor.
+        @param komi The komi.
+        @param rules The scoring method.
+        @param numberThreads The number of threads. */
+    public BatchScore(Komi komi, ScoringMethod rules, int numberThreads)
+    {
+        assert numberThreads > 0;
+        m_komi = komi;
+        m_rules = rules;
+        m_numberThreads = numberThreads;
+    }
+
+    /** Count the score of a single position.
+        Uses the CountScore instance of the calling thread.
+        @param board The final position.
+        @return The score. */
+    public Score score(ConstBoard board)
+    {
+        CountScore countScore = s_countScore.get();
+        countScore.begin(board, null);
+        return countScore.getScore(m_komi, m_rules);
+    }
+
+    /** Stop the threads.
+        The threads are daemon threads and are created on the first call of
+        scoreAll(). They are reused by later calls, so this function only
+        needs to be called, if the object is no longer used, but the
+        program continues to run. */
+    public synchronized void close()
+    {
+        if (m_executor != null)
+        {
+            m_executor.shutdownNow();
+            m_executor = null;
+        }
+    }
+
+    /** Count the score of a sequence of positions.
+        The boards are read from the iterator by the calling thread and
+        scored in parallel. Only a bounded number of chunks of positions
+        (twice the number of threads) is read ahead of the chunk whose
+        result is collected, so the iterator can create the boards on
+        demand.
+        @param boards The final positions.
+        @return The scores in the order of the positions.
+        @throws InterruptedException If the calling thread was interrupted
+        while waiting for the results. */
+    public List<Score> scoreAll(Iterator<? extends ConstBoard> boards)
+        throws InterruptedException
+    {
+        ExecutorService executor = getExecutor();
+        LinkedList<Future<List<Score>>> pending =
+            new LinkedList<Future<List<Score>>>();
+        List<Score> result = new ArrayList<Score>();
+        try
+        {
+            while (boards.hasNext())
+            {
+                if (pending.size() == 2 * m_numberThreads)
+                    result.addAll(getResult(pending.removeFirst()));
+                final List<ConstBoard> chunk =
+                    new ArrayList<ConstBoard>(CHUNK_SIZE);
+                while (chunk.size() < CHUNK_SIZE && boards.hasNext())
+                    chunk.add(boards.next());
+                pending.add(executor.submit(new Callable<List<Score>>() {
+                        public List<Score> call()
+                        {
+                            List<Score> scores =
+                                new ArrayList<Score>(chunk.size());
+                            for (ConstBoard board : chunk)
+                                scores.add(score(board));
+                            return scores;
+                        }
+                    }));
+            }
+            while (! pending.isEmpty())
+                result.addAll(getResult(pending.removeFirst()));
+            return result;
+        }
+        finally
+        {
+            for (Future<List<Score>> future : pending)
+                future.cancel(true);
+        }
+    }
+
+    /** Count the score of a collection of positions.
+        @see #scoreAll(Iterator) */
+    public List<Score> scoreAll(Iterable<? extends ConstBoard> boards)
+        throws InterruptedException
+    {
+        return scoreAll(boards.iterator());
+    }
+
+    /** Number of positions per task.
+        Large enough to keep the overhead of the task handling small
+        compared to scoring, small enough to balance the load. */
+    private static final int CHUNK_SIZE = 64;
+
+    private static final ThreadLocal<CountScore> s_countScore =
+        new ThreadLocal<CountScore>() {
+            protected CountScore initialValue()
+            {
+                return new CountScore();
+            }
+        };
+
+    private final int m_numberThreads;
+
+    /** Thread pool, created on demand. */
+    private ExecutorService m_executor;
+
+    private final Komi m_komi;
+
+    private final ScoringMethod m_rules;
+
+    private synchronized ExecutorService getExecutor()
+    {
+        if (m_executor == null)
+            m_executor = Executors.newFixedThreadPool(m_numberThreads,
+                                                      new ThreadFactory() {
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        return m_executor;
+    }
+
+    private static List<Score> getResult(Future<List<Score>> future)
+        throws InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+            if (cause instanceof Error)
+                throw (Error)cause;
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,517 @@
+// BitBoard.java
+
+package net.sf.gogui.go;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+/** Board position stored as bit sets.
+    Stores the black and white stones as bit sets with one bit per point,
+    which allows word-parallel operations on whole positions, like counting
+    stones, computing territory and comparing positions.
+    The bit of a point with coordinates (x, y) has the index
+    <code>y * ROW_BITS + x</code>. Each row is padded with at least one unused
+    bit, such that shifting a set by one bit does not move points to the
+    neighboring row.
+    A bit board contains only a position and no move history. The stones on
+    the board are reported as setup stones with the color to move as the
+    setup player, such that <code>BoardUtil.copy</code> can be used to
+    create a Board with the same position.
+    Instances of this class are immutable. */
+public final class BitBoard
+    implements ConstBoard
+{
+    /** Number of bits per row. */
+    public static final int ROW_BITS = GoPoint.MAX_SIZE + 1;
+
+    /** Create a bit board from the current position on a board.
+        @param board The board. */
+    public BitBoard(ConstBoard board)
+    {
+        m_size = board.getSize();
+        m_constants = BoardConstants.get(m_size);
+        m_toMove = board.getToMove();
+        m_capturedBlack = board.getCaptured(BLACK);
+        m_capturedWhite = board.getCaptured(WHITE);
+        m_black = new long[NUMBER_WORDS];
+        m_white = new long[NUMBER_WORDS];
+        GoPoint koPoint = null;
+        for (GoPoint p : m_constants.getPoints())
+        {
+            GoColor c = board.getColor(p);
+            if (c == BLACK)
+                setBit(m_black, p);
+            else if (c == WHITE)
+                setBit(m_white, p);
+            else if (board.isKo(p))
+                koPoint = p;
+        }
+        m_koPoint = koPoint;
+        m_mask = getMask(m_size);
+    }
+
+    /** Get the bit index of a point.
+        @param p The point.
+        @return The index of the bit for this point. */
+    public static int getBitIndex(GoPoint p)
+    {
+        return p.getY() * ROW_BITS + p.getX();
+    }
+
+    /** Returns false.
+        A bit board has no move history. */
+    public boolean bothPassed()
+    {
+        return false;
+    }
+
+    public boolean contains(GoPoint point)
+    {
+        return point.isOnBoard(m_size);
+    }
+
+    /** Indicate if this object is equal to another object.
+        Two bit boards are equal, if they have the same size, the same
+        stones, the same color to move and the same ko point. */
+    public boolean equals(Object object)
+    {
+        if (object == null || object.getClass() != getClass())
+            return false;
+        BitBoard board = (BitBoard)object;
+        return (board.m_size == m_size && board.m_toMove == m_toMove
+                && board.m_koPoint == m_koPoint
+                && Arrays.equals(board.m_black, m_black)
+                && Arrays.equals(board.m_white, m_white));
+    }
+
+    public ConstPointList getAdjacent(GoPoint point)
+    {
+        return m_constants.getAdjacent(point);
+    }
+
+    public int getCaptured(GoColor c)
+    {
+        if (c == BLACK)
+            return m_capturedBlack;
+        else
+        {
+            assert c == WHITE;
+            return m_capturedWhite;
+        }
+    }
+
+    public GoColor getColor(GoPoint p)
+    {
+        if (getBit(m_black, p))
+            return BLACK;
+        if (getBit(m_white, p))
+            return WHITE;
+        return EMPTY;
+    }
+
+    /** Get points that have a different color on another board.
+        @param board The other board with the same size.
+        @return The points that have a different color on both boards. */
+    public PointList getDifference(BitBoard board)
+    {
+        assert board.m_size == m_size;
+        long[] difference = new long[NUMBER_WORDS];
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            difference[i] = ((m_black[i] ^ board.m_black[i])
+                             | (m_white[i] ^ board.m_white[i]));
+        return toPointList(difference);
+    }
+
+    /** Get the Zobrist hash code of the position.
+        Returns the same value as <code>Board.getHashCode</code> for the
+        board this bit board was created from. */
+    public long getHashCode()
+    {
+        long hash = (Zobrist.getToMoveKey(m_toMove)
+                     ^ Zobrist.getKoKey(m_koPoint));
+        for (GoColor c : GoColor.BLACK_WHITE)
+        {
+            long[] stones = getStones(c);
+            for (int i = 0; i < NUMBER_WORDS; ++i)
+            {
+                long word = stones[i];
+                while (word != 0)
+                {
+                    int bit = Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    hash ^= Zobrist.getKey(c, getPoint(i * 64 + bit));
+                }
+            }
+        }
+        return hash;
+    }
+
+    /** Returns an empty list.
+        A bit board has no move history. */
+    public ConstPointList getKilled()
+    {
+        return PointList.getEmptyList();
+    }
+
+    /** Returns null.
+        A bit board has no move history. */
+    public Move getLastMove()
+    {
+        return null;
+    }
+
+    /** Get the number of liberties of a block.
+        @param p A stone of the block.
+        @return The number of liberties of the block containing the stone;
+        zero if the point is empty. */
+    public int getLiberties(GoPoint p)
+    {
+        GoColor c = getColor(p);
+        if (c == EMPTY)
+            return 0;
+        long[] block = new long[NUMBER_WORDS];
+        setBit(block, p);
+        floodFill(block, getStones(c));
+        long[] liberties = dilate(block);
+        long[] empty = getEmpty();
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            liberties[i] &= empty[i];
+        return bitCount(liberties);
+    }
+
+    /** Not supported.
+        A bit board has no move history. */
+    public Move getMove(int i)
+    {
+        throw new IndexOutOfBoundsException();
+    }
+
+    /** Returns zero.
+        A bit board has no move history. */
+    public int getNumberMoves()
+    {
+        return 0;
+    }
+
+    /** Get the number of stones of a color.
+        @param c The color (BLACK, WHITE or EMPTY).
+        @return The number of stones of this color, or the number of empty
+        points for EMPTY. */
+    public int getNumberPoints(GoColor c)
+    {
+        if (c == EMPTY)
+            return bitCount(getEmpty());
+        return bitCount(getStones(c));
+    }
+
+    /** Get the number of territory points of a color.
+        @see #getTerritory */
+    public int getNumberTerritory(GoColor c)
+    {
+        return bitCount(computeTerritory(c));
+    }
+
+    /** Get the stones of a color.
+        The stones on a bit board are reported as a setup position.
+        @param c The color.
+        @return The stones of this color in the order of their point
+        index. */
+    public ConstPointList getSetup(GoColor c)
+    {
+        return toPointList(getStones(c));
+    }
+
+    /** Get the color to move.
+        The color to move is reported as the player of the setup position.
+        @see #getSetup */
+    public GoColor getSetupPlayer()
+    {
+        return m_toMove;
+    }
+
+    public int getSize()
+    {
+        return m_size;
+    }
+
+    public void getStones(GoPoint p, GoColor color, PointList stones)
+    {
+        if (getColor(p) != color)
+            return;
+        long[] block = new long[NUMBER_WORDS];
+        setBit(block, p);
+        if (color == EMPTY)
+            floodFill(block, getEmpty());
+        else
+            floodFill(block, getStones(color));
+        stones.addAllFromConst(toPointList(block));
+    }
+
+    /** Returns an empty list.
+        A bit board has no move history. */
+    public ConstPointList getSuicide()
+    {
+        return PointList.getEmptyList();
+    }
+
+    /** Get the territory of a color.
+        The territory are all empty points in regions that are only adjacent
+        to stones of this color. All stones are considered as alive.
+        @param c The color (BLACK or WHITE).
+        @return The territory points. */
+    public ConstPointList getTerritory(GoColor c)
+    {
+        return toPointList(computeTerritory(c));
+    }
+
+    public GoColor getToMove()
+    {
+        return m_toMove;
+    }
+
+    public int hashCode()
+    {
+        long hash = getHashCode();
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    public boolean isCaptureOrSuicide(GoColor c, GoPoint p)
+    {
+        if (getColor(p) != EMPTY)
+            return false;
+        GoColor otherColor = c.otherColor();
+        for (GoPoint adj : getAdjacent(p))
+            if (getColor(adj) == otherColor && getLiberties(adj) == 1)
+                return true;
+        return isSuicide(c, p);
+    }
+
+    public boolean isHandicap(GoPoint point)
+    {
+        return m_constants.isHandicap(point);
+    }
+
+    public boolean isKo(GoPoint point)
+    {
+        return point == m_koPoint;
+    }
+
+    public boolean isModified()
+    {
+        return (m_toMove != BLACK || getNumberPoints(BLACK) > 0
+                || getNumberPoints(WHITE) > 0);
+    }
+
+    /** Check if a move would recreate the current position.
+        A bit board has no move history, so only a suicide of a single stone
+        is detected, which recreates the current position.
+        @see Board#isPositionalSuperko */
+    public boolean isPositionalSuperko(Move move)
+    {
+        GoPoint p = move.getPoint();
+        if (p == null || ! isSuicide(move.getColor(), p))
+            return false;
+        for (GoPoint adj : getAdjacent(p))
+            if (getColor(adj) == move.getColor())
+                return false;
+        return true;
+    }
+
+    /** Returns false.
+        A bit board does not remember if the stones were a handicap
+        setup. */
+    public boolean isSetupHandicap()
+    {
+        return false;
+    }
+
+    public boolean isSuicide(GoColor c, GoPoint p)
+    {
+        if (getColor(p) != EMPTY)
+            return false;
+        for (GoPoint adj : getAdjacent(p))
+        {
+            GoColor adjColor = getColor(adj);
+            if (adjColor == EMPTY)
+                return false;
+            int liberties = getLiberties(adj);
+            if (adjColor == c ? liberties > 1 : liberties == 1)
+                return false;
+        }
+        return true;
+    }
+
+    public Iterator<GoPoint> iterator()
+    {
+        return m_constants.getPoints().iterator();
+    }
+
+    private static final int NUMBER_WORDS =
+        (ROW_BITS * GoPoint.MAX_SIZE + 63) / 64;
+
+    /** Bit sets of all points on the board indexed by board size. */
+    private static final long[][] s_mask = new long[GoPoint.MAX_SIZE + 1][];
+
+    private final int m_size;
+
+    private final int m_capturedBlack;
+
+    private final int m_capturedWhite;
+
+    private final long[] m_black;
+
+    private final long[] m_white;
+
+    private final long[] m_mask;
+
+    private final GoColor m_toMove;
+
+    private final GoPoint m_koPoint;
+
+    private final BoardConstants m_constants;
+
+    private static int bitCount(long[] set)
+    {
+        int n = 0;
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            n += Long.bitCount(set[i]);
+        return n;
+    }
+
+    /** Compute the territory of a color.
+        @see #getTerritory */
+    private long[] computeTerritory(GoColor c)
+    {
+        long[] empty = getEmpty();
+        long[] region = dilate(getStones(c));
+        long[] otherRegion = dilate(getStones(c.otherColor()));
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+        {
+            region[i] &= empty[i];
+            otherRegion[i] &= empty[i];
+        }
+        floodFill(region, empty);
+        floodFill(otherRegion, empty);
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            region[i] &= ~otherRegion[i];
+        return region;
+    }
+
+    /** Get a set with all points of a set and their neighbors. */
+    private long[] dilate(long[] set)
+    {
+        long[] result = new long[NUMBER_WORDS];
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+        {
+            long word = set[i];
+            long left = (word << 1);
+            long right = (word >>> 1);
+            long up = (word << ROW_BITS);
+            long down = (word >>> ROW_BITS);
+            if (i > 0)
+            {
+                left |= (set[i - 1] >>> 63);
+                up |= (set[i - 1] >>> (64 - ROW_BITS));
+            }
+            if (i < NUMBER_WORDS - 1)
+            {
+                right |= (set[i + 1] << 63);
+                down |= (set[i + 1] << (64 - ROW_BITS));
+            }
+            result[i] = (word | left | right | up | down) & m_mask[i];
+        }
+        return result;
+    }
+
+    /** Extend a set to all points connected to it within a region.
+        @param set The set to extend; must be a subset of region.
+        @param region The region. */
+    private void floodFill(long[] set, long[] region)
+    {
+        boolean changed = true;
+        while (changed)
+        {
+            long[] dilated = dilate(set);
+            changed = false;
+            for (int i = 0; i < NUMBER_WORDS; ++i)
+            {
+                long word = dilated[i] & region[i];
+                if (word != set[i])
+                {
+                    set[i] = word;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private static boolean getBit(long[] set, GoPoint p)
+    {
+        int index = getBitIndex(p);
+        return (set[index >>> 6] & (1L << (index & 63))) != 0;
+    }
+
+    private long[] getEmpty()
+    {
+        long[] empty = new long[NUMBER_WORDS];
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+            empty[i] = m_mask[i] & ~(m_black[i] | m_white[i]);
+        return empty;
+    }
+
+    private static long[] getMask(int size)
+    {
+        synchronized (s_mask)
+        {
+            if (s_mask[size] == null)
+            {
+                long[] mask = new long[NUMBER_WORDS];
+                for (GoPoint p : BoardConstants.get(size).getPoints())
+                    setBit(mask, p);
+                s_mask[size] = mask;
+            }
+            return s_mask[size];
+        }
+    }
+
+    private static GoPoint getPoint(int bitIndex)
+    {
+        return GoPoint.get(bitIndex % ROW_BITS, bitIndex / ROW_BITS);
+    }
+
+    private long[] getStones(GoColor c)
+    {
+        if (c == BLACK)
+            return m_black;
+        else
+        {
+            assert c == WHITE;
+            return m_white;
+        }
+    }
+
+    private static void setBit(long[] set, GoPoint p)
+    {
+        int index = getBitIndex(p);
+        set[index >>> 6] |= (1L << (index & 63));
+    }
+
+    private static PointList toPointList(long[] set)
+    {
+        PointList list = new PointList(bitCount(set));
+        for (int i = 0; i < NUMBER_WORDS; ++i)
+        {
+            long word = set[i];
+            while (word != 0)
+            {
+                int bit = Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                list.add(getPoint(i * 64 + bit));
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,293 @@
+// BitPointList.java
+
+package net.sf.gogui.go;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** Set of points stored as a bit set of point indices.
+    Memory efficient replacement for small point lists that are stored for
+    a long time, like the markup and setup stones of game tree nodes. Uses
+    one bit per point index up to the largest contained index, which is at
+    most eight longs on a 19x19 board.
+    Each point is contained at most once and the points are always in the
+    order of GoPoint.compareTo(), not in the order they were added.
+    The list is not synchronized, but it can be read by multiple threads,
+    if it is not modified. Reading functions only replace the cursor of
+    get(), which is an immutable object, so the threads don't interfere. */
+public final class BitPointList
+    implements ConstPointList
+{
+    /** Construct empty list. */
+    public BitPointList()
+    {
+    }
+
+    /** Construct list containing the points of a point list.
+        @param list The points. Duplicate points are added only once. */
+    public BitPointList(ConstPointList list)
+    {
+        addAll(list);
+    }
+
+    /** Add a point, if it is not already contained in the list.
+        @param p The point.
+        @return true, if the point was added. */
+    public boolean add(GoPoint p)
+    {
+        int index = p.getIndex();
+        int word = index >> 6;
+        if (word >= m_bits.length)
+        {
+            long[] bits = new long[word + 1];
+            System.arraycopy(m_bits, 0, bits, 0, m_bits.length);
+            m_bits = bits;
+        }
+        long mask = (1L << index);
+        if ((m_bits[word] & mask) != 0)
+            return false;
+        m_bits[word] |= mask;
+        ++m_size;
+        m_cursor = null;
+        return true;
+    }
+
+    /** Add all points of a point list.
+        @param list The points. */
+    public void addAll(ConstPointList list)
+    {
+        if (list instanceof BitPointList)
+        {
+            addBits((BitPointList)list);
+            return;
+        }
+        int nuPoints = list.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+            add(list.get(i));
+    }
+
+    /** Remove all points and release the memory of the bit set. */
+    public void clear()
+    {
+        m_bits = EMPTY_BITS;
+        m_size = 0;
+        m_cursor = null;
+    }
+
+    public boolean contains(Object elem)
+    {
+        if (! (elem instanceof GoPoint))
+            return false;
+        int index = ((GoPoint)elem).getIndex();
+        int word = index >> 6;
+        return (word < m_bits.length
+                && (m_bits[word] & (1L << index)) != 0);
+    }
+
+    /** Check if another list is a BitPointList with the same points.
+        A PointList is never equal to a BitPointList, because
+        PointList.equals() accepts only lists, so this function does not
+        accept it either to keep the relation symmetric. */
+    public boolean equals(Object object)
+    {
+        if (object == this)
+            return true;
+        if (object == null || object.getClass() != getClass())
+            return false;
+        BitPointList list = (BitPointList)object;
+        if (list.m_size != m_size)
+            return false;
+        int length = Math.max(m_bits.length, list.m_bits.length);
+        for (int i = 0; i < length; ++i)
+            if (getWord(i) != list.getWord(i))
+                return false;
+        return true;
+    }
+
+    /** Get a point by position.
+        Takes constant time, if the position is equal to or follows the
+        position of the previous call, such that loops over all points
+        with an index take linear time. Otherwise takes time linear in the
+        number of words of the bit set.
+        @param i The position in the list in <code>[0..size() - 1]</code>.
+        @return The point. */
+    public GoPoint get(int i)
+    {
+        if (i < 0 || i >= m_size)
+            throw new IndexOutOfBoundsException();
+        Cursor cursor = m_cursor;
+        int index;
+        if (cursor != null && cursor.m_position == i)
+            return GoPoint.getByIndex(cursor.m_index);
+        if (cursor != null && cursor.m_position == i - 1)
+            index = nextIndex(cursor.m_index + 1);
+        else
+            index = getIndex(i);
+        m_cursor = new Cursor(i, index);
+        return GoPoint.getByIndex(index);
+    }
+
+    /** Hash code compatible with PointList.hashCode(). */
+    public int hashCode()
+    {
+        int hashCode = 1;
+        for (GoPoint p : this)
+            hashCode = 31 * hashCode + p.hashCode();
+        return hashCode;
+    }
+
+    public boolean isEmpty()
+    {
+        return (m_size == 0);
+    }
+
+    public Iterator<GoPoint> iterator()
+    {
+        return new Iterator<GoPoint>()
+            {
+                public boolean hasNext()
+                {
+                    return (m_next >= 0);
+                }
+
+                public GoPoint next()
+                {
+                    if (m_next < 0)
+                        throw new NoSuchElementException();
+                    GoPoint p = GoPoint.getByIndex(m_next);
+                    m_next = nextIndex(m_next + 1);
+                    return p;
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                private int m_next = nextIndex(0);
+            };
+    }
+
+    /** Remove a point, if it is contained in the list.
+        @param p The point.
+        @return true, if the point was removed. */
+    public boolean remove(GoPoint p)
+    {
+        if (! contains(p))
+            return false;
+        int index = p.getIndex();
+        m_bits[index >> 6] &= ~(1L << index);
+        --m_size;
+        m_cursor = null;
+        return true;
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /** Convert to a point list.
+        @return A new list containing the points in the same order. */
+    public PointList toPointList()
+    {
+        PointList list = new PointList(m_size);
+        for (GoPoint p : this)
+            list.add(p);
+        return list;
+    }
+
+    public String toString()
+    {
+        return toPointList().toString();
+    }
+
+    /** Position and point index of the previous call of get().
+        Immutable, so that a thread can replace it while other threads
+        read it. */
+    private static final class Cursor
+    {
+        public Cursor(int position, int index)
+        {
+            m_position = position;
+            m_index = index;
+        }
+
+        public final int m_position;
+
+        public final int m_index;
+    }
+
+    private static final long[] EMPTY_BITS = new long[0];
+
+    private int m_size;
+
+    private long[] m_bits = EMPTY_BITS;
+
+    /** Cursor of the previous call of get() or null.
+        Reset by all modifications. */
+    private Cursor m_cursor;
+
+    /** Add all points of another bit point list.
+        Faster than adding the points one by one. */
+    private void addBits(BitPointList list)
+    {
+        long[] bits = list.m_bits;
+        if (bits.length > m_bits.length)
+        {
+            long[] newBits = new long[bits.length];
+            System.arraycopy(m_bits, 0, newBits, 0, m_bits.length);
+            m_bits = newBits;
+        }
+        int size = 0;
+        for (int i = 0; i < m_bits.length; ++i)
+        {
+            if (i < bits.length)
+                m_bits[i] |= bits[i];
+            size += Long.bitCount(m_bits[i]);
+        }
+        m_size = size;
+        m_cursor = null;
+    }
+
+    /** Get the point index at a position without using the cursor. */
+    private int getIndex(int i)
+    {
+        int word = 0;
+        int count = Long.bitCount(m_bits[0]);
+        while (i >= count)
+        {
+            i -= count;
+            count = Long.bitCount(m_bits[++word]);
+        }
+        long bits = m_bits[word];
+        for ( ; i > 0; --i)
+            bits &= bits - 1; // Clear lowest bit
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /** Get a word of the bit set, zero if beyond the allocated words. */
+    private long getWord(int word)
+    {
+        return (word < m_bits.length ? m_bits[word] : 0);
+    }
+
+    /** Get the smallest contained index greater or equal to a start index.
+        @return The index or -1, if there is none. */
+    private int nextIndex(int start)
+    {
+        int word = start >> 6;
+        if (word >= m_bits.length)
+            return -1;
+        long bits = m_bits[word] & (-1L << start);
+        while (true)
+        {
+            if (bits != 0)
+                return (word << 6) + Long.numberOfTrailingZeros(bits);
+            if (++word == m_bits.length)
+                return -1;
+            bits = m_bits[word];
+        }
+    }
+}
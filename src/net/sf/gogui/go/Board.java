@@ -2,7 +2,8 @@
 
 package net.sf.gogui.go;
 
-import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
@@ -49,8 +50,8 @@ public final class Board
     {
         int n = getNumberMoves();
         return (n >= 2
-                && m_stack.get(n - 1).m_move.getPoint() == null
-                && m_stack.get(n - 2).m_move.getPoint() == null);
+                && m_moves[n - 1].getPoint() == null
+                && m_moves[n - 2].getPoint() == null);
     }
 
     /** Check if board contains a point.
@@ -61,6 +62,59 @@ public final class Board
         return point.isOnBoard(getSize());
     }
 
+    /** Make this board a copy of another board.
+        Copies the internal data including the move history, such that
+        moves can be undone on the copy. Faster than BoardUtil.copy(), which
+        replays all moves, but takes time and memory proportional to the
+        number of moves, too.
+        @param board The board to copy. */
+    public void copyFrom(Board board)
+    {
+        if (board == this)
+            return;
+        detachSnapshot();
+        m_size = board.m_size;
+        m_constants = board.m_constants;
+        int n = GoPoint.NUMBER_INDEXES;
+        System.arraycopy(board.m_color, 0, m_color, 0, n);
+        System.arraycopy(board.m_anchor, 0, m_anchor, 0, n);
+        System.arraycopy(board.m_nextStone, 0, m_nextStone, 0, n);
+        System.arraycopy(board.m_blockSize, 0, m_blockSize, 0, n);
+        System.arraycopy(board.m_liberties, 0, m_liberties, 0, n);
+        int nuMoves = board.m_nuMoves;
+        if (m_stack.length < nuMoves)
+        {
+            int length = board.m_stack.length;
+            StackEntry[] stack = new StackEntry[length];
+            System.arraycopy(m_stack, 0, stack, 0, m_stack.length);
+            m_stack = stack;
+            m_moves = new Move[length];
+            m_oldPositionHash = new long[length];
+        }
+        for (int i = 0; i < nuMoves; ++i)
+        {
+            if (m_stack[i] == null)
+                m_stack[i] = new StackEntry();
+            m_stack[i].copyFrom(board.m_stack[i]);
+        }
+        System.arraycopy(board.m_moves, 0, m_moves, 0, nuMoves);
+        System.arraycopy(board.m_oldPositionHash, 0, m_oldPositionHash, 0,
+                         nuMoves);
+        m_nuMoves = nuMoves;
+        m_positionHash = board.m_positionHash;
+        m_positionHistory.clear();
+        m_nuPositionHistory = 0;
+        for (GoColor c : BLACK_WHITE)
+            m_setup.set(c, new PointList(board.m_setup.get(c)));
+        m_setupPlayer = board.m_setupPlayer;
+        m_isSetupHandicap = board.m_isSetupHandicap;
+        m_capturedBlack = board.m_capturedBlack;
+        m_capturedWhite = board.m_capturedWhite;
+        m_toMove = board.m_toMove;
+        m_koPoint = board.m_koPoint;
+        invalidateLegalMoves();
+    }
+
     /** Get points adjacent to a point.
         @param point The point.
         @return List of points adjacent. */
@@ -74,7 +128,13 @@ public final class Board
         opponent moves or by suicide. */
     public int getCaptured(GoColor c)
     {
-        return m_captured.get(c);
+        if (c == BLACK)
+            return m_capturedBlack;
+        else
+        {
+            assert c == WHITE;
+            return m_capturedWhite;
+        }
     }
 
     /** Get state of a point on the board.
@@ -84,6 +144,18 @@ public final class Board
         return m_color[p.getIndex()];
     }
 
+    /** Get a hash code of the position.
+        The hash code is a 64-bit Zobrist hash of the stones on the board,
+        the color to move and the ko point. The hash of the stones is updated
+        incrementally, so this function does not need to iterate over the
+        points of the board.
+        @return The hash code. */
+    public long getHashCode()
+    {
+        return (m_positionHash ^ Zobrist.getToMoveKey(m_toMove)
+                ^ Zobrist.getKoKey(m_koPoint));
+    }
+
     /** Get location of handicap stones for a given board size.
         @param n The number of handicap stones.
         @param size The board size.
@@ -95,9 +167,25 @@ public final class Board
         return BoardConstants.get(size).getHandicapStones(n);
     }
 
+    /** Get the number of liberties of a block.
+        The liberties are maintained incrementally, so this function
+        does not need to iterate over the stones of the block.
+        @param p A stone of the block.
+        @return The number of liberties of the block containing the stone;
+        zero if the point is empty. */
+    public int getLiberties(GoPoint p)
+    {
+        int index = p.getIndex();
+        if (m_color[index] == EMPTY)
+            return 0;
+        return m_liberties[m_anchor[index]];
+    }
+
     /** Opponent stones captured in last move.
         Does not include player stones killed by suicide.
         Requires that there is a last move (or setup stone).
+        The list is owned by the board and only valid until the next
+        move is played or undone.
         @return List of opponent stones (go.Point) captured in last move;
         empty if none were killed or there is no last move.
         @see #getSuicide() */
@@ -105,7 +193,7 @@ public final class Board
     {
         int n = getNumberMoves();
         assert n > 0;
-        return m_stack.get(n - 1).m_killed;
+        return m_stack[n - 1].getKilled();
     }
 
     /** Return last move.
@@ -115,7 +203,51 @@ public final class Board
         int n = getNumberMoves();
         if (n == 0)
             return null;
-        return m_stack.get(n - 1).m_move;
+        return m_moves[n - 1];
+    }
+
+    /** Get the legal moves of a player.
+        A move is legal, if the point is empty, not a simple ko point
+        (see isKo()) and not a suicide. The legality of the points is
+        updated incrementally from the stones that changed since the last
+        call, so repeated calls during a game are cheap.
+        @param c The player color.
+        @return The legal moves as a set of point indices (see
+        GoPoint.getIndex()). The returned object is owned by the board and
+        reused; it is only valid until the next change of the board and must
+        not be modified. */
+    public BitSet getLegalMoves(GoColor c)
+    {
+        LegalMoves legalMoves = m_legalMoves.get(c);
+        BitSet legal = legalMoves.m_legal;
+        ++m_markValue;
+        if (legalMoves.m_nuChanged < 0)
+        {
+            legal.clear();
+            ConstPointList points = m_constants.getPoints();
+            int nuPoints = points.size();
+            for (int i = 0; i < nuPoints; ++i)
+            {
+                int index = points.get(i).getIndex();
+                legal.set(index, isLegal(c, index));
+            }
+        }
+        else
+        {
+            for (int i = legalMoves.m_nuChanged; i < m_nuChanged; ++i)
+                updateLegalMoves(c, legal, m_changed[i]);
+            GoPoint oldKoPoint = legalMoves.m_koPoint;
+            if (oldKoPoint != m_koPoint)
+            {
+                if (oldKoPoint != null)
+                    updateLegalMove(c, legal, oldKoPoint.getIndex());
+                if (m_koPoint != null)
+                    updateLegalMove(c, legal, m_koPoint.getIndex());
+            }
+        }
+        legalMoves.m_nuChanged = m_nuChanged;
+        legalMoves.m_koPoint = m_koPoint;
+        return legal;
     }
 
     /** Get the number of moves played so far.
@@ -123,7 +255,7 @@ public final class Board
         @see #getMove */
     public int getNumberMoves()
     {
-        return m_stack.size();
+        return m_nuMoves;
     }
 
     /** Get a move from the sequence of moves played so far.
@@ -132,7 +264,8 @@ public final class Board
         @see #getNumberMoves() */
     public Move getMove(int i)
     {
-        return m_stack.get(i).m_move;
+        assert i < m_nuMoves;
+        return m_moves[i];
     }
 
     /** Get initial setup stones of a color.
@@ -161,26 +294,64 @@ public final class Board
         return m_size;
     }
 
-    /** Get stones of a block. */
+    /** Get an immutable snapshot of the current state of the board.
+        Takes constant time, because the snapshot shares its data with the
+        board until the board is changed the next time. Repeated calls
+        without a change in between return the same snapshot.
+        @return The snapshot. */
+    public BoardSnapshot getSnapshot()
+    {
+        if (m_snapshot == null)
+        {
+            ConstPointList killed = PointList.getEmptyList();
+            ConstPointList suicide = PointList.getEmptyList();
+            if (m_nuMoves > 0)
+            {
+                StackEntry entry = m_stack[m_nuMoves - 1];
+                if (entry.getKilled().size() > 0)
+                    killed = new PointList(entry.getKilled());
+                if (entry.getSuicide().size() > 0)
+                    suicide = new PointList(entry.getSuicide());
+            }
+            m_snapshot = new BoardSnapshot(m_constants, m_color, m_anchor,
+                                           m_nextStone, m_liberties, m_moves,
+                                           m_oldPositionHash, m_nuMoves,
+                                           killed, suicide,
+                                           m_setup.get(BLACK),
+                                           m_setup.get(WHITE),
+                                           m_setupPlayer, m_isSetupHandicap,
+                                           m_toMove, m_koPoint,
+                                           m_capturedBlack, m_capturedWhite,
+                                           m_positionHash);
+        }
+        return m_snapshot;
+    }
+
+    /** Get stones of a block.
+        @param p A point of the block.
+        @param color The color of the block.
+        @param stones The list to add the stones to. No stones will be added,
+        if the point does not have the given color. */
     public void getStones(GoPoint p, GoColor color, PointList stones)
     {
-        assert m_mark.isCleared();
-        findStones(p, color, stones);
-        m_mark.clear(stones);
-        //assert m_mark.isCleared();
+        if (getColor(p) != color)
+            return;
+        BoardLogic.getStones(m_constants, m_color, m_nextStone, p.getIndex(),
+                             color, m_region, stones);
     }
 
     /** Player stones killed by suicide in last move.
         Requires that there is a last move (or setup stone).
         @return List of stones (go.Point) killed by suicide in last move,
         including the stone played; empty if no stones were killed by suicide
-        or if there is no last move.
+        or if there is no last move. The list is owned by the board and only
+        valid until the next move is played or undone.
         @see #getKilled() */
     public ConstPointList getSuicide()
     {
         int n = getNumberMoves();
         assert n > 0;
-        return m_stack.get(n - 1).m_suicide;
+        return m_stack[n - 1].getSuicide();
     }
 
     /** Get color to move.
@@ -197,9 +368,10 @@ public final class Board
         row / column) in the range from one to GoPoint.MAX_SIZE */
     public void init(int size)
     {
+        detachSnapshot();
         m_size = size;
-        m_mark = new Marker(m_size);
         m_constants = BoardConstants.get(size);
+        invalidateLegalMoves();
         clear();
     }
 
@@ -210,12 +382,8 @@ public final class Board
         capture any opponent stones, or be a suicide move. */
     public boolean isCaptureOrSuicide(GoColor c, GoPoint p)
     {
-        if (getColor(p) != EMPTY)
-            return false;
-        play(c, p);
-        boolean result = (getKilled().size() > 0 || getSuicide().size() > 0);
-        undo();
-        return result;
+        return BoardLogic.isCaptureOrSuicide(m_constants, m_color, m_anchor,
+                                             m_liberties, c, p.getIndex());
     }
 
     /** Check if a point is a handicap point.
@@ -237,10 +405,35 @@ public final class Board
         return point == m_koPoint;
     }
 
+    /** Check if a move would violate the positional superko rule.
+        A move violates the positional superko rule, if it recreates the
+        stones of a position that occurred before, starting with the position
+        after the last call to <code>setup</code>. Pass moves and moves on
+        occupied points never violate the rule.
+        The history of position hash codes is only built on the first call
+        of this function and then kept up-to-date.
+        @param move The move to check.
+        @return true, if the move would recreate an earlier position. */
+    public boolean isPositionalSuperko(Move move)
+    {
+        GoPoint p = move.getPoint();
+        if (p == null || getColor(p) != EMPTY)
+            return false;
+        long hash =
+            BoardLogic.getPositionHashAfter(m_constants, m_color, m_anchor,
+                                            m_nextStone, m_liberties,
+                                            m_positionHash, move.getColor(),
+                                            p.getIndex());
+        if (hash == m_positionHash)
+            return true;
+        updatePositionHistory();
+        return m_positionHistory.containsKey(hash);
+    }
+
     /** Check if any moves were played or setup stones placed on the board. */
     public boolean isModified()
     {
-        return (! m_stack.isEmpty()
+        return (m_nuMoves > 0
                 || m_setup.get(BLACK).size() > 0
                 || m_setup.get(WHITE).size() > 0
                 || m_toMove != BLACK);
@@ -262,12 +455,7 @@ public final class Board
         would be a suicide move. */
     public boolean isSuicide(GoColor c, GoPoint p)
     {
-        if (getColor(p) != EMPTY)
-            return false;
-        play(c, p);
-        boolean result = (getSuicide().size() > 0);
-        undo();
-        return result;
+        return isSuicide(c, p.getIndex());
     }
 
     public Iterator<GoPoint> iterator()
@@ -279,14 +467,17 @@ public final class Board
         Takes back the effects of any moves or setup stones on the board. */
     public void clear()
     {
+        detachSnapshot();
         for (GoPoint p : this)
             setColor(p, EMPTY);
-        m_stack.clear();
+        rebuildBlocks();
+        m_nuMoves = 0;
+        m_positionHistory.clear();
+        m_nuPositionHistory = 0;
         for (GoColor c : BLACK_WHITE)
-        {
             m_setup.get(c).clear();
-            m_captured.set(c, 0);
-        }
+        m_capturedBlack = 0;
+        m_capturedWhite = 0;
         m_toMove = BLACK;
         m_koPoint = null;
         m_isSetupHandicap = false;
@@ -312,15 +503,38 @@ public final class Board
         @param move The move (location and player) */
     public void play(Move move)
     {
-        StackEntry entry = new StackEntry(move);
-        entry.execute(this);
-        m_stack.add(entry);
+        detachSnapshot();
+        if (m_nuMoves == m_stack.length)
+        {
+            int length = 2 * m_stack.length;
+            StackEntry[] stack = new StackEntry[length];
+            System.arraycopy(m_stack, 0, stack, 0, m_nuMoves);
+            m_stack = stack;
+            Move[] moves = new Move[length];
+            System.arraycopy(m_moves, 0, moves, 0, m_nuMoves);
+            m_moves = moves;
+            long[] oldPositionHash = new long[length];
+            System.arraycopy(m_oldPositionHash, 0, oldPositionHash, 0,
+                             m_nuMoves);
+            m_oldPositionHash = oldPositionHash;
+        }
+        m_moves[m_nuMoves] = move;
+        m_oldPositionHash[m_nuMoves] = m_positionHash;
+        StackEntry entry = m_stack[m_nuMoves];
+        if (entry == null)
+        {
+            entry = new StackEntry();
+            m_stack[m_nuMoves] = entry;
+        }
+        entry.execute(this, move);
+        ++m_nuMoves;
     }
 
     /** Change the color to move.
         @param toMove The new color to move. */
     public void setToMove(GoColor toMove)
     {
+        detachSnapshot();
         m_toMove = toMove;
     }
 
@@ -349,6 +563,7 @@ public final class Board
                 m_setup.set(c, new PointList(stones));
             }
         }
+        rebuildBlocks();
     }
 
     /** Setup initial handicap stones.
@@ -367,10 +582,21 @@ public final class Board
         suicide) and the color who was to move before the move. */
     public void undo()
     {
+        detachSnapshot();
         int index = getNumberMoves() - 1;
         assert index >= 0;
-        m_stack.get(index).undo(this);
-        m_stack.remove(index);
+        if (m_nuPositionHistory > index)
+        {
+            Long hash = Long.valueOf(m_oldPositionHash[index]);
+            int count = m_positionHistory.get(hash).intValue();
+            if (count == 1)
+                m_positionHistory.remove(hash);
+            else
+                m_positionHistory.put(hash, Integer.valueOf(count - 1));
+            m_nuPositionHistory = index;
+        }
+        m_stack[index].undo(this);
+        m_nuMoves = index;
     }
 
     /** Undo a number of moves.
@@ -385,9 +611,28 @@ public final class Board
             undo();
     }
 
+    /** Legal moves of a player and the state they were computed for. */
+    private static class LegalMoves
+    {
+        public final BitSet m_legal = new BitSet(GoPoint.NUMBER_INDEXES);
+
+        /** Number of entries of Board.m_changed already used to update
+            m_legal.
+            Negative, if m_legal needs to be recomputed for all points. */
+        public int m_nuChanged = -1;
+
+        public GoPoint m_koPoint;
+    }
+
+    /** Entry of the move stack.
+        Contains the information needed to take back the effects of a move
+        on the stones and the incrementally maintained blocks.
+        Entries are reused for later moves after an undo, so that playing
+        and undoing moves does not allocate memory once the stack has reached
+        its maximum size. */
     private static class StackEntry
     {
-        public final Move m_move;
+        public Move m_move;
 
         public GoPoint m_oldKoPoint;
 
@@ -395,52 +640,156 @@ public final class Board
 
         public GoColor m_oldToMove;
 
+        /** Captured opponent stones.
+            Created on the first capture and reused afterwards. */
         public PointList m_killed;
 
+        /** Player stones killed by suicide.
+            Created on the first suicide and reused afterwards. */
         public PointList m_suicide;
 
-        public StackEntry(Move move)
+        /** Block data of the move point before the move. */
+        public int m_oldAnchor;
+
+        /** Block data of the move point before the move. */
+        public int m_oldNextStone;
+
+        /** Anchor of the block the move stone was added to.
+            NO_POINT, if the move stone formed a new block. */
+        public int m_mergeBase;
+
+        public int m_oldBaseSize;
+
+        public int m_oldBaseLiberties;
+
+        /** Anchors of blocks merged into m_mergeBase in merge order. */
+        public final int[] m_merged = new int[BoardConstants.MAX_ADJACENT];
+
+        public final int[] m_mergedSize =
+            new int[BoardConstants.MAX_ADJACENT];
+
+        public final int[] m_mergedLiberties =
+            new int[BoardConstants.MAX_ADJACENT];
+
+        public int m_nuMerged;
+
+        /** Undo needs to rebuild all blocks from the stone colors.
+            Used if the move was played on an occupied point, which does
+            not preserve the block structure needed for the incremental undo
+            of this move and all earlier moves. */
+        public boolean m_rebuildOnUndo;
+
+        public void copyFrom(StackEntry entry)
         {
-            m_move = move;
+            m_move = entry.m_move;
+            m_oldKoPoint = entry.m_oldKoPoint;
+            m_oldColor = entry.m_oldColor;
+            m_oldToMove = entry.m_oldToMove;
+            if (entry.getKilled().size() > 0 || m_killed != null)
+            {
+                if (m_killed == null)
+                    m_killed = new PointList();
+                else
+                    m_killed.clear();
+                m_killed.addAllFromConst(entry.getKilled());
+            }
+            if (entry.getSuicide().size() > 0 || m_suicide != null)
+            {
+                if (m_suicide == null)
+                    m_suicide = new PointList();
+                else
+                    m_suicide.clear();
+                m_suicide.addAllFromConst(entry.getSuicide());
+            }
+            m_oldAnchor = entry.m_oldAnchor;
+            m_oldNextStone = entry.m_oldNextStone;
+            m_mergeBase = entry.m_mergeBase;
+            m_oldBaseSize = entry.m_oldBaseSize;
+            m_oldBaseLiberties = entry.m_oldBaseLiberties;
+            m_nuMerged = entry.m_nuMerged;
+            System.arraycopy(entry.m_merged, 0, m_merged, 0, m_nuMerged);
+            System.arraycopy(entry.m_mergedSize, 0, m_mergedSize, 0,
+                             m_nuMerged);
+            System.arraycopy(entry.m_mergedLiberties, 0, m_mergedLiberties, 0,
+                             m_nuMerged);
+            m_rebuildOnUndo = entry.m_rebuildOnUndo;
         }
 
-        public void execute(Board board)
+        public void execute(Board board, Move move)
         {
+            m_move = move;
+            m_rebuildOnUndo = false;
             GoPoint p = m_move.getPoint();
             GoColor c = m_move.getColor();
             GoColor otherColor = c.otherColor();
-            m_killed = new PointList();
-            m_suicide = new PointList();
+            if (m_killed != null)
+                m_killed.clear();
+            if (m_suicide != null)
+                m_suicide.clear();
             m_oldKoPoint = board.m_koPoint;
             board.m_koPoint = null;
             if (p != null)
             {
-                m_oldColor = board.getColor(p);
-                board.setColor(p, c);
                 assert c != EMPTY;
-                for (GoPoint adj : board.getAdjacent(p))
+                int index = p.getIndex();
+                m_oldColor = board.m_color[index];
+                m_oldAnchor = board.m_anchor[index];
+                m_oldNextStone = board.m_nextStone[index];
+                if (m_oldColor == EMPTY)
+                    board.addStone(index, c, this);
+                else
+                {
+                    board.setColor(index, c);
+                    board.rebuildBlocks();
+                    for (int i = 0; i < board.m_nuMoves; ++i)
+                        board.m_stack[i].m_rebuildOnUndo = true;
+                    m_rebuildOnUndo = true;
+                }
+                BoardConstants constants = board.m_constants;
+                int nuAdjacent = constants.getNumberAdjacent(index);
+                for (int i = 0; i < nuAdjacent; ++i)
+                {
+                    int adj = constants.getAdjacentIndex(index, i);
+                    if (board.isFirstOfBlock(index, i, otherColor)
+                        && board.m_liberties[board.m_anchor[adj]] == 0)
+                    {
+                        if (m_killed == null)
+                            m_killed = new PointList();
+                        board.removeBlock(adj, m_killed);
+                    }
+                }
+                if (board.m_liberties[board.m_anchor[index]] == 0)
                 {
-                    int killedSize = m_killed.size();
-                    if (board.getColor(adj) == otherColor)
-                        board.checkKill(adj, m_killed);
-                    if (m_killed.size() == killedSize + 1)
-                        board.m_koPoint = m_killed.get(killedSize);
+                    if (m_suicide == null)
+                        m_suicide = new PointList();
+                    board.removeBlock(index, m_suicide);
                 }
-                board.checkKill(p, m_suicide);
-                if (board.m_koPoint != null
-                    && ! board.isSingleStoneSingleLib(p, c))
-                    board.m_koPoint = null;
-                board.m_captured.set(c,
-                                     board.m_captured.get(c)
-                                     + m_suicide.size());
-                board.m_captured.set(otherColor,
-                                     board.m_captured.get(otherColor)
-                                     + m_killed.size());
+                ConstPointList killed = getKilled();
+                ConstPointList suicide = getSuicide();
+                if (killed.size() == 1
+                    && board.isSingleStoneSingleLib(index, c))
+                    board.m_koPoint = killed.get(0);
+                board.addCaptured(c, suicide.size());
+                board.addCaptured(otherColor, killed.size());
             }
             m_oldToMove = board.m_toMove;
             board.m_toMove = otherColor;
         }
 
+        public ConstPointList getKilled()
+        {
+            if (m_killed == null)
+                return PointList.getEmptyList();
+            return m_killed;
+        }
+
+        public ConstPointList getSuicide()
+        {
+            if (m_suicide == null)
+                return PointList.getEmptyList();
+            return m_suicide;
+        }
+
         protected void undo(Board board)
         {
             GoPoint p = m_move.getPoint();
@@ -448,41 +797,116 @@ public final class Board
             {
                 GoColor c = m_move.getColor();
                 GoColor otherColor = c.otherColor();
-                for (GoPoint stone : m_suicide)
-                    board.setColor(stone, c);
-                board.setColor(p, m_oldColor);
-                for (GoPoint stone : m_killed)
-                    board.setColor(stone, otherColor);
-                board.m_captured.set(c,
-                                     board.m_captured.get(c)
-                                     - m_suicide.size());
-                board.m_captured.set(otherColor,
-                                     board.m_captured.get(otherColor)
-                                     - m_killed.size());
+                ConstPointList killed = getKilled();
+                ConstPointList suicide = getSuicide();
+                if (m_rebuildOnUndo)
+                {
+                    for (GoPoint stone : suicide)
+                        board.setColor(stone.getIndex(), c);
+                    board.setColor(p.getIndex(), m_oldColor);
+                    for (GoPoint stone : killed)
+                        board.setColor(stone.getIndex(), otherColor);
+                    board.rebuildBlocks();
+                }
+                else
+                {
+                    board.restoreBlock(suicide, c);
+                    board.restoreBlock(killed, otherColor);
+                    board.removeStone(p.getIndex(), this);
+                }
+                board.addCaptured(c, -suicide.size());
+                board.addCaptured(otherColor, -killed.size());
             }
             board.m_toMove = m_oldToMove;
             board.m_koPoint = m_oldKoPoint;
         }
     }
 
-    private Marker m_mark;
+    /** Marker for an undefined point index. */
+    private static final int NO_POINT = -1;
+
+    /** Temporary variable reused for efficiency. */
+    private final IntPointList m_region = new IntPointList();
 
     private int m_size;
 
-    private final BlackWhiteSet<Integer> m_captured
-        = new BlackWhiteSet<Integer>(0, 0);
+    private int m_capturedBlack;
 
-    private final ArrayList<StackEntry> m_stack
-        = new ArrayList<StackEntry>(361);
+    private int m_capturedWhite;
 
-    /** Temporary variable reused for efficiency. */
-    private final PointList m_checkKillStones = new PointList();
+    /** Move stack.
+        Contains m_nuMoves valid entries, the entries above are kept for
+        reuse. */
+    private StackEntry[] m_stack = new StackEntry[361];
 
-    /** Temporary variable reused for efficiency. */
-    private final PointList m_checkKillStack = new PointList();
+    private int m_nuMoves;
+
+    /** Moves played, indexed like m_stack. */
+    private Move[] m_moves = new Move[361];
+
+    /** Hash codes of the stones on the board before each move. */
+    private long[] m_oldPositionHash = new long[361];
+
+    /** Snapshot sharing the data of the current state.
+        Null, if no snapshot was taken since the last change. */
+    private BoardSnapshot m_snapshot;
 
     private GoColor[] m_color = new GoColor[GoPoint.NUMBER_INDEXES];
 
+    /** Zobrist hash of the stones on the board. */
+    private long m_positionHash;
+
+    /** Number of position hash codes from stack entries in
+        m_positionHistory. */
+    private int m_nuPositionHistory;
+
+    /** Number of occurrences of position hash codes in the game.
+        Contains the hash codes of the positions before the first
+        m_nuPositionHistory moves. */
+    private final HashMap<Long,Integer> m_positionHistory
+        = new HashMap<Long,Integer>();
+
+    /** Point index of the anchor (representative stone) of the block of
+        each stone.
+        The blocks are stored using only point indices (see
+        GoPoint.getIndex()) and the index tables of BoardConstants, such
+        that the inner loops of move execution do not need to access GoPoint
+        objects.
+        The value is undefined for empty points. The values of points that
+        became empty by a capture are kept, because undoing the capture
+        restores the block. */
+    private int[] m_anchor = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Stones of a block as a circular list of point indices. */
+    private int[] m_nextStone = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Number of stones of a block, indexed by the anchor. */
+    private final int[] m_blockSize = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Number of liberties of a block, indexed by the anchor. */
+    private int[] m_liberties = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Marks for counting liberties without clearing.
+        A point is marked, if its value is equal to m_markValue. */
+    private final int[] m_markLiberty = new int[GoPoint.NUMBER_INDEXES];
+
+    private int m_markValue;
+
+    /** Marks for visiting blocks once while updating legal moves. */
+    private final int[] m_markBlock = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Indices of points that changed their color.
+        Used to update the legal moves incrementally. */
+    private final int[] m_changed = new int[GoPoint.NUMBER_INDEXES];
+
+    private int m_nuChanged;
+
+    private final BlackWhiteSet<LegalMoves> m_legalMoves
+        = new BlackWhiteSet<LegalMoves>(new LegalMoves(), new LegalMoves());
+
+    /** Temporary variable reused for efficiency. */
+    private final int[] m_rebuildStack = new int[GoPoint.NUMBER_INDEXES];
+
     private GoColor m_toMove;
 
     private GoColor m_setupPlayer;
@@ -496,88 +920,425 @@ public final class Board
 
     private boolean m_isSetupHandicap;
 
-    private boolean isSingleStoneSingleLib(GoPoint point, GoColor color)
+    private void addCaptured(GoColor c, int n)
     {
-        if (getColor(point) != color)
-            return false;
-        int lib = 0;
-        for (GoPoint adj : getAdjacent(point))
+        if (c == BLACK)
+            m_capturedBlack += n;
+        else
         {
-            GoColor adjColor = getColor(adj);
-            if (adjColor == EMPTY)
+            assert c == WHITE;
+            m_capturedWhite += n;
+        }
+    }
+
+    /** Add a stone on an empty point and update the blocks.
+        Merges adjacent blocks of the same color (the smaller blocks are
+        merged into the largest one) and removes the point from the
+        liberties of the adjacent opponent blocks. Does not capture
+        anything. The information needed for removeStone() is stored in
+        the stack entry. */
+    private void addStone(int index, GoColor c, StackEntry entry)
+    {
+        assert m_color[index] == EMPTY;
+        setColor(index, c);
+        int nuAdjacent = m_constants.getNumberAdjacent(index);
+        GoColor otherColor = c.otherColor();
+        int base = NO_POINT;
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            int adj = m_constants.getAdjacentIndex(index, i);
+            GoColor adjColor = m_color[adj];
+            if (adjColor == c)
+            {
+                int anchor = m_anchor[adj];
+                if (base == NO_POINT
+                    || m_blockSize[anchor] > m_blockSize[base])
+                    base = anchor;
+            }
+            else if (adjColor == otherColor
+                     && isFirstOfBlock(index, i, otherColor))
+                --m_liberties[m_anchor[adj]];
+        }
+        entry.m_mergeBase = base;
+        entry.m_nuMerged = 0;
+        if (base == NO_POINT)
+        {
+            m_anchor[index] = index;
+            m_nextStone[index] = index;
+            m_blockSize[index] = 1;
+            int liberties = 0;
+            for (int i = 0; i < nuAdjacent; ++i)
+                if (m_color[m_constants.getAdjacentIndex(index, i)] == EMPTY)
+                    ++liberties;
+            m_liberties[index] = liberties;
+            return;
+        }
+        entry.m_oldBaseSize = m_blockSize[base];
+        entry.m_oldBaseLiberties = m_liberties[base];
+        m_anchor[index] = base;
+        m_nextStone[index] = m_nextStone[base];
+        m_nextStone[base] = index;
+        ++m_blockSize[base];
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            if (! isFirstOfBlock(index, i, c))
+                continue;
+            int anchor = m_anchor[m_constants.getAdjacentIndex(index, i)];
+            if (anchor == base)
+                continue;
+            int n = entry.m_nuMerged++;
+            entry.m_merged[n] = anchor;
+            entry.m_mergedSize[n] = m_blockSize[anchor];
+            entry.m_mergedLiberties[n] = m_liberties[anchor];
+            setAnchor(anchor, base);
+            swapNextStone(base, anchor);
+            m_blockSize[base] += m_blockSize[anchor];
+        }
+        if (entry.m_nuMerged > 0)
+            m_liberties[base] = countLiberties(base);
+        else
+        {
+            // Only one block was extended, the new liberties are the
+            // empty neighbors of the stone not adjacent to the block
+            int liberties = m_liberties[base] - 1;
+            for (int i = 0; i < nuAdjacent; ++i)
             {
-                ++lib;
-                if (lib > 1)
-                    return false;
+                int adj = m_constants.getAdjacentIndex(index, i);
+                if (m_color[adj] == EMPTY
+                    && ! isAdjacentToBlock(adj, base, index))
+                    ++liberties;
             }
-            else if (adjColor.equals(color))
-                return false;
-        }
-        return true;
-    }
-
-    private void checkKill(GoPoint point, PointList killed)
-    {
-        assert m_mark.isCleared();
-        GoColor color = getColor(point);
-        assert color != EMPTY;
-        m_checkKillStack.clear();
-        m_checkKillStack.add(point);
-        m_mark.set(point);
-        m_checkKillStones.clear();
-        boolean isDead = true;
-        // Recursion is unrolled using a stack for efficiency
-        while (isDead && ! m_checkKillStack.isEmpty())
-        {
-            GoPoint p = m_checkKillStack.pop();
-            assert getColor(p) == color;
-            m_checkKillStones.add(p);
-            ConstPointList adjacent = getAdjacent(p);
-            int nuAdjacent = adjacent.size();
-            // Don't use an iterator for efficiency
+            m_liberties[base] = liberties;
+        }
+    }
+
+    private int countLiberties(int anchor)
+    {
+        ++m_markValue;
+        int liberties = 0;
+        int stone = anchor;
+        do
+        {
+            int nuAdjacent = m_constants.getNumberAdjacent(stone);
             for (int i = 0; i < nuAdjacent; ++i)
             {
-                GoPoint adj = adjacent.get(i);
-                GoColor c = getColor(adj);
-                if (c == EMPTY)
+                int adj = m_constants.getAdjacentIndex(stone, i);
+                if (m_color[adj] == EMPTY
+                    && m_markLiberty[adj] != m_markValue)
                 {
-                    isDead = false;
-                    break;
+                    m_markLiberty[adj] = m_markValue;
+                    ++liberties;
                 }
-                if (m_mark.get(adj) || ! c.equals(color))
-                    continue;
-                m_checkKillStack.add(adj);
-                m_mark.set(adj);
             }
+            stone = m_nextStone[stone];
         }
-        if (isDead)
+        while (stone != anchor);
+        return liberties;
+    }
+
+    /** Stop sharing data with the last snapshot.
+        Must be called before the board is changed. Copies the data that
+        is shared with the snapshot. */
+    private void detachSnapshot()
+    {
+        if (m_snapshot == null)
+            return;
+        m_snapshot = null;
+        m_color = m_color.clone();
+        m_anchor = m_anchor.clone();
+        m_nextStone = m_nextStone.clone();
+        m_liberties = m_liberties.clone();
+        m_moves = m_moves.clone();
+        m_oldPositionHash = m_oldPositionHash.clone();
+        for (GoColor c : BLACK_WHITE)
+            m_setup.set(c, new PointList(m_setup.get(c)));
+    }
+
+    /** Force a recomputation of all legal moves on the next call to
+        getLegalMoves(). */
+    private void invalidateLegalMoves()
+    {
+        for (GoColor c : BLACK_WHITE)
+            m_legalMoves.get(c).m_nuChanged = -1;
+        m_nuChanged = 0;
+    }
+
+    /** Check if a point is adjacent to a block.
+        @param index The point.
+        @param anchor The anchor of the block.
+        @param ignore A stone of the block to ignore. */
+    private boolean isAdjacentToBlock(int index, int anchor, int ignore)
+    {
+        GoColor c = m_color[anchor];
+        int nuAdjacent = m_constants.getNumberAdjacent(index);
+        for (int i = 0; i < nuAdjacent; ++i)
         {
-            killed.addAll(m_checkKillStones);
-            int nuKillStones = m_checkKillStones.size();
-            // Don't use an iterator for efficiency
-            for (int i = 0; i < nuKillStones; ++i)
-                setColor(m_checkKillStones.get(i), EMPTY);
+            int adj = m_constants.getAdjacentIndex(index, i);
+            if (adj != ignore && m_color[adj] == c && m_anchor[adj] == anchor)
+                return true;
         }
-        m_mark.clear(m_checkKillStack);
-        m_mark.clear(m_checkKillStones);
-        //assert m_mark.isCleared();
+        return false;
     }
 
-    private void findStones(GoPoint p, GoColor color, PointList stones)
+    private boolean isFirstOfBlock(int index, int i, GoColor c)
     {
-        if (getColor(p) != color)
-            return;
-        if (m_mark.get(p))
+        return BoardLogic.isFirstOfBlock(m_constants, m_color, m_anchor,
+                                         index, i, c);
+    }
+
+    private boolean isLegal(GoColor c, int index)
+    {
+        return (m_color[index] == EMPTY
+                && (m_koPoint == null || index != m_koPoint.getIndex())
+                && ! isSuicide(c, index));
+    }
+
+    private boolean isSingleStoneSingleLib(int index, GoColor color)
+    {
+        if (m_color[index] != color)
+            return false;
+        int anchor = m_anchor[index];
+        return (m_blockSize[anchor] == 1 && m_liberties[anchor] == 1);
+    }
+
+    private boolean isSuicide(GoColor c, int index)
+    {
+        return BoardLogic.isSuicide(m_constants, m_color, m_anchor,
+                                    m_liberties, c, index);
+    }
+
+    /** Recompute all blocks from the stone colors.
+        Used after changes to the board that are not handled
+        incrementally (setup stones, moves on occupied points). */
+    private void rebuildBlocks()
+    {
+        ++m_markValue;
+        int markBlock = m_markValue;
+        ConstPointList points = m_constants.getPoints();
+        int nuPoints = points.size();
+        for (int j = 0; j < nuPoints; ++j)
+        {
+            int index = points.get(j).getIndex();
+            GoColor c = m_color[index];
+            if (c == EMPTY || m_markLiberty[index] == markBlock)
+                continue;
+            // Recursion is unrolled using a stack for efficiency
+            m_anchor[index] = index;
+            m_nextStone[index] = index;
+            m_blockSize[index] = 1;
+            m_markLiberty[index] = markBlock;
+            int stackSize = 0;
+            m_rebuildStack[stackSize++] = index;
+            while (stackSize > 0)
+            {
+                int stone = m_rebuildStack[--stackSize];
+                int nuAdjacent = m_constants.getNumberAdjacent(stone);
+                for (int i = 0; i < nuAdjacent; ++i)
+                {
+                    int adj = m_constants.getAdjacentIndex(stone, i);
+                    if (m_color[adj] != c || m_markLiberty[adj] == markBlock)
+                        continue;
+                    m_markLiberty[adj] = markBlock;
+                    m_anchor[adj] = index;
+                    m_nextStone[adj] = m_nextStone[index];
+                    m_nextStone[index] = adj;
+                    ++m_blockSize[index];
+                    m_rebuildStack[stackSize++] = adj;
+                }
+            }
+        }
+        for (int j = 0; j < nuPoints; ++j)
+        {
+            int index = points.get(j).getIndex();
+            if (m_color[index] != EMPTY && m_anchor[index] == index)
+                m_liberties[index] = countLiberties(index);
+        }
+    }
+
+    /** Remove a block without liberties from the board.
+        Adds the points to the liberties of the adjacent opponent blocks.
+        The block data of the removed stones is kept for restoreBlock().
+        @param index A stone of the block.
+        @param removed The list to add the removed stones to. */
+    private void removeBlock(int index, PointList removed)
+    {
+        GoColor otherColor = m_color[index].otherColor();
+        int stone = index;
+        do
+        {
+            setColor(stone, EMPTY);
+            removed.add(GoPoint.getByIndex(stone));
+            int nuAdjacent = m_constants.getNumberAdjacent(stone);
+            for (int i = 0; i < nuAdjacent; ++i)
+                if (isFirstOfBlock(stone, i, otherColor))
+                {
+                    int adj = m_constants.getAdjacentIndex(stone, i);
+                    ++m_liberties[m_anchor[adj]];
+                }
+            stone = m_nextStone[stone];
+        }
+        while (stone != index);
+    }
+
+    /** Remove the stone of a move and restore the previous blocks.
+        Reverts the changes of addStone(). */
+    private void removeStone(int index, StackEntry entry)
+    {
+        int base = entry.m_mergeBase;
+        if (base != NO_POINT)
+        {
+            for (int i = entry.m_nuMerged - 1; i >= 0; --i)
+            {
+                int anchor = entry.m_merged[i];
+                swapNextStone(base, anchor);
+                setAnchor(anchor, anchor);
+                m_blockSize[anchor] = entry.m_mergedSize[i];
+                m_liberties[anchor] = entry.m_mergedLiberties[i];
+            }
+            m_nextStone[base] = m_nextStone[index];
+            m_blockSize[base] = entry.m_oldBaseSize;
+            m_liberties[base] = entry.m_oldBaseLiberties;
+        }
+        setColor(index, EMPTY);
+        m_anchor[index] = entry.m_oldAnchor;
+        m_nextStone[index] = entry.m_oldNextStone;
+        GoColor otherColor = entry.m_move.getColor().otherColor();
+        int nuAdjacent = m_constants.getNumberAdjacent(index);
+        for (int i = 0; i < nuAdjacent; ++i)
+            if (isFirstOfBlock(index, i, otherColor))
+            {
+                int adj = m_constants.getAdjacentIndex(index, i);
+                ++m_liberties[m_anchor[adj]];
+            }
+    }
+
+    /** Put back stones removed by removeBlock().
+        Reverts the changes of removeBlock(). The stones can belong to
+        several blocks. The liberties of the restored blocks are set to
+        zero, as they were at the time of the removal. */
+    private void restoreBlock(ConstPointList stones, GoColor c)
+    {
+        int nuStones = stones.size();
+        if (nuStones == 0)
             return;
-        m_mark.set(p);
-        stones.add(p);
-        for (GoPoint adj : getAdjacent(p))
-            findStones(adj, color, stones);
+        GoColor otherColor = c.otherColor();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuStones; ++i)
+        {
+            int stone = stones.get(i).getIndex();
+            setColor(stone, c);
+            int nuAdjacent = m_constants.getNumberAdjacent(stone);
+            for (int j = 0; j < nuAdjacent; ++j)
+                if (isFirstOfBlock(stone, j, otherColor))
+                {
+                    int adj = m_constants.getAdjacentIndex(stone, j);
+                    --m_liberties[m_anchor[adj]];
+                }
+            int anchor = m_anchor[stone];
+            m_blockSize[anchor] = 0;
+            m_liberties[anchor] = 0;
+        }
+        for (int i = 0; i < nuStones; ++i)
+            ++m_blockSize[m_anchor[stones.get(i).getIndex()]];
+    }
+
+    /** Set the anchor of all stones of a block. */
+    private void setAnchor(int first, int anchor)
+    {
+        int stone = first;
+        do
+        {
+            m_anchor[stone] = anchor;
+            stone = m_nextStone[stone];
+        }
+        while (stone != first);
     }
 
     private void setColor(GoPoint p, GoColor c)
     {
         assert p != null;
-        m_color[p.getIndex()] = c;
+        setColor(p.getIndex(), c);
+    }
+
+    private void setColor(int index, GoColor c)
+    {
+        if (m_nuChanged == m_changed.length)
+            invalidateLegalMoves();
+        m_changed[m_nuChanged++] = index;
+        GoColor oldColor = m_color[index];
+        if (oldColor != null && oldColor != EMPTY)
+            m_positionHash ^= Zobrist.getKey(oldColor, index);
+        if (c != EMPTY)
+            m_positionHash ^= Zobrist.getKey(c, index);
+        m_color[index] = c;
+    }
+
+    /** Join or split two circular stone lists. */
+    private void swapNextStone(int index1, int index2)
+    {
+        int tmp = m_nextStone[index1];
+        m_nextStone[index1] = m_nextStone[index2];
+        m_nextStone[index2] = tmp;
+    }
+
+    private void updateLegalMove(GoColor c, BitSet legal, int index)
+    {
+        if (m_markLiberty[index] == m_markValue)
+            return;
+        m_markLiberty[index] = m_markValue;
+        legal.set(index, isLegal(c, index));
+    }
+
+    /** Update the legality of the points affected by a changed stone.
+        These are the point, its adjacent points and the liberties of the
+        blocks that contain the point or are adjacent to it, because the
+        number of liberties of these blocks can have changed. */
+    private void updateLegalMoves(GoColor c, BitSet legal, int index)
+    {
+        updateLegalMove(c, legal, index);
+        int nuAdjacent = m_constants.getNumberAdjacent(index);
+        for (int i = 0; i < nuAdjacent; ++i)
+            updateLegalMove(c, legal, m_constants.getAdjacentIndex(index, i));
+        for (int i = -1; i < nuAdjacent; ++i)
+        {
+            int p = (i < 0 ? index : m_constants.getAdjacentIndex(index, i));
+            if (m_color[p] == EMPTY)
+                continue;
+            int anchor = m_anchor[p];
+            if (m_markBlock[anchor] == m_markValue)
+                continue;
+            m_markBlock[anchor] = m_markValue;
+            int stone = anchor;
+            do
+            {
+                int nuStoneAdjacent = m_constants.getNumberAdjacent(stone);
+                for (int j = 0; j < nuStoneAdjacent; ++j)
+                {
+                    int adj = m_constants.getAdjacentIndex(stone, j);
+                    if (m_color[adj] == EMPTY)
+                        updateLegalMove(c, legal, adj);
+                }
+                stone = m_nextStone[stone];
+            }
+            while (stone != anchor);
+        }
+    }
+
+    /** Add the position hash codes of moves played since the last call to
+        the position history. */
+    private void updatePositionHistory()
+    {
+        int nuMoves = getNumberMoves();
+        for (int i = m_nuPositionHistory; i < nuMoves; ++i)
+        {
+            Long hash = Long.valueOf(m_oldPositionHash[i]);
+            Integer count = m_positionHistory.get(hash);
+            if (count == null)
+                m_positionHistory.put(hash, Integer.valueOf(1));
+            else
+                m_positionHistory.put(hash,
+                                      Integer.valueOf(count.intValue() + 1));
+        }
+        m_nuPositionHistory = nuMoves;
     }
 }
@@ -6,6 +6,9 @@ package net.sf.gogui.go;
     Instances of this class are immutable. */
 public final class BoardConstants
 {
+    /** Maximum number of adjacent or diagonal points of a point. */
+    public static final int MAX_ADJACENT = 4;
+
     /** Get board constants for a given board size.
         The instance is created if it did not exist before, otherwise a
         reference to the existing one is returned.
@@ -28,6 +31,31 @@ public final class BoardConstants
         return m_adjacent[p.getIndex()];
     }
 
+    /** Get the index of an adjacent point.
+        Allows to iterate over adjacent points using only point indices
+        (see GoPoint.getIndex()) without accessing GoPoint objects.
+        @param index The index of the point.
+        @param i The number of the adjacent point in
+        <code>[0..getNumberAdjacent(index) - 1]</code>.
+        @return The index of the adjacent point. */
+    public int getAdjacentIndex(int index, int i)
+    {
+        assert i < m_nuAdjacent[index];
+        return m_adjacentIndex[MAX_ADJACENT * index + i];
+    }
+
+    /** Get the index of a diagonal point.
+        @param index The index of the point.
+        @param i The number of the diagonal point in
+        <code>[0..getNumberDiagonal(index) - 1]</code>.
+        @return The index of the diagonal point.
+        @see #getAdjacentIndex */
+    public int getDiagonalIndex(int index, int i)
+    {
+        assert i < m_nuDiagonal[index];
+        return m_diagonalIndex[MAX_ADJACENT * index + i];
+    }
+
     /** Get location of handicap stones.
         The handicap stone locations are defined as in the GTP version 2
         specification (section 4.1.1 Fixed Handicap Placement).
@@ -74,6 +102,24 @@ public final class BoardConstants
         return result;
     }
 
+    /** Get the number of points adjacent to a point.
+        @param index The index of the point (see GoPoint.getIndex()).
+        @return The number of adjacent points on the board; zero if the
+        point is not on the board. */
+    public int getNumberAdjacent(int index)
+    {
+        return m_nuAdjacent[index];
+    }
+
+    /** Get the number of points diagonal to a point.
+        @param index The index of the point (see GoPoint.getIndex()).
+        @return The number of diagonal points on the board; zero if the
+        point is not on the board. */
+    public int getNumberDiagonal(int index)
+    {
+        return m_nuDiagonal[index];
+    }
+
     /** Get list containing all points on the board. */
     public ConstPointList getPoints()
     {
@@ -108,6 +154,14 @@ public final class BoardConstants
                 || i == m_handicapLine3);
     }
 
+    /** Check if a point index belongs to a point on the board.
+        @param index The index of a point (see GoPoint.getIndex()).
+        @return true, if the point is on the board. */
+    public boolean isOnBoard(int index)
+    {
+        return m_onBoard[index];
+    }
+
     /** Check if point is a potential location of a handicap stone.
         @param p The point to check.
         @return true, if point is a potential location of a handicap stone.
@@ -134,6 +188,22 @@ public final class BoardConstants
 
     private final ConstPointList[] m_adjacent;
 
+    /** Number of adjacent points indexed by point index. */
+    private final int[] m_nuAdjacent;
+
+    /** Indices of adjacent points.
+        Contains MAX_ADJACENT entries per point index. */
+    private final int[] m_adjacentIndex;
+
+    /** Number of diagonal points indexed by point index. */
+    private final int[] m_nuDiagonal;
+
+    /** Indices of diagonal points.
+        Contains MAX_ADJACENT entries per point index. */
+    private final int[] m_diagonalIndex;
+
+    private final boolean[] m_onBoard;
+
     private BoardConstants(int size)
     {
         m_size = size;
@@ -158,6 +228,11 @@ public final class BoardConstants
             m_handicapLine2 = -1;
         m_allPoints = new PointList();
         m_adjacent = new ConstPointList[GoPoint.NUMBER_INDEXES];
+        m_nuAdjacent = new int[GoPoint.NUMBER_INDEXES];
+        m_adjacentIndex = new int[MAX_ADJACENT * GoPoint.NUMBER_INDEXES];
+        m_nuDiagonal = new int[GoPoint.NUMBER_INDEXES];
+        m_diagonalIndex = new int[MAX_ADJACENT * GoPoint.NUMBER_INDEXES];
+        m_onBoard = new boolean[GoPoint.NUMBER_INDEXES];
         for (int x = 0; x < m_size; ++x)
             for (int y = 0; y < m_size; ++y)
             {
@@ -172,7 +247,25 @@ public final class BoardConstants
                     adjacent.add(GoPoint.get(x, y - 1));
                 if (y < m_size - 1)
                     adjacent.add(GoPoint.get(x, y + 1));
-                m_adjacent[p.getIndex()] = adjacent;
+                int index = p.getIndex();
+                m_adjacent[index] = adjacent;
+                m_onBoard[index] = true;
+                m_nuAdjacent[index] = adjacent.size();
+                for (int i = 0; i < adjacent.size(); ++i)
+                    m_adjacentIndex[MAX_ADJACENT * index + i] =
+                        adjacent.get(i).getIndex();
+                for (int dx = -1; dx <= 1; dx += 2)
+                    for (int dy = -1; dy <= 1; dy += 2)
+                    {
+                        int diagX = x + dx;
+                        int diagY = y + dy;
+                        if (diagX < 0 || diagX >= m_size || diagY < 0
+                            || diagY >= m_size)
+                            continue;
+                        m_diagonalIndex[MAX_ADJACENT * index
+                                        + m_nuDiagonal[index]++] =
+                            GoPoint.getIndex(diagX, diagY);
+                    }
             }
     }
 }
@@ -0,0 +1,178 @@
+// BoardLogic.java
+
+package net.sf.gogui.go;
+
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+/** Rules and block functions shared by Board and BoardSnapshot.
+    The functions work on the arrays that store the position: the color of
+    each point, the anchor of the block of each stone, the next stone in
+    the circular list of the stones of each block and the number of
+    liberties of each block stored at the anchor. All arrays are indexed
+    with GoPoint.getIndex(). */
+final class BoardLogic
+{
+    /** Get the Zobrist hash of the stones of a block.
+        @param color The colors of the points.
+        @param nextStone The next stone in the block of each stone.
+        @param index A stone of the block. */
+    public static long getBlockHash(GoColor[] color, int[] nextStone,
+                                    int index)
+    {
+        GoColor c = color[index];
+        long hash = 0;
+        int stone = index;
+        do
+        {
+            hash ^= Zobrist.getKey(c, stone);
+            stone = nextStone[stone];
+        }
+        while (stone != index);
+        return hash;
+    }
+
+    /** Get the Zobrist hash of the stones after a move.
+        Used for checking the positional superko rule.
+        @param positionHash The hash of the stones before the move.
+        @param c The color of the move.
+        @param index The point of the move, must be empty.
+        @return The hash of the stones after the move including captures
+        and suicide. */
+    public static long getPositionHashAfter(BoardConstants constants,
+                                            GoColor[] color, int[] anchor,
+                                            int[] nextStone, int[] liberties,
+                                            long positionHash, GoColor c,
+                                            int index)
+    {
+        GoColor otherColor = c.otherColor();
+        long hash = positionHash ^ Zobrist.getKey(c, index);
+        boolean isCapture = false;
+        int nuAdjacent = constants.getNumberAdjacent(index);
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            int adj = constants.getAdjacentIndex(index, i);
+            if (isFirstOfBlock(constants, color, anchor, index, i, otherColor)
+                && liberties[anchor[adj]] == 1)
+            {
+                hash ^= getBlockHash(color, nextStone, adj);
+                isCapture = true;
+            }
+        }
+        if (! isCapture
+            && isSuicide(constants, color, anchor, liberties, c, index))
+        {
+            hash ^= Zobrist.getKey(c, index);
+            for (int i = 0; i < nuAdjacent; ++i)
+                if (isFirstOfBlock(constants, color, anchor, index, i, c))
+                    hash ^= getBlockHash(color, nextStone,
+                                         constants.getAdjacentIndex(index,
+                                                                    i));
+        }
+        return hash;
+    }
+
+    /** Get the stones of a block or the points of an empty region.
+        @param index A point of the block or region.
+        @param c The color of the point.
+        @param region Used as the queue for searching an empty region.
+        @param stones The list to add the points to. */
+    public static void getStones(BoardConstants constants, GoColor[] color,
+                                 int[] nextStone, int index, GoColor c,
+                                 IntPointList region, PointList stones)
+    {
+        if (c == EMPTY)
+        {
+            // The region is used as the queue and the marker of the search
+            region.clear();
+            region.add(index);
+            for (int i = 0; i < region.size(); ++i)
+            {
+                int point = region.get(i);
+                stones.add(GoPoint.getByIndex(point));
+                int nuAdjacent = constants.getNumberAdjacent(point);
+                for (int j = 0; j < nuAdjacent; ++j)
+                {
+                    int adj = constants.getAdjacentIndex(point, j);
+                    if (color[adj] == EMPTY)
+                        region.add(adj);
+                }
+            }
+            return;
+        }
+        int stone = index;
+        do
+        {
+            stones.add(GoPoint.getByIndex(stone));
+            stone = nextStone[stone];
+        }
+        while (stone != index);
+    }
+
+    /** Check if a move would capture anything or be a suicide move. */
+    public static boolean isCaptureOrSuicide(BoardConstants constants,
+                                             GoColor[] color, int[] anchor,
+                                             int[] liberties, GoColor c,
+                                             int index)
+    {
+        if (color[index] != EMPTY)
+            return false;
+        int nuAdjacent = constants.getNumberAdjacent(index);
+        GoColor otherColor = c.otherColor();
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            int adj = constants.getAdjacentIndex(index, i);
+            if (color[adj] == otherColor && liberties[anchor[adj]] == 1)
+                return true;
+        }
+        return isSuicide(constants, color, anchor, liberties, c, index);
+    }
+
+    /** Check if an adjacent point is the first stone of its block in the
+        list of adjacent points.
+        Used for iterating over the distinct adjacent blocks of a color.
+        @param index The point.
+        @param i The number of the adjacent point.
+        @param c The color of the block. */
+    public static boolean isFirstOfBlock(BoardConstants constants,
+                                         GoColor[] color, int[] anchor,
+                                         int index, int i, GoColor c)
+    {
+        int adj = constants.getAdjacentIndex(index, i);
+        if (color[adj] != c)
+            return false;
+        int adjAnchor = anchor[adj];
+        for (int j = 0; j < i; ++j)
+        {
+            int otherAdj = constants.getAdjacentIndex(index, j);
+            if (color[otherAdj] == c && anchor[otherAdj] == adjAnchor)
+                return false;
+        }
+        return true;
+    }
+
+    /** Check if a move would be a suicide move. */
+    public static boolean isSuicide(BoardConstants constants,
+                                    GoColor[] color, int[] anchor,
+                                    int[] liberties, GoColor c, int index)
+    {
+        if (color[index] != EMPTY)
+            return false;
+        int nuAdjacent = constants.getNumberAdjacent(index);
+        for (int i = 0; i < nuAdjacent; ++i)
+        {
+            int adj = constants.getAdjacentIndex(index, i);
+            GoColor adjColor = color[adj];
+            if (adjColor == EMPTY)
+                return false;
+            int adjLiberties = liberties[anchor[adj]];
+            if (adjColor == c ? adjLiberties > 1 : adjLiberties == 1)
+                return false;
+        }
+        return true;
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private BoardLogic()
+    {
+    }
+}
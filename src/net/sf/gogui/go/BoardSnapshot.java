@@ -0,0 +1,282 @@
+// BoardSnapshot.java
+
+package net.sf.gogui.go;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+/** Immutable copy of the state of a board.
+    Snapshots are created with <code>Board.getSnapshot</code> in constant
+    time. A snapshot shares the stones, blocks and move history with the
+    board it was taken from; the board copies this data before it is
+    changed the next time, so later changes of the board do not affect the
+    snapshot.
+    Instances of this class are immutable and can be used by several threads
+    without synchronization. */
+public final class BoardSnapshot
+    implements ConstBoard
+{
+    public boolean bothPassed()
+    {
+        int n = m_nuMoves;
+        return (n >= 2
+                && m_moves[n - 1].getPoint() == null
+                && m_moves[n - 2].getPoint() == null);
+    }
+
+    public boolean contains(GoPoint point)
+    {
+        return point.isOnBoard(m_size);
+    }
+
+    public ConstPointList getAdjacent(GoPoint point)
+    {
+        return m_constants.getAdjacent(point);
+    }
+
+    public int getCaptured(GoColor c)
+    {
+        if (c == BLACK)
+            return m_capturedBlack;
+        else
+        {
+            assert c == WHITE;
+            return m_capturedWhite;
+        }
+    }
+
+    public GoColor getColor(GoPoint p)
+    {
+        return m_color[p.getIndex()];
+    }
+
+    /** Get the Zobrist hash code of the position.
+        Returns the same value as <code>Board.getHashCode</code> at the time
+        the snapshot was taken. */
+    public long getHashCode()
+    {
+        return (m_positionHash ^ Zobrist.getToMoveKey(m_toMove)
+                ^ Zobrist.getKoKey(m_koPoint));
+    }
+
+    public ConstPointList getKilled()
+    {
+        assert m_nuMoves > 0;
+        return m_killed;
+    }
+
+    public Move getLastMove()
+    {
+        if (m_nuMoves == 0)
+            return null;
+        return m_moves[m_nuMoves - 1];
+    }
+
+    public int getLiberties(GoPoint p)
+    {
+        int index = p.getIndex();
+        if (m_color[index] == EMPTY)
+            return 0;
+        return m_liberties[m_anchor[index]];
+    }
+
+    public Move getMove(int i)
+    {
+        if (i >= m_nuMoves)
+            throw new IndexOutOfBoundsException();
+        return m_moves[i];
+    }
+
+    public int getNumberMoves()
+    {
+        return m_nuMoves;
+    }
+
+    public ConstPointList getSetup(GoColor c)
+    {
+        if (c == BLACK)
+            return m_setupBlack;
+        else
+        {
+            assert c == WHITE;
+            return m_setupWhite;
+        }
+    }
+
+    public GoColor getSetupPlayer()
+    {
+        return m_setupPlayer;
+    }
+
+    public int getSize()
+    {
+        return m_size;
+    }
+
+    public void getStones(GoPoint p, GoColor color, PointList stones)
+    {
+        assert p.isOnBoard(m_size);
+        if (getColor(p) != color)
+            return;
+        BoardLogic.getStones(m_constants, m_color, m_nextStone, p.getIndex(),
+                             color, new IntPointList(), stones);
+    }
+
+    public ConstPointList getSuicide()
+    {
+        assert m_nuMoves > 0;
+        return m_suicide;
+    }
+
+    public GoColor getToMove()
+    {
+        return m_toMove;
+    }
+
+    public boolean isCaptureOrSuicide(GoColor c, GoPoint p)
+    {
+        return BoardLogic.isCaptureOrSuicide(m_constants, m_color, m_anchor,
+                                             m_liberties, c, p.getIndex());
+    }
+
+    public boolean isHandicap(GoPoint point)
+    {
+        return m_constants.isHandicap(point);
+    }
+
+    public boolean isKo(GoPoint point)
+    {
+        return point == m_koPoint;
+    }
+
+    public boolean isModified()
+    {
+        return (m_nuMoves > 0 || m_setupBlack.size() > 0
+                || m_setupWhite.size() > 0 || m_toMove != BLACK);
+    }
+
+    /** Check if a move would violate the positional superko rule.
+        The set of position hash codes is created on the first call.
+        @see Board#isPositionalSuperko */
+    public boolean isPositionalSuperko(Move move)
+    {
+        GoPoint p = move.getPoint();
+        if (p == null || getColor(p) != EMPTY)
+            return false;
+        long hash =
+            BoardLogic.getPositionHashAfter(m_constants, m_color, m_anchor,
+                                            m_nextStone, m_liberties,
+                                            m_positionHash, move.getColor(),
+                                            p.getIndex());
+        if (hash == m_positionHash)
+            return true;
+        return getPositionHistory().contains(Long.valueOf(hash));
+    }
+
+    public boolean isSetupHandicap()
+    {
+        return m_isSetupHandicap;
+    }
+
+    public boolean isSuicide(GoColor c, GoPoint p)
+    {
+        return BoardLogic.isSuicide(m_constants, m_color, m_anchor,
+                                    m_liberties, c, p.getIndex());
+    }
+
+    public Iterator<GoPoint> iterator()
+    {
+        return m_constants.getPoints().iterator();
+    }
+
+    /** Constructor used by Board.getSnapshot().
+        The arrays are not copied and must not be modified after the
+        snapshot is created. */
+    BoardSnapshot(BoardConstants constants, GoColor[] color, int[] anchor,
+                  int[] nextStone, int[] liberties, Move[] moves,
+                  long[] oldPositionHash, int nuMoves, ConstPointList killed,
+                  ConstPointList suicide, ConstPointList setupBlack,
+                  ConstPointList setupWhite, GoColor setupPlayer,
+                  boolean isSetupHandicap, GoColor toMove, GoPoint koPoint,
+                  int capturedBlack, int capturedWhite, long positionHash)
+    {
+        m_size = constants.getSize();
+        m_constants = constants;
+        m_color = color;
+        m_anchor = anchor;
+        m_nextStone = nextStone;
+        m_liberties = liberties;
+        m_moves = moves;
+        m_oldPositionHash = oldPositionHash;
+        m_nuMoves = nuMoves;
+        m_killed = killed;
+        m_suicide = suicide;
+        m_setupBlack = setupBlack;
+        m_setupWhite = setupWhite;
+        m_setupPlayer = setupPlayer;
+        m_isSetupHandicap = isSetupHandicap;
+        m_toMove = toMove;
+        m_koPoint = koPoint;
+        m_capturedBlack = capturedBlack;
+        m_capturedWhite = capturedWhite;
+        m_positionHash = positionHash;
+    }
+
+    private final int m_size;
+
+    private final BoardConstants m_constants;
+
+    private final GoColor[] m_color;
+
+    private final int[] m_anchor;
+
+    private final int[] m_nextStone;
+
+    private final int[] m_liberties;
+
+    private final Move[] m_moves;
+
+    private final long[] m_oldPositionHash;
+
+    private final int m_nuMoves;
+
+    private final ConstPointList m_killed;
+
+    private final ConstPointList m_suicide;
+
+    private final ConstPointList m_setupBlack;
+
+    private final ConstPointList m_setupWhite;
+
+    private final GoColor m_setupPlayer;
+
+    private final boolean m_isSetupHandicap;
+
+    private final GoColor m_toMove;
+
+    private final GoPoint m_koPoint;
+
+    private final int m_capturedBlack;
+
+    private final int m_capturedWhite;
+
+    private final long m_positionHash;
+
+    /** Hash codes of the positions before each move.
+        Created on demand by getPositionHistory(). */
+    private HashSet<Long> m_positionHistory;
+
+    private synchronized HashSet<Long> getPositionHistory()
+    {
+        if (m_positionHistory == null)
+        {
+            m_positionHistory = new HashSet<Long>();
+            for (int i = 0; i < m_nuMoves; ++i)
+                m_positionHistory.add(Long.valueOf(m_oldPositionHash[i]));
+        }
+        return m_positionHistory;
+    }
+}
@@ -2,8 +2,10 @@
 
 package net.sf.gogui.go;
 
+import java.util.Arrays;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
 
 /** Static utility functions related to class Board. */
 public final class BoardUtil
@@ -12,6 +14,38 @@ public final class BoardUtil
         @see #rotate */
     public static final int NUMBER_ROTATIONS = 8;
 
+    /** Get a key of a position that is the same for all symmetric
+        positions.
+        Computes the Zobrist hash code of the position (see
+        Board.getHashCode()) for all rotation modes and returns the
+        minimum, such that positions that can be transformed into each other
+        by rotation or mirroring have the same key.
+        @param board The board.
+        @return The canonical key. */
+    public static long canonicalKey(ConstBoard board)
+    {
+        int[][] rotation = getRotationTable(board.getSize());
+        long[] keys = new long[NUMBER_ROTATIONS];
+        for (GoPoint p : board)
+        {
+            GoColor c = board.getColor(p);
+            int index = p.getIndex();
+            if (c != EMPTY)
+                for (int i = 0; i < NUMBER_ROTATIONS; ++i)
+                    keys[i] ^= Zobrist.getKey(c, rotation[i][index]);
+            else if (board.isKo(p))
+                for (int i = 0; i < NUMBER_ROTATIONS; ++i)
+                {
+                    GoPoint koPoint = GoPoint.getByIndex(rotation[i][index]);
+                    keys[i] ^= Zobrist.getKoKey(koPoint);
+                }
+        }
+        long key = keys[0];
+        for (int i = 1; i < NUMBER_ROTATIONS; ++i)
+            key = Math.min(key, keys[i]);
+        return key ^ Zobrist.getToMoveKey(board.getToMove());
+    }
+
     /** Copy the state of one board to another.
         Initializes the target board with the size and the setup stones of the
         source board and executes all moves of the source board on the target
@@ -33,6 +67,38 @@ public final class BoardUtil
             target.play(source.getMove(i));
     }
 
+    /** Get the table of rotated point indices for a board size.
+        The table is created on the first call for a board size and
+        shared afterwards.
+        @param size The board size.
+        @return Array with the index of the rotated point (see
+        GoPoint.getIndex()) for each rotation mode and point index; -1 for
+        indices of points not on the board. The array must not be
+        modified.
+        @see #rotate */
+    public static int[][] getRotationTable(int size)
+    {
+        assert size >= 1 && size <= GoPoint.MAX_SIZE;
+        synchronized (s_rotationTable)
+        {
+            int[][] table = s_rotationTable[size];
+            if (table == null)
+            {
+                table = new int[NUMBER_ROTATIONS][GoPoint.NUMBER_INDEXES];
+                for (int i = 0; i < NUMBER_ROTATIONS; ++i)
+                {
+                    Arrays.fill(table[i], -1);
+                    for (int x = 0; x < size; ++x)
+                        for (int y = 0; y < size; ++y)
+                            table[i][GoPoint.getIndex(x, y)] =
+                                computeRotation(i, x, y, size).getIndex();
+                }
+                s_rotationTable[size] = table;
+            }
+            return table;
+        }
+    }
+
     /** Get board position as text diagram (without additional game
         information).
         Calls <code>toString()</code> with <code>withGameInfo == false</code>.
@@ -111,8 +177,24 @@ public final class BoardUtil
         assert rotationMode < NUMBER_ROTATIONS;
         if (point == null)
             return null;
-        int x = point.getX();
-        int y = point.getY();
+        assert point.isOnBoard(size);
+        int index = getRotationTable(size)[rotationMode][point.getIndex()];
+        return GoPoint.getByIndex(index);
+    }
+
+    /** Rotation tables indexed by board size.
+        @see #getRotationTable */
+    private static final int[][][] s_rotationTable =
+        new int[GoPoint.MAX_SIZE + 1][][];
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private BoardUtil()
+    {
+    }
+
+    private static GoPoint computeRotation(int rotationMode, int x, int y,
+                                           int size)
+    {
         switch (rotationMode)
         {
         case 0:
@@ -136,11 +218,6 @@ public final class BoardUtil
         }
     }
 
-    /** Make constructor unavailable; class is for namespace only. */
-    private BoardUtil()
-    {
-    }
-
     private static void printGameInfo(ConstBoard board, StringBuilder s,
                                       int yIndex)
     {
@@ -19,8 +19,12 @@ public interface ConstBoard
 
     GoColor getColor(GoPoint p);
 
+    long getHashCode();
+
     ConstPointList getKilled();
 
+    int getLiberties(GoPoint p);
+
     Move getLastMove();
 
     Move getMove(int i);
@@ -47,6 +51,8 @@ public interface ConstBoard
 
     boolean isModified();
 
+    boolean isPositionalSuperko(Move move);
+
     boolean isSetupHandicap();
 
     boolean isSuicide(GoColor c, GoPoint p);
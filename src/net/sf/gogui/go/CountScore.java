@@ -20,16 +20,23 @@ import static net.sf.gogui.go.Score.ScoringMethod.TERRITORY;
 public class CountScore
 {
     /** Begin counting a score.
+        The internal buffers are reused, if the board has the same size as
+        the board of the previous call, so a single instance can be used for
+        counting the score of many positions efficiently.
         @param board The board.
         @param deadStones Initial set of stones to be marked as dead. */
     public void begin(ConstBoard board, ConstPointList deadStones)
     {
         m_board = board;
         int size = board.getSize();
-        m_dead = new Marker(size);
-        m_score = new GoColor[size][size];
-        for (GoPoint p : m_board)
-            m_dead.clear(p);
+        if (m_score == null || m_score.length != size)
+        {
+            m_dead = new Marker(size);
+            m_mark = new Marker(size);
+            m_score = new GoColor[size][size];
+        }
+        else
+            m_dead.clear();
         if (deadStones != null)
             for (GoPoint p : deadStones)
                 m_dead.set(p);
@@ -64,7 +71,8 @@ public class CountScore
     /** Update score after changing the life-death status of stones. */
     public void compute()
     {
-        Marker mark = new Marker(m_board.getSize());
+        Marker mark = m_mark;
+        mark.clear();
         boolean allEmpty = true;
         for (GoPoint p : m_board)
         {
@@ -79,7 +87,7 @@ public class CountScore
         }
         if (allEmpty)
             return;
-        PointList territory = new PointList();
+        IntPointList territory = m_territory;
         for (GoPoint p : m_board)
         {
             if (! mark.get(p))
@@ -89,11 +97,12 @@ public class CountScore
                     setScore(territory, BLACK);
                 else
                 {
-                    mark.clear(territory);
+                    clearMarks(mark, territory);
+                    territory.clear();
                     if (isTerritory(mark, p, territory, WHITE))
                         setScore(territory, WHITE);
                     else
-                        mark.clear(territory);
+                        clearMarks(mark, territory);
                 }
             }
         }
@@ -200,10 +209,22 @@ public class CountScore
 
     private Marker m_dead;
 
+    /** Temporary variable reused for efficiency. */
+    private Marker m_mark;
+
+    /** Temporary variable reused for efficiency. */
+    private final IntPointList m_territory = new IntPointList();
+
     private GoColor m_score[][];
 
     private ConstBoard m_board;
 
+    private static void clearMarks(Marker mark, IntPointList points)
+    {
+        for (int i = 0; i < points.size(); ++i)
+            mark.clear(points.getPoint(i));
+    }
+
     private boolean findRegion(GoPoint p, GoColor color, Marker marker,
                                PointList stones)
     {
@@ -222,7 +243,7 @@ public class CountScore
     }
 
     private boolean isTerritory(Marker mark, GoPoint p,
-                                PointList territory, GoColor color)
+                                IntPointList territory, GoColor color)
     {
         GoColor c = getColor(p);
         if (c == color.otherColor() && ! m_dead.get(p))
@@ -245,9 +266,9 @@ public class CountScore
         m_score[p.getX()][p.getY()] = c;
     }
 
-    private void setScore(ConstPointList points, GoColor c)
+    private void setScore(IntPointList points, GoColor c)
     {
-        for (GoPoint p : points)
-            setScore(p, c);
+        for (int i = 0; i < points.size(); ++i)
+            setScore(points.getPoint(i), c);
     }
 }
@@ -0,0 +1,160 @@
+// IntPointList.java
+
+package net.sf.gogui.go;
+
+/** Set of points stored as a list of point indices.
+    Stores the indices of the points (see GoPoint.getIndex()) in an int
+    array and their membership in a bit set, such that adding, removing and
+    checking for points takes constant time and iterating over the points
+    does not need an iterator object.
+    Each point is contained at most once. The order of the points is the
+    order in which they were added, as long as no point is removed; removing
+    a point moves the last point to its position. */
+public final class IntPointList
+{
+    /** Construct empty list. */
+    public IntPointList()
+    {
+    }
+
+    /** Construct list containing the points of a point list.
+        @param list The points. Duplicate points are added only once. */
+    public IntPointList(ConstPointList list)
+    {
+        addAll(list);
+    }
+
+    /** Add a point, if it is not already contained in the list.
+        @param index The index of the point.
+        @return true, if the point was added. */
+    public boolean add(int index)
+    {
+        if (contains(index))
+            return false;
+        m_bits[index >> 6] |= (1L << index);
+        m_position[index] = m_size;
+        m_points[m_size++] = index;
+        return true;
+    }
+
+    /** Add a point, if it is not already contained in the list.
+        @param p The point.
+        @return true, if the point was added. */
+    public boolean add(GoPoint p)
+    {
+        return add(p.getIndex());
+    }
+
+    /** Add all points of a point list.
+        @param list The points. */
+    public void addAll(ConstPointList list)
+    {
+        int nuPoints = list.size();
+        // Don't use an iterator for efficiency
+        for (int i = 0; i < nuPoints; ++i)
+            add(list.get(i).getIndex());
+    }
+
+    /** Remove all points.
+        Takes time proportional to the number of points in the list. */
+    public void clear()
+    {
+        for (int i = 0; i < m_size; ++i)
+        {
+            int index = m_points[i];
+            m_bits[index >> 6] &= ~(1L << index);
+        }
+        m_size = 0;
+    }
+
+    /** Check if a point is contained in the list.
+        @param index The index of the point.
+        @return true, if the point is contained. */
+    public boolean contains(int index)
+    {
+        return ((m_bits[index >> 6] & (1L << index)) != 0);
+    }
+
+    /** Check if a point is contained in the list.
+        @param p The point.
+        @return true, if the point is contained. */
+    public boolean contains(GoPoint p)
+    {
+        return contains(p.getIndex());
+    }
+
+    /** Get the index of a point in the list.
+        @param i The position in the list in <code>[0..size() - 1]</code>.
+        @return The point index. */
+    public int get(int i)
+    {
+        assert i < m_size;
+        return m_points[i];
+    }
+
+    /** Get a point in the list.
+        @param i The position in the list in <code>[0..size() - 1]</code>.
+        @return The point. */
+    public GoPoint getPoint(int i)
+    {
+        return GoPoint.getByIndex(get(i));
+    }
+
+    public boolean isEmpty()
+    {
+        return (m_size == 0);
+    }
+
+    /** Remove a point, if it is contained in the list.
+        The last point of the list takes the position of the removed point.
+        @param index The index of the point.
+        @return true, if the point was removed. */
+    public boolean remove(int index)
+    {
+        if (! contains(index))
+            return false;
+        m_bits[index >> 6] &= ~(1L << index);
+        int last = m_points[--m_size];
+        int position = m_position[index];
+        m_points[position] = last;
+        m_position[last] = position;
+        return true;
+    }
+
+    /** Remove a point, if it is contained in the list.
+        @param p The point.
+        @return true, if the point was removed. */
+    public boolean remove(GoPoint p)
+    {
+        return remove(p.getIndex());
+    }
+
+    public int size()
+    {
+        return m_size;
+    }
+
+    /** Convert to a point list.
+        @return A new list containing the points in the same order. */
+    public PointList toPointList()
+    {
+        PointList list = new PointList(m_size);
+        for (int i = 0; i < m_size; ++i)
+            list.add(GoPoint.getByIndex(m_points[i]));
+        return list;
+    }
+
+    public String toString()
+    {
+        return toPointList().toString();
+    }
+
+    private int m_size;
+
+    private final int[] m_points = new int[GoPoint.NUMBER_INDEXES];
+
+    /** Position of each contained point in m_points. */
+    private final int[] m_position = new int[GoPoint.NUMBER_INDEXES];
+
+    private final long[] m_bits = new long[(GoPoint.NUMBER_INDEXES + 63) / 64];
+}
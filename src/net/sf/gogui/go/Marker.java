@@ -2,30 +2,30 @@
 
 package net.sf.gogui.go;
 
-/** Mark points on a Go board. */
+/** Mark points on a Go board.
+    The marked points are stored in an IntPointList, so clearing all marks
+    and checking if no point is marked take time proportional to the number
+    of marked points, not to the size of the board. */
 public class Marker
 {
     /** Constructor.
         @param size Size of the board. */
     public Marker(int size)
     {
-        m_size = size;
-        m_mark = new boolean[GoPoint.NUMBER_INDEXES];
+        assert size >= 1 && size <= GoPoint.MAX_SIZE;
     }
 
     /** Clear all marked points. */
     public void clear()
     {
-        for (int x = 0; x < m_size; ++x)
-            for (int y = 0; y < m_size; ++y)
-                m_mark[GoPoint.getIndex(x, y)] = false;
+        m_mark.clear();
     }
 
     /** Clear a marked point.
         @param p The point to clear. */
     public void clear(GoPoint p)
     {
-        m_mark[p.getIndex()] = false;
+        m_mark.remove(p.getIndex());
     }
 
     /** Clear all points from a list.
@@ -35,7 +35,7 @@ public class Marker
         int nuPoints = points.size();
         // Don't use an iterator for efficiency
         for (int i = 0; i < nuPoints; ++i)
-            m_mark[points.get(i).getIndex()] = false;
+            m_mark.remove(points.get(i).getIndex());
     }
 
     /** Check if a point is marked.
@@ -43,25 +43,21 @@ public class Marker
         @return true, if point is marked, false otherwise. */
     public boolean get(GoPoint p)
     {
-        return m_mark[p.getIndex()];
+        return m_mark.contains(p.getIndex());
     }
 
     /** Check if no point is marked.
         @return true, if no point is marked, false otherwise. */
     public boolean isCleared()
     {
-        for (int x = 0; x < m_size; ++x)
-            for (int y = 0; y < m_size; ++y)
-                if (m_mark[GoPoint.getIndex(x, y)])
-                    return false;
-        return true;
+        return m_mark.isEmpty();
     }
 
     /** Mark a point.
         @param p The point to mark. */
     public void set(GoPoint p)
     {
-        m_mark[p.getIndex()] = true;
+        m_mark.add(p.getIndex());
     }
 
     /** Mark or clear a point.
@@ -70,7 +66,10 @@ public class Marker
         be cleared. */
     public void set(GoPoint p, boolean value)
     {
-        m_mark[p.getIndex()] = value;
+        if (value)
+            m_mark.add(p.getIndex());
+        else
+            m_mark.remove(p.getIndex());
     }
 
     /** Mark all points from a list.
@@ -80,10 +79,8 @@ public class Marker
         int nuPoints = points.size();
         // Don't use an iterator for efficiency
         for (int i = 0; i < nuPoints; ++i)
-            m_mark[points.get(i).getIndex()] = true;
+            m_mark.add(points.get(i).getIndex());
     }
 
-    private final int m_size;
-
-    private boolean m_mark[];
+    private final IntPointList m_mark = new IntPointList();
 }
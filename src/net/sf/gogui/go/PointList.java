@@ -56,13 +56,18 @@ public final class PointList
         @param list The list to copy the points from. */
     public PointList(ConstPointList list)
     {
-        super((PointList)list);
+        this(list.size());
+        addAllFromConst(list);
     }
 
     /** Add points of another list  at the end of this list. */
     public void addAllFromConst(ConstPointList list)
     {
-        addAll((PointList)list);
+        if (list instanceof PointList)
+            addAll((PointList)list);
+        else
+            for (GoPoint p : list)
+                add(p);
     }
 
     /** Get an empty constant point list.
@@ -0,0 +1,82 @@
+// Zobrist.java
+
+package net.sf.gogui.go;
+
+import java.util.Random;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+
+/** Random keys for Zobrist hashing of Go positions.
+    The keys are generated with a fixed seed, so hash codes are the same
+    in every run of the program. */
+final class Zobrist
+{
+    /** Get the key for a stone.
+        @param c The color of the stone (BLACK or WHITE).
+        @param p The location of the stone.
+        @return The key. */
+    public static long getKey(GoColor c, GoPoint p)
+    {
+        return getKey(c, p.getIndex());
+    }
+
+    /** Get the key for a stone.
+        @param c The color of the stone (BLACK or WHITE).
+        @param index The point index of the stone.
+        @return The key. */
+    public static long getKey(GoColor c, int index)
+    {
+        if (c == BLACK)
+            return s_black[index];
+        else
+        {
+            assert c == WHITE;
+            return s_white[index];
+        }
+    }
+
+    /** Get the key for a ko point.
+        @param p The ko point or null.
+        @return The key; zero if there is no ko point. */
+    public static long getKoKey(GoPoint p)
+    {
+        if (p == null)
+            return 0;
+        return s_ko[p.getIndex()];
+    }
+
+    /** Get the key for the color to move.
+        @param c The color to move.
+        @return The key; zero for Black to move. */
+    public static long getToMoveKey(GoColor c)
+    {
+        if (c == WHITE)
+            return s_whiteToMove;
+        return 0;
+    }
+
+    private static final long[] s_black = new long[GoPoint.NUMBER_INDEXES];
+
+    private static final long[] s_white = new long[GoPoint.NUMBER_INDEXES];
+
+    private static final long[] s_ko = new long[GoPoint.NUMBER_INDEXES];
+
+    private static final long s_whiteToMove;
+
+    static
+    {
+        Random random = new Random(0x5DEECE66DL);
+        for (int i = 0; i < GoPoint.NUMBER_INDEXES; ++i)
+        {
+            s_black[i] = random.nextLong();
+            s_white[i] = random.nextLong();
+            s_ko[i] = random.nextLong();
+        }
+        s_whiteToMove = random.nextLong();
+    }
+
+    /** Make constructor unavailable; class is for namespace only. */
+    private Zobrist()
+    {
+    }
+}
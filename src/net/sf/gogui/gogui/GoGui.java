@@ -46,6 +46,7 @@ import javax.swing.WindowConstants;
 import net.sf.gogui.game.ConstClock;
 import net.sf.gogui.game.ConstGame;
 import net.sf.gogui.game.ConstGameInfo;
+import net.sf.gogui.game.CommentIndex;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.Game;
@@ -716,7 +717,7 @@ public class GoGui
                         ConstNode root = getTree().getRootConst();
                         ConstNode currentNode = getCurrentNode();
                         ConstNode node =
-                            NodeUtil.findInComments(currentNode, m_pattern);
+                            findInComments(currentNode, m_pattern);
                         boolean cancel = false;
                         if (node == null && getCurrentNode() != root)
                         {
@@ -729,9 +730,7 @@ public class GoGui
                                 node = root;
                                 if (! NodeUtil.commentContains(node,
                                                                m_pattern))
-                                    node =
-                                        NodeUtil.findInComments(node,
-                                                                m_pattern);
+                                    node = findInComments(node, m_pattern);
                             }
                             else
                                 cancel = true;
@@ -967,6 +966,7 @@ public class GoGui
         {
             SgfReader reader = new SgfReader(in, null, null, 0);
             GameTree tree = reader.getTree();
+            clearCommentIndex();
             m_game.init(tree);
         }
         catch (SgfError e)
@@ -2337,6 +2337,11 @@ public class GoGui
 
     private Pattern m_pattern;
 
+    /** Index for finding comments in large trees.
+        Created after loading a file and cleared whenever the tree is
+        replaced. Only valid for the tree with the same root node. */
+    private CommentIndex m_commentIndex;
+
     private final File m_analyzeCommandsFile;
 
     private AnalyzeCommand m_analyzeCommand;
@@ -2865,6 +2870,17 @@ public class GoGui
         }
     }
 
+    /** Stop and release the comment index of the old tree.
+        Must be called whenever the tree is replaced. */
+    private void clearCommentIndex()
+    {
+        if (m_commentIndex != null)
+        {
+            m_commentIndex.close();
+            m_commentIndex = null;
+        }
+    }
+
     private void clearStatus()
     {
         m_statusBar.clear();
@@ -3126,6 +3142,16 @@ public class GoGui
         return true;
     }
 
+    /** Find the next node with a comment matching a pattern.
+        Uses the comment index, if it exists for the current tree. */
+    private ConstNode findInComments(ConstNode node, Pattern pattern)
+    {
+        if (m_commentIndex != null
+            && m_commentIndex.getRoot() == getTree().getRootConst())
+            return m_commentIndex.findInComments(node, pattern);
+        return NodeUtil.findInComments(node, pattern);
+    }
+
     private String formatCommand(String command)
     {
         if (command.length() < 20)
@@ -3312,6 +3338,7 @@ public class GoGui
             parser.parse(reader);
             GameTree tree =
                 NodeUtil.makeTreeFromPosition(null, parser.getBoard());
+            clearCommentIndex();
             m_game.init(tree);
         }
         catch (ParseError e)
@@ -3349,6 +3376,7 @@ public class GoGui
             showWarning(i18n("MSG_HANDICAP_UNDEFINED"),
                         format(i18n("MSG_HANDICAP_UNDEFINED_2"), m_handicap,
                                size), false);
+        clearCommentIndex();
         m_game.init(size, komi, handicap, m_prefs.get("rules", ""),
                     m_timeSettings);
         if (size != oldSize)
@@ -3507,7 +3535,9 @@ public class GoGui
             GameTree tree = runnable.getTree();
             initGame(tree.getBoardSize());
             m_menuBar.addRecent(file);
+            clearCommentIndex();
             m_game.init(tree);
+            m_commentIndex = new CommentIndex(tree.getRoot());
             initGtp();
             if (move > 0)
             {
@@ -0,0 +1,607 @@
+// SgfCollection.java
+
+package net.sf.gogui.sgf;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** SGF file containing multiple games with random access to the games.
+    Scans the file once to find the byte offset and length of each game
+    and the values of a few header properties of the root node (see
+    HEADERS). The scan only decodes the values of the root nodes, apart
+    from games with a charset that is not ASCII compatible, which are
+    decoded completely (see needsDecoding()). The result can be stored in
+    an index file (e.g. next to the SGF file, see getIndexFile()) and is
+    reused, if the SGF file was not modified. A game is read with SgfReader
+    only when it is requested. */
+public final class SgfCollection
+{
+    /** Properties of the root node stored in the index.
+        The CA property is needed for reading the games. */
+    public static final String[] HEADERS =
+        { "CA", "DT", "EV", "GN", "PB", "PW", "RE", "SZ" };
+
+    /** Open a collection without an index file.
+        Scans the SGF file.
+        @param file The SGF file.
+        @throws SgfError If reading the file fails. */
+    public SgfCollection(File file) throws SgfError
+    {
+        this(file, null);
+    }
+
+    /** Open a collection using an index file.
+        Uses the index file, if it exists and matches the SGF file,
+        otherwise scans the SGF file and tries to write the index file.
+        @param file The SGF file.
+        @param indexFile The index file or null, if no index file should
+        be used.
+        @throws SgfError If reading the file fails. */
+    public SgfCollection(File file, File indexFile) throws SgfError
+    {
+        m_file = file;
+        m_indexFile = indexFile;
+        if (indexFile == null || ! readIndex())
+        {
+            scan();
+            if (indexFile != null)
+                writeIndex();
+        }
+    }
+
+    /** Get the value of a header property of a game.
+        @param index The number of the game starting with 0.
+        @param property A property from HEADERS.
+        @return The value or null, if the root node of the game has no
+        such property. */
+    public String getHeader(int index, String property)
+    {
+        for (int i = 0; i < HEADERS.length; ++i)
+            if (HEADERS[i].equals(property))
+                return m_games.get(index).m_headers[i];
+        assert false;
+        return null;
+    }
+
+    /** Get the default name of the index file for an SGF file.
+        The index file is stored next to the SGF file. */
+    public static File getIndexFile(File file)
+    {
+        return new File(file.getPath() + ".index");
+    }
+
+    public int getNumberGames()
+    {
+        return m_games.size();
+    }
+
+    /** Read a game.
+        Reads only the bytes of the game from the SGF file.
+        @param index The number of the game starting with 0.
+        @return The reader containing the game tree and the warnings.
+        @throws SgfError If reading fails. */
+    public SgfReader readGame(int index) throws SgfError
+    {
+        Game game = m_games.get(index);
+        byte[] bytes = new byte[game.m_length];
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(m_file, "r");
+            file.seek(game.m_offset);
+            file.readFully(bytes);
+        }
+        catch (IOException e)
+        {
+            throw new SgfError("Could not read game " + (index + 1) + ": "
+                               + e.getMessage());
+        }
+        finally
+        {
+            close(file);
+        }
+        String charset = getCharset(game);
+        if (charset == null)
+            charset = "ISO-8859-1";
+        return new SgfReader(new ByteArrayInputStream(bytes), charset);
+    }
+
+    /** Reader decoding a stream character by character.
+        Counts the bytes of the decoded characters, which an
+        InputStreamReader cannot do, because it decodes ahead. */
+    private static final class CountingReader
+    {
+        public CountingReader(InputStream in, String charset)
+        {
+            m_in = in;
+            m_decoder = Charset.forName(charset).newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            m_bytes.flip();
+            m_chars.flip();
+        }
+
+        /** Get the number of bytes of the characters read so far. */
+        public long getPosition()
+        {
+            return m_position;
+        }
+
+        /** Read the next character.
+            @return The character or -1 at the end of the input. */
+        public int read() throws IOException
+        {
+            if (m_chars.hasRemaining())
+                return m_chars.get();
+            m_chars.clear();
+            // Decode at most one character to know its bytes; two chars
+            // are needed for surrogate pairs
+            m_chars.limit(1);
+            while (true)
+            {
+                int start = m_bytes.position();
+                CoderResult result =
+                    m_decoder.decode(m_bytes, m_chars, m_isEndOfInput);
+                m_position += m_bytes.position() - start;
+                if (m_chars.position() > 0)
+                    break;
+                if (result.isOverflow())
+                    m_chars.limit(2);
+                else if (m_isEndOfInput)
+                {
+                    m_decoder.flush(m_chars);
+                    if (m_chars.position() == 0)
+                        return -1;
+                    break;
+                }
+                else
+                    fill();
+            }
+            m_chars.flip();
+            return m_chars.get();
+        }
+
+        private boolean m_isEndOfInput;
+
+        private long m_position;
+
+        private final ByteBuffer m_bytes = ByteBuffer.allocate(8192);
+
+        private final CharBuffer m_chars = CharBuffer.allocate(2);
+
+        private final CharsetDecoder m_decoder;
+
+        private final InputStream m_in;
+
+        private void fill() throws IOException
+        {
+            m_bytes.compact();
+            int n = m_in.read(m_bytes.array(), m_bytes.position(),
+                              m_bytes.remaining());
+            if (n < 0)
+                m_isEndOfInput = true;
+            else
+                m_bytes.position(m_bytes.position() + n);
+            m_bytes.flip();
+        }
+    }
+
+    /** Position and header properties of a game in the file. */
+    private static final class Game
+    {
+        public long m_offset;
+
+        public int m_length;
+
+        public final String[] m_headers = new String[HEADERS.length];
+    }
+
+    /** Index of CA in HEADERS. */
+    private static final int CA_INDEX = 0;
+
+    /** First line of the index file.
+        Contains a version number, which needs to be changed if the
+        format changes. */
+    private static final String INDEX_HEADER = "GoGui SGF index 2";
+
+    private final File m_file;
+
+    private final File m_indexFile;
+
+    private final ArrayList<Game> m_games = new ArrayList<Game>();
+
+    private static void close(Closeable closeable)
+    {
+        if (closeable == null)
+            return;
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException e)
+        {
+        }
+    }
+
+    /** Escape a header value for the index file.
+        Replaces tab, newline and backslash, such that the value can be
+        stored in a tab separated line. */
+    private static String escape(String value)
+    {
+        if (value == null)
+            return "";
+        StringBuilder buffer = new StringBuilder(value.length() + 1);
+        // Distinguish empty values from missing values
+        buffer.append('=');
+        for (int i = 0; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            if (c == '\\')
+                buffer.append("\\\\");
+            else if (c == '\t')
+                buffer.append("\\t");
+            else if (c == '\n')
+                buffer.append("\\n");
+            else if (c == '\r')
+                buffer.append("\\r");
+            else
+                buffer.append(c);
+        }
+        return buffer.toString();
+    }
+
+    /** Get the charset of a game.
+        @return The value of the CA property or null, if the game has no
+        CA property or the charset is not supported. */
+    private static String getCharset(Game game)
+    {
+        String charset = game.m_headers[CA_INDEX];
+        if (charset == null || ! Charset.isSupported(charset.trim()))
+            return null;
+        return charset.trim();
+    }
+
+    private String getStamp()
+    {
+        return m_file.length() + " " + m_file.lastModified();
+    }
+
+    /** Check if the byte level scan cannot find the end of a game.
+        True for games with a charset that is not ASCII compatible (see
+        SgfLexer.isAsciiCompatible()), like Shift_JIS or Big5. The bytes
+        of their multi-byte characters can be equal to the bytes of '\'
+        or ']', so the byte level scan could miss the end of a property
+        value. */
+    private static boolean needsDecoding(Game game)
+    {
+        String charset = getCharset(game);
+        return (charset != null && ! SgfLexer.isAsciiCompatible(charset));
+    }
+
+    /** Open the SGF file at an offset. */
+    private InputStream open(long offset) throws IOException
+    {
+        FileInputStream in = new FileInputStream(m_file);
+        try
+        {
+            in.getChannel().position(offset);
+        }
+        catch (IOException e)
+        {
+            close(in);
+            throw e;
+        }
+        return in;
+    }
+
+    /** Read the index file.
+        @return false, if the index file does not exist, cannot be read or
+        does not match the SGF file. */
+    private boolean readIndex()
+    {
+        File indexFile = m_indexFile;
+        if (! indexFile.exists())
+            return false;
+        ArrayList<Game> games = new ArrayList<Game>();
+        BufferedReader reader = null;
+        try
+        {
+            reader = new BufferedReader(new InputStreamReader(
+                                   new FileInputStream(indexFile), "UTF-8"));
+            if (! INDEX_HEADER.equals(reader.readLine())
+                || ! getStamp().equals(reader.readLine()))
+                return false;
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != HEADERS.length + 2)
+                    return false;
+                Game game = new Game();
+                game.m_offset = Long.parseLong(fields[0]);
+                game.m_length = Integer.parseInt(fields[1]);
+                for (int i = 0; i < HEADERS.length; ++i)
+                    game.m_headers[i] = unescape(fields[i + 2]);
+                games.add(game);
+            }
+        }
+        catch (IOException e)
+        {
+            return false;
+        }
+        catch (NumberFormatException e)
+        {
+            return false;
+        }
+        finally
+        {
+            close(reader);
+        }
+        m_games.addAll(games);
+        return true;
+    }
+
+    /** Read the properties of a root node and store the header
+        properties.
+        @param lexer The lexer positioned after the semicolon of the root.
+        @param game The game to store the header properties in.
+        @param isDecoded true, if the lexer reads the decoded game
+        converted to UTF-8 (see scanDecoded()), false if it reads the bytes
+        of the file. In the latter case, the reading stops after a CA
+        property with a charset that is not ASCII compatible. */
+    private void readRoot(SgfLexer lexer, Game game, boolean isDecoded)
+        throws IOException, SgfError
+    {
+        while (lexer.next() == SgfLexer.PROPERTY)
+        {
+            String p = SgfReader.checkForObsoleteLongProps(
+                                                       lexer.getProperty());
+            int index = -1;
+            for (int i = 0; i < HEADERS.length; ++i)
+                if (HEADERS[i] == p)
+                    index = i;
+            while (lexer.next() == '[')
+            {
+                if (index >= 0 && game.m_headers[index] == null)
+                    game.m_headers[index] = lexer.readValue();
+                else if (! lexer.skipValue())
+                    throw new SgfError(lexer.getLineNumber()
+                                       + ": Property value incomplete");
+            }
+            if (index == CA_INDEX && ! isDecoded && needsDecoding(game))
+                // The game will be scanned again with scanDecoded()
+                return;
+            lexer.pushBack();
+        }
+        lexer.pushBack();
+        String charset = getCharset(game);
+        if (charset == null || ! SgfLexer.isAsciiCompatible(charset))
+            return;
+        // The values were decoded as ISO-8859-1, which maps each byte to a
+        // character
+        for (int i = 0; i < HEADERS.length; ++i)
+            if (game.m_headers[i] != null)
+                game.m_headers[i] =
+                    new String(game.m_headers[i].getBytes("ISO-8859-1"),
+                               charset.trim());
+    }
+
+    /** Scan the SGF file for games. */
+    private void scan() throws SgfError
+    {
+        try
+        {
+            long offset = 0;
+            while (offset >= 0)
+                offset = scan(offset);
+        }
+        catch (IOException e)
+        {
+            throw new SgfError("Could not read " + m_file + ": "
+                               + e.getMessage());
+        }
+        if (m_games.isEmpty())
+            throw new SgfError("No game found in " + m_file);
+    }
+
+    /** Scan the SGF file for games starting at an offset.
+        Scans the bytes of the file until the end of the file or the first
+        game that needs to be decoded (see needsDecoding()). Such a game
+        is scanned with scanDecoded().
+        @return The offset after the decoded game, where the scan has to be
+        continued, or -1 at the end of the file. */
+    private long scan(long start) throws IOException, SgfError
+    {
+        InputStream in = null;
+        try
+        {
+            in = open(start);
+            SgfLexer lexer = new SgfLexer(in, "ISO-8859-1");
+            while (true)
+            {
+                int t = lexer.next();
+                if (t == SgfLexer.EOF)
+                    return -1;
+                if (t != '(')
+                    continue;
+                Game game = new Game();
+                game.m_offset = start + lexer.getTokenStart();
+                t = lexer.next();
+                if (t != ';')
+                {
+                    lexer.pushBack();
+                    continue;
+                }
+                readRoot(lexer, game, false);
+                if (needsDecoding(game))
+                {
+                    scanDecoded(game);
+                    m_games.add(game);
+                    return game.m_offset + game.m_length;
+                }
+                skipGame(lexer);
+                game.m_length =
+                    (int)(start + lexer.getPosition() - game.m_offset);
+                m_games.add(game);
+            }
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    /** Scan a game that needs to be decoded.
+        Decodes the game character by character to find its end, and reads
+        the header properties from the decoded root node.
+        @see #needsDecoding */
+    private void scanDecoded(Game game) throws IOException, SgfError
+    {
+        StringBuilder text = new StringBuilder();
+        InputStream in = null;
+        try
+        {
+            in = open(game.m_offset);
+            CountingReader reader = new CountingReader(in, getCharset(game));
+            int depth = 0;
+            boolean isValue = false;
+            boolean quoted = false;
+            int c;
+            while ((c = reader.read()) >= 0)
+            {
+                text.append((char)c);
+                if (isValue)
+                {
+                    if (quoted)
+                        quoted = false;
+                    else if (c == ']')
+                        isValue = false;
+                    else
+                        quoted = (c == '\\');
+                }
+                else if (c == '[')
+                    isValue = true;
+                else if (c == '(')
+                    ++depth;
+                else if (c == ')' && --depth == 0)
+                    break;
+            }
+            game.m_length = (int)reader.getPosition();
+        }
+        finally
+        {
+            close(in);
+        }
+        byte[] bytes = text.toString().getBytes("UTF-8");
+        SgfLexer lexer = new SgfLexer(new ByteArrayInputStream(bytes),
+                                      "UTF-8");
+        lexer.next(); // '('
+        lexer.next(); // ';'
+        Arrays.fill(game.m_headers, null);
+        readRoot(lexer, game, true);
+    }
+
+    /** Skip the rest of a game after the root node.
+        Stops after the closing parenthesis of the game or at the end of
+        the input. */
+    private static void skipGame(SgfLexer lexer) throws IOException
+    {
+        int depth = 0;
+        while (true)
+        {
+            int t = lexer.next();
+            if (t == SgfLexer.EOF)
+                return;
+            if (t == '[')
+            {
+                if (! lexer.skipValue())
+                    return;
+            }
+            else if (t == '(')
+                ++depth;
+            else if (t == ')')
+            {
+                if (depth == 0)
+                    return;
+                --depth;
+            }
+        }
+    }
+
+    private static String unescape(String value)
+    {
+        if (value.length() == 0)
+            return null;
+        StringBuilder buffer = new StringBuilder(value.length());
+        for (int i = 1; i < value.length(); ++i)
+        {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length())
+            {
+                c = value.charAt(++i);
+                if (c == 't')
+                    c = '\t';
+                else if (c == 'n')
+                    c = '\n';
+                else if (c == 'r')
+                    c = '\r';
+            }
+            buffer.append(c);
+        }
+        return buffer.toString();
+    }
+
+    /** Write the index file.
+        Failures are ignored, because the index file is only used to
+        avoid scanning the SGF file the next time. */
+    private void writeIndex()
+    {
+        File indexFile = m_indexFile;
+        PrintWriter out = null;
+        try
+        {
+            out = new PrintWriter(new OutputStreamWriter(
+                                   new FileOutputStream(indexFile), "UTF-8"));
+            out.print(INDEX_HEADER + "\n");
+            out.print(getStamp() + "\n");
+            for (Game game : m_games)
+            {
+                out.print(game.m_offset);
+                out.print('\t');
+                out.print(game.m_length);
+                for (String header : game.m_headers)
+                {
+                    out.print('\t');
+                    out.print(escape(header));
+                }
+                out.print('\n');
+            }
+            out.close();
+            if (out.checkError())
+                indexFile.delete();
+        }
+        catch (IOException e)
+        {
+            close(out);
+            indexFile.delete();
+        }
+    }
+}
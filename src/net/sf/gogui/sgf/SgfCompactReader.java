@@ -0,0 +1,132 @@
+// SgfCompactReader.java
+
+package net.sf.gogui.sgf;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+import net.sf.gogui.game.CompactGameTree;
+import net.sf.gogui.game.Node;
+
+/** SGF reader creating a CompactGameTree.
+    Reads the file with SgfParser and creates the tree directly with a
+    CompactGameTree.Builder, without creating a tree of Node objects first.
+    The information of each SGF node is converted by the same code as in
+    SgfReader into a temporary Node, which is copied into the builder and
+    then discarded. Only the root node and its children are kept as Node
+    objects until the end, so the memory used for reading is mainly the
+    memory of the compact tree. Intended for very large trees like search
+    traces.
+    Only the first game of the file is read. The charset property is
+    handled like in SgfParser. */
+public final class SgfCompactReader
+{
+    /** Read SGF from stream.
+        The stream is closed after reading.
+        @param in Stream to read from.
+        @throws SgfError If reading fails. */
+    public SgfCompactReader(InputStream in) throws SgfError
+    {
+        m_parser = new SgfParser(new Handler());
+        try
+        {
+            m_parser.parse(in);
+        }
+        finally
+        {
+            try
+            {
+                in.close();
+            }
+            catch (IOException e)
+            {
+                System.err.println("Could not close SGF stream");
+            }
+        }
+        // Fixes need the children of the root
+        SgfReader.applyFixes(m_root);
+        m_root.createGameInfo();
+        m_builder.set(0, m_root);
+        m_tree = m_builder.create(m_converter.getBoardSize());
+    }
+
+    /** Get game tree of loaded SGF file.
+        @return The game tree. */
+    public CompactGameTree getTree()
+    {
+        return m_tree;
+    }
+
+    /** Get warnings that occurred during loading SGF file.
+        @return String with warning messages or null if no warnings. */
+    public String getWarnings()
+    {
+        String parserWarnings = m_parser.getWarnings();
+        String converterWarnings = m_converter.getWarnings();
+        if (parserWarnings == null)
+            return converterWarnings;
+        if (converterWarnings == null)
+            return parserWarnings;
+        return parserWarnings + converterWarnings;
+    }
+
+    private class Handler
+        implements SgfHandler
+    {
+        public void startGame()
+        {
+        }
+
+        public void startVariation()
+        {
+            m_variations.add(Integer.valueOf(m_current));
+        }
+
+        public void node(Map<String,ArrayList<String>> properties)
+            throws SgfError
+        {
+            Node node = new Node();
+            boolean isRoot = (m_root == null);
+            m_converter.convertNode(node, properties, isRoot);
+            if (isRoot)
+            {
+                m_root = node;
+                m_current = m_builder.add(-1, node);
+                return;
+            }
+            if (m_current == 0)
+                m_root.append(node);
+            m_current = m_builder.add(m_current, node);
+        }
+
+        public void endVariation()
+        {
+            m_current = m_variations.remove(m_variations.size() - 1);
+        }
+
+        public void endGame()
+        {
+            m_parser.stop();
+        }
+
+        /** Index of the last node in the builder. */
+        private int m_current;
+
+        /** Index of the father of each open variation. */
+        private final ArrayList<Integer> m_variations =
+            new ArrayList<Integer>();
+    }
+
+    private final CompactGameTree m_tree;
+
+    private final CompactGameTree.Builder m_builder =
+        new CompactGameTree.Builder();
+
+    private Node m_root;
+
+    private final SgfParser m_parser;
+
+    /** Converts the properties of the SGF nodes. */
+    private final SgfReader m_converter = new SgfReader();
+}
@@ -0,0 +1,30 @@
+// SgfHandler.java
+
+package net.sf.gogui.sgf;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/** Callback for the events of SgfParser.
+    The events of a game are startGame(), then node(), startVariation()
+    and endVariation() in the order of the SGF file, and endGame(). The
+    nodes before the first endVariation() of a game are the main
+    variation. A handler can abort the parsing by throwing an SgfError or
+    end it early with SgfParser.stop(). */
+public interface SgfHandler
+{
+    void startGame() throws SgfError;
+
+    void startVariation() throws SgfError;
+
+    /** Handle a node.
+        @param properties Map from property identifier to the property
+        values. The identifiers are in upper case, obsolete long names are
+        replaced by the standard short names. The map is reused for the
+        next node and only valid during the call. */
+    void node(Map<String,ArrayList<String>> properties) throws SgfError;
+
+    void endVariation() throws SgfError;
+
+    void endGame() throws SgfError;
+}
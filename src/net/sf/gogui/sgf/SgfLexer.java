@@ -0,0 +1,400 @@
+// SgfLexer.java
+
+package net.sf.gogui.sgf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+
+/** Tokenizer for SGF files working directly on bytes.
+    Replaces java.io.StreamTokenizer in SgfReader. Scans the bytes of the
+    input from a large buffer without decoding them, only property values
+    are decoded into strings. Property identifiers with one or two letters
+    and values with two lower case letters, like points, are returned as
+    shared strings from tables, so the common properties need no string
+    allocation. Property identifiers are always returned in upper case
+    and interned, such that they can be compared with ==.
+    Byte level scanning requires a charset, in which the bytes of the ASCII
+    characters, which are significant in SGF, cannot occur within the
+    encoding of other characters. This is true for ISO-8859-1 (the default
+    for SGF), UTF-8 and most other charsets; other charsets have to be
+    converted to UTF-8 before the input is passed to the lexer (see
+    isAsciiCompatible()). */
+final class SgfLexer
+{
+    /** Token type for end of input. */
+    public static final int EOF = -1;
+
+    /** Token type for a property identifier.
+        @see #getProperty */
+    public static final int PROPERTY = -2;
+
+    /** Constructor.
+        @param in The stream to read from.
+        @param charset The charset of the property values. Must be
+        supported and ASCII compatible. */
+    public SgfLexer(InputStream in, String charset)
+    {
+        assert isAsciiCompatible(charset);
+        m_in = in;
+        m_charset = charset;
+    }
+
+    /** Get the number of the current line.
+        Counts all line breaks up to the current position, including line
+        breaks in property values. Line breaks are LF, CR or CRLF.
+        @return The line number starting with 1. */
+    public int getLineNumber()
+    {
+        return m_lineNumber;
+    }
+
+    /** Get the number of bytes read so far.
+        @return The offset of the byte after the last token or value in
+        the input. */
+    public long getPosition()
+    {
+        return m_bufferStart + m_position;
+    }
+
+    /** Get the identifier of the last PROPERTY token.
+        @return The identifier converted to upper case, interned. */
+    public String getProperty()
+    {
+        return m_property;
+    }
+
+    /** Get the offset of the first byte of the last token in the
+        input. */
+    public long getTokenStart()
+    {
+        return m_tokenStart;
+    }
+
+    /** Change the charset for decoding the following property values.
+        @param charset The name of a supported charset, which should be
+        ASCII compatible. */
+    public void setCharset(String charset)
+    {
+        m_charset = charset;
+    }
+
+    /** Check if a charset can be used for byte level scanning.
+        @param charset The name of a supported charset.
+        @return true, if no character of the charset is encoded with bytes
+        that are also used for the ASCII characters. */
+    public static boolean isAsciiCompatible(String charset)
+    {
+        String name;
+        try
+        {
+            name = Charset.forName(charset).name();
+        }
+        catch (IllegalArgumentException e)
+        {
+            return false;
+        }
+        // Multi-byte charsets like Shift_JIS, Big5 or GBK can contain
+        // the byte of '\' or ']' in the encoding of other characters
+        return (name.equals("ISO-8859-1") || name.equals("US-ASCII")
+                || name.equals("UTF-8") || name.startsWith("ISO-8859-")
+                || name.startsWith("windows-125") || name.startsWith("KOI8-")
+                || name.startsWith("EUC-") || name.equals("GB2312"));
+    }
+
+    /** Read the next token.
+        Skips white space (all bytes less or equal to the space
+        character).
+        @return The token type: EOF, PROPERTY for a property identifier,
+        which is a sequence of letters and digits starting with a letter,
+        or the unsigned value of the byte for all other characters. */
+    public int next() throws IOException
+    {
+        if (m_isPushedBack)
+        {
+            m_isPushedBack = false;
+            return m_token;
+        }
+        int c;
+        do
+        {
+            c = read();
+            if (c == '\n' || c == '\r')
+                countLineBreak(c);
+        }
+        while (c >= 0 && c <= ' ');
+        m_tokenStart = (c < 0 ? getPosition() : getPosition() - 1);
+        if (c < 0)
+            m_token = EOF;
+        else if (isLetter(c))
+        {
+            readProperty(c);
+            m_token = PROPERTY;
+        }
+        else
+            m_token = c;
+        return m_token;
+    }
+
+    /** Return the last token again on the next call of next(). */
+    public void pushBack()
+    {
+        m_isPushedBack = true;
+    }
+
+    /** Read a property value after the opening bracket.
+        Handles escaped characters and soft line breaks and converts all
+        line breaks (LF, CR, LFCR, CRLF) to a single LF.
+        @return The decoded value without the closing bracket or null, if
+        the end of the input was reached before the closing bracket. */
+    public String readValue() throws IOException
+    {
+        int length = 0;
+        boolean quoted = false;
+        boolean isAscii = true;
+        int last = -1;
+        while (true)
+        {
+            int c = read();
+            if (c < 0)
+                return null;
+            if (c == '\n' || c == '\r')
+                countLineBreak(c);
+            else if (c >= 0x80)
+                isAscii = false;
+            if (quoted)
+            {
+                if (c != '\n' && c != '\r')
+                    length = append(length, c);
+                last = c;
+                quoted = false;
+            }
+            else
+            {
+                if (c == ']')
+                    break;
+                quoted = (c == '\\');
+                if (! quoted)
+                {
+                    boolean isLinebreak = (c == '\n' || c == '\r');
+                    boolean lastLinebreak = (last == '\n' || last == '\r');
+                    if (isLinebreak && lastLinebreak && c != last)
+                        last = -1;
+                    else
+                    {
+                        length = append(length, isLinebreak ? '\n' : c);
+                        last = c;
+                    }
+                }
+            }
+        }
+        return decode(length, isAscii);
+    }
+
+    /** Skip a property value after the opening bracket.
+        Faster than readValue(), if the value is not needed.
+        @return false, if the end of the input was reached before the
+        closing bracket. */
+    public boolean skipValue() throws IOException
+    {
+        boolean quoted = false;
+        while (true)
+        {
+            int c = read();
+            if (c < 0)
+                return false;
+            if (c == '\n' || c == '\r')
+                countLineBreak(c);
+            if (quoted)
+                quoted = false;
+            else if (c == ']')
+                return true;
+            else
+                quoted = (c == '\\');
+        }
+    }
+
+    private static final int BUFFER_SIZE = 65536;
+
+    /** Interned identifiers with one or two upper case letters.
+        @see #getNameIndex */
+    private static final String[] NAMES = new String[26 + 26 * 26];
+
+    /** Values with two lower case letters.
+        Index is 26 times the first letter plus the second letter. */
+    private static final String[] POINT_VALUES = new String[26 * 26];
+
+    static
+    {
+        for (char c1 = 'A'; c1 <= 'Z'; ++c1)
+        {
+            NAMES[getNameIndex(c1)] = String.valueOf(c1).intern();
+            for (char c2 = 'A'; c2 <= 'Z'; ++c2)
+                NAMES[getNameIndex(c1, c2)] =
+                    new String(new char[] { c1, c2 }).intern();
+        }
+        for (char c1 = 'a'; c1 <= 'z'; ++c1)
+            for (char c2 = 'a'; c2 <= 'z'; ++c2)
+                POINT_VALUES[(c1 - 'a') * 26 + (c2 - 'a')] =
+                    new String(new char[] { c1, c2 });
+    }
+
+    private boolean m_isPushedBack;
+
+    /** Was the last byte of the previous buffer content a CR. */
+    private boolean m_lastBufferEndsWithCr;
+
+    private int m_lineNumber = 1;
+
+    private int m_token;
+
+    /** Offset of the first byte in m_buffer in the input. */
+    private long m_bufferStart;
+
+    /** @see #getTokenStart */
+    private long m_tokenStart;
+
+    /** Position of the next byte in m_buffer. */
+    private int m_position;
+
+    /** Number of valid bytes in m_buffer. */
+    private int m_end;
+
+    private final byte[] m_buffer = new byte[BUFFER_SIZE];
+
+    /** Bytes of the current property value. */
+    private byte[] m_value = new byte[512];
+
+    private final InputStream m_in;
+
+    private String m_property;
+
+    private String m_charset;
+
+    /** Pre-allocated buffer for identifiers not in NAMES. */
+    private final StringBuilder m_name = new StringBuilder(16);
+
+    private int append(int length, int c)
+    {
+        if (length == m_value.length)
+        {
+            byte[] value = new byte[2 * length];
+            System.arraycopy(m_value, 0, value, 0, length);
+            m_value = value;
+        }
+        m_value[length] = (byte)c;
+        return length + 1;
+    }
+
+    /** Update the line number for a line break character that was just
+        read. */
+    private void countLineBreak(int c)
+    {
+        if (c == '\r')
+            ++m_lineNumber;
+        else
+        {
+            boolean afterCr;
+            if (m_position >= 2)
+                afterCr = (m_buffer[m_position - 2] == '\r');
+            else
+                afterCr = m_lastBufferEndsWithCr;
+            if (! afterCr)
+                ++m_lineNumber;
+        }
+    }
+
+    private String decode(int length, boolean isAscii)
+        throws UnsupportedEncodingException
+    {
+        if (length == 0)
+            return "";
+        if (length == 2)
+        {
+            int c1 = m_value[0] - 'a';
+            int c2 = m_value[1] - 'a';
+            if (c1 >= 0 && c1 < 26 && c2 >= 0 && c2 < 26)
+                return POINT_VALUES[c1 * 26 + c2];
+        }
+        if (isAscii)
+            // ASCII is a subset of all allowed charsets
+            return new String(m_value, 0, length, "ISO-8859-1");
+        return new String(m_value, 0, length, m_charset);
+    }
+
+    private static int getNameIndex(int c)
+    {
+        return c - 'A';
+    }
+
+    private static int getNameIndex(int c1, int c2)
+    {
+        return 26 + (c1 - 'A') * 26 + (c2 - 'A');
+    }
+
+    private static boolean isLetter(int c)
+    {
+        return ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'));
+    }
+
+    private int read() throws IOException
+    {
+        if (m_position == m_end)
+        {
+            if (m_end > 0)
+                m_lastBufferEndsWithCr = (m_buffer[m_end - 1] == '\r');
+            m_bufferStart += m_end;
+            int n = m_in.read(m_buffer);
+            if (n <= 0)
+            {
+                m_position = 0;
+                m_end = 0;
+                return -1;
+            }
+            m_position = 0;
+            m_end = n;
+        }
+        return m_buffer[m_position++] & 0xff;
+    }
+
+    /** Read a property identifier.
+        @param first The first letter, which was already read. */
+    private void readProperty(int first) throws IOException
+    {
+        int c1 = Character.toUpperCase((char)first);
+        int c = read();
+        if (! isLetter(c) && ! (c >= '0' && c <= '9'))
+        {
+            unread(c);
+            m_property = NAMES[getNameIndex(c1)];
+            return;
+        }
+        int c2 = Character.toUpperCase((char)c);
+        c = read();
+        if (isLetter(c2) && ! isLetter(c) && ! (c >= '0' && c <= '9'))
+        {
+            unread(c);
+            m_property = NAMES[getNameIndex(c1, c2)];
+            return;
+        }
+        m_name.setLength(0);
+        m_name.append((char)c1);
+        m_name.append((char)c2);
+        while (isLetter(c) || (c >= '0' && c <= '9'))
+        {
+            m_name.append(Character.toUpperCase((char)c));
+            c = read();
+        }
+        unread(c);
+        m_property = m_name.toString().intern();
+    }
+
+    /** Undo the last read().
+        Only allowed once after each read(). */
+    private void unread(int c)
+    {
+        if (c >= 0)
+            --m_position;
+    }
+}
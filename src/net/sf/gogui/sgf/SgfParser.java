@@ -0,0 +1,228 @@
+// SgfParser.java
+
+package net.sf.gogui.sgf;
+
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Event based SGF parser.
+    Reports the games, variations and nodes of an SGF file to an
+    SgfHandler without creating a game tree, similar to a SAX parser for
+    XML. The memory used does not depend on the size of the file, which
+    makes it suitable for tools that need only a few properties or the
+    main variation of many or large files. In contrast to SgfReader, files
+    with multiple games are supported.
+    The default charset is ISO-8859-1. A CA property in the root node of a
+    game changes the charset for the values of this game, including the
+    root node. Charsets that are not supported by SgfLexer for byte level
+    scanning are used for decoding values, but bytes of the SGF special
+    characters in the encoding of other characters can cause wrong results
+    (see SgfLexer.isAsciiCompatible()). Use SgfReader for such files. */
+public final class SgfParser
+{
+    /** Constructor.
+        @param handler The handler for the events. */
+    public SgfParser(SgfHandler handler)
+    {
+        m_handler = handler;
+    }
+
+    /** Get warnings that occurred during parsing.
+        @return String with warning messages or null if no warnings. */
+    public String getWarnings()
+    {
+        if (m_warnings.isEmpty())
+            return null;
+        StringBuilder result = new StringBuilder(m_warnings.size() * 80);
+        for (String s : m_warnings)
+        {
+            result.append(s);
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Parse an SGF stream.
+        The stream is not closed.
+        @param in The stream.
+        @throws SgfError If the stream contains no game, reading fails, or
+        the handler threw an SgfError. */
+    public void parse(InputStream in) throws SgfError
+    {
+        m_isStopped = false;
+        m_warnings.clear();
+        m_lexer = new SgfLexer(in, "ISO-8859-1");
+        try
+        {
+            boolean gameFound = false;
+            while (! m_isStopped)
+            {
+                int t = m_lexer.next();
+                if (t == SgfLexer.EOF)
+                    break;
+                if (t == '(')
+                {
+                    // Better make sure that ( is followed by a node
+                    t = m_lexer.next();
+                    m_lexer.pushBack();
+                    if (t == ';')
+                    {
+                        gameFound = true;
+                        parseGame();
+                        continue;
+                    }
+                }
+                setWarning("Extra text outside SGF tree");
+            }
+            if (! gameFound && ! m_isStopped)
+                throw getError("No root tree found");
+        }
+        catch (IOException e)
+        {
+            throw new SgfError("IO error");
+        }
+    }
+
+    /** Stop parsing.
+        Can be called by the handler. parse() returns after the current
+        event without generating more events. */
+    public void stop()
+    {
+        m_isStopped = true;
+    }
+
+    private boolean m_isStopped;
+
+    private final SgfHandler m_handler;
+
+    private SgfLexer m_lexer;
+
+    /** Contains strings with warnings. */
+    private final Set<String> m_warnings = new TreeSet<String>();
+
+    /** Map containing the properties of the current node. */
+    private final Map<String,ArrayList<String>> m_props =
+        new TreeMap<String,ArrayList<String>>();
+
+    private SgfError getError(String message)
+    {
+        return new SgfError(m_lexer.getLineNumber() + ": " + message);
+    }
+
+    /** Parse a game after its opening parenthesis. */
+    private void parseGame() throws IOException, SgfError
+    {
+        m_lexer.setCharset("ISO-8859-1");
+        m_handler.startGame();
+        boolean isRoot = true;
+        int depth = 0;
+        while (! m_isStopped)
+        {
+            int t = m_lexer.next();
+            if (t == ';')
+            {
+                readProps();
+                if (isRoot)
+                    setCharset();
+                isRoot = false;
+                m_handler.node(m_props);
+            }
+            else if (t == '(')
+            {
+                ++depth;
+                m_handler.startVariation();
+            }
+            else if (t == ')' || t == SgfLexer.EOF)
+            {
+                if (t == SgfLexer.EOF)
+                {
+                    setWarning("Game tree not closed");
+                    while (depth > 0 && ! m_isStopped)
+                    {
+                        --depth;
+                        m_handler.endVariation();
+                    }
+                    if (! m_isStopped)
+                        m_handler.endGame();
+                    stop();
+                    return;
+                }
+                if (depth == 0)
+                {
+                    m_handler.endGame();
+                    return;
+                }
+                --depth;
+                m_handler.endVariation();
+            }
+            else
+                throw getError("Next node expected");
+        }
+    }
+
+    private void readProps() throws IOException, SgfError
+    {
+        m_props.clear();
+        while (m_lexer.next() == SgfLexer.PROPERTY)
+        {
+            String p = m_lexer.getProperty();
+            ArrayList<String> values = new ArrayList<String>();
+            while (m_lexer.next() == '[')
+            {
+                String value = m_lexer.readValue();
+                if (value == null)
+                    throw getError("Property value incomplete");
+                values.add(value);
+            }
+            m_lexer.pushBack();
+            if (values.isEmpty())
+                throw getError("Property \"" + p + "\" has no value");
+            p = SgfReader.checkForObsoleteLongProps(p);
+            if (m_props.containsKey(p))
+                // Silently accept duplicate properties, as long as they have
+                // the same value (only check for single value properties)
+                if (m_props.get(p).size() > 1 || values.size() > 1
+                    || ! values.get(0).equals(m_props.get(p).get(0)))
+                    setWarning("Duplicate property " + p + " in node");
+            m_props.put(p, values);
+        }
+        m_lexer.pushBack();
+    }
+
+    /** Use the charset of the CA property of the root node, if it
+        exists. */
+    private void setCharset() throws UnsupportedEncodingException
+    {
+        ArrayList<String> values = m_props.get("CA");
+        if (values == null)
+            return;
+        String charset = values.get(0).trim();
+        if (! Charset.isSupported(charset))
+        {
+            setWarning("Unknown character set \"" + charset + "\"");
+            return;
+        }
+        if (! SgfLexer.isAsciiCompatible(charset))
+            setWarning("Character set \"" + charset
+                       + "\" not fully supported");
+        m_lexer.setCharset(charset);
+        // The values of the root node were decoded as ISO-8859-1, which
+        // maps each byte to a character
+        for (ArrayList<String> list : m_props.values())
+            for (int i = 0; i < list.size(); ++i)
+                list.set(i, new String(list.get(i).getBytes("ISO-8859-1"),
+                                       charset));
+    }
+
+    private void setWarning(String message)
+    {
+        m_warnings.add(message);
+    }
+}
@@ -2,14 +2,13 @@
 
 package net.sf.gogui.sgf;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.StreamTokenizer;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.Map;
@@ -18,6 +17,7 @@ import java.util.TreeSet;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.Set;
+import net.sf.gogui.game.ConstGameInfo;
 import net.sf.gogui.game.GameInfo;
 import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.MarkType;
@@ -36,24 +36,23 @@ import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.go.PointList;
 import net.sf.gogui.util.ByteCountInputStream;
+import net.sf.gogui.util.MappedFileInputStream;
 import net.sf.gogui.util.ProgressShow;
 
 /** SGF reader.
-    @bug The error messages sometimes contain wrong line numbers, because of
-    problems in StreamTokenizer.lineno(). Maybe the implementation should be
-    replaced not using StreamTokenizer, because this class is a legacy class.
-    (Does this happen only on Windows?) */
+    @see SgfLexer */
 public final class SgfReader
 {
     /** Read SGF file from stream.
         Default charset is ISO-8859-1 according to the SGF version 4 standard.
         The charset property is only respected if the stream is a
-        FileInputStream, because it has to be reopened with a different
-        encoding.
+        FileInputStream or MappedFileInputStream, because it has to be
+        reopened with a different encoding.
         The stream is closed after reading.
         @param in Stream to read from.
-        @param file File name if input stream is a FileInputStream to allow
-        reopening the stream after a charset change
+        @param file File name if input stream is a FileInputStream or
+        MappedFileInputStream to allow reopening the stream after a charset
+        change
         @param progressShow Callback to show progress, can be null
         @param size Size of stream if progressShow != null
         @throws SgfError If reading fails. */
@@ -64,7 +63,9 @@ public final class SgfReader
         m_file = file;
         m_progressShow = progressShow;
         m_size = size;
-        m_isFile = (in instanceof FileInputStream && file != null);
+        m_isFile = ((in instanceof FileInputStream
+                     || in instanceof MappedFileInputStream)
+                    && file != null);
         if (progressShow != null)
             progressShow.showProgress(0);
         try
@@ -77,7 +78,10 @@ public final class SgfReader
             try
             {
                 in.close();
-                in = new FileInputStream(file);
+                if (in instanceof MappedFileInputStream)
+                    in = new MappedFileInputStream(file);
+                else
+                    in = new FileInputStream(file);
             }
             catch (IOException e2)
             {
@@ -95,17 +99,50 @@ public final class SgfReader
         }
         finally
         {
-            try
-            {
-                in.close();
-            }
-            catch (IOException e)
-            {
-                System.err.println("Could not close SGF stream");
-            }
+            close(in);
         }
     }
 
+    /** Read SGF from stream with a known charset.
+        Used by SgfCollection, which knows the charset of a game from its
+        index. The charset property is ignored.
+        The stream is closed after reading.
+        @param in Stream to read from.
+        @param charset The charset.
+        @throws SgfError If reading fails. */
+    SgfReader(InputStream in, String charset) throws SgfError
+    {
+        m_file = null;
+        m_progressShow = null;
+        m_size = 0;
+        m_isFile = false;
+        try
+        {
+            readSgf(in, charset);
+        }
+        catch (SgfCharsetChanged e)
+        {
+            assert false;
+        }
+        finally
+        {
+            close(in);
+        }
+    }
+
+    /** Constructor for converting SGF nodes without reading a stream.
+        Used by SgfCompactReader, which reads the properties with
+        SgfParser and uses convertNode() to create the node information.
+        The charset property is ignored. */
+    SgfReader()
+    {
+        m_file = null;
+        m_progressShow = null;
+        m_size = 0;
+        m_isFile = false;
+        m_boardSize = -1;
+    }
+
     /** Get game tree of loaded SGF file.
         @return The game tree. */
     public GameTree getTree()
@@ -150,9 +187,13 @@ public final class SgfReader
 
     private long m_preByoyomi;
 
+    /** Stream for getting the number of bytes read.
+        Null, if no progress is shown or the input is a
+        MappedFileInputStream. */
     private ByteCountInputStream m_byteCountInputStream;
 
-    private java.io.Reader m_reader;
+    /** Input stream, if it is a MappedFileInputStream, otherwise null. */
+    private MappedFileInputStream m_mappedInputStream;
 
     private GameTree m_tree;
 
@@ -161,29 +202,26 @@ public final class SgfReader
     /** Contains strings with warnings. */
     private final Set<String> m_warnings = new TreeSet<String>();
 
-    private StreamTokenizer m_tokenizer;
+    private SgfLexer m_lexer;
 
     private final File m_file;
 
     private String m_newCharset;
 
-    /** Pre-allocated temporary buffer for use within functions. */
-    private final StringBuilder m_buffer = new StringBuilder(512);
-
     private final PointList m_pointList = new PointList();
 
     /** Map containing the properties of the current node. */
     private final Map<String,ArrayList<String>> m_props =
         new TreeMap<String,ArrayList<String>>();
 
-    /** Apply some fixes for broken SGF files. */
-    private void applyFixes()
+    /** Apply some fixes for broken SGF files.
+        @param root The root node with its children. */
+    static void applyFixes(Node root)
     {
-        Node root = m_tree.getRoot();
-        GameInfo info = m_tree.getGameInfo(root);
+        ConstGameInfo info = root.getGameInfoConst();
         if (root.hasSetup() && root.getPlayer() == null)
         {
-            if (info.getHandicap() > 0)
+            if (info != null && info.getHandicap() > 0)
             {
                 root.setPlayer(WHITE);
             }
@@ -211,27 +249,18 @@ public final class SgfReader
 
     private void checkEndOfFile() throws SgfError, IOException
     {
-        while (true)
-        {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
-            if (t == '(')
-                throw getError("Multiple SGF trees not supported");
-            else if (t == StreamTokenizer.TT_EOF)
-                return;
-            else if (t != ' ' && t != '\t' && t != '\n' && t != '\r')
-            {
-                setWarning("Extra text after SGF tree");
-                return;
-            }
-        }
+        int t = m_lexer.next();
+        if (t == '(')
+            throw getError("Multiple SGF trees not supported");
+        else if (t != SgfLexer.EOF)
+            setWarning("Extra text after SGF tree");
     }
 
     /** Check for obsolete long names for standard properties.
         These are still used in asome old SGF files.
         @param property Property name
         @return Short standard version of the property or original property */
-    private String checkForObsoleteLongProps(String property)
+    static String checkForObsoleteLongProps(String property)
     {
         if (property.length() <= 2)
             return property;
@@ -286,6 +315,73 @@ public final class SgfReader
         return property;
     }
 
+    private static void close(InputStream in)
+    {
+        try
+        {
+            in.close();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Could not close SGF stream");
+        }
+    }
+
+    /** Set the information of a node from the properties of an SGF node.
+        Requires that the reader was created with the constructor for
+        converting nodes.
+        @param node The node.
+        @param properties The properties of the SGF node.
+        @param isRoot true, if the node is the root node of the game. */
+    void convertNode(Node node, Map<String,ArrayList<String>> properties,
+                     boolean isRoot)
+        throws SgfError
+    {
+        assert m_lexer == null;
+        m_props.clear();
+        m_props.putAll(properties);
+        try
+        {
+            handleNode(node, isRoot);
+        }
+        catch (IOException e)
+        {
+            throw new SgfError("IO error");
+        }
+        catch (SgfCharsetChanged e)
+        {
+            // Not thrown, because m_isFile is false
+            assert false;
+        }
+    }
+
+    /** Convert a stream to UTF-8.
+        Used for charsets that cannot be read by SgfLexer directly.
+        Reads the complete stream. */
+    private InputStream convertToUtf8(InputStream in, String charset)
+        throws IOException
+    {
+        InputStreamReader reader;
+        try
+        {
+            reader = new InputStreamReader(in, charset);
+        }
+        catch (UnsupportedEncodingException e)
+        {
+            // Should actually not happen, because this function is only
+            // called with a CA property value, which was already checked
+            // with Charset.isSupported()
+            setWarning("Character set \"" + charset + "\" not supported");
+            reader = new InputStreamReader(in);
+        }
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[8192];
+        int n;
+        while ((n = reader.read(buffer)) > 0)
+            text.append(buffer, 0, n);
+        return new ByteArrayInputStream(text.toString().getBytes("UTF-8"));
+    }
+
     private GameInfo createGameInfo(Node node)
     {
         return node.createGameInfo();
@@ -295,29 +391,29 @@ public final class SgfReader
     {
         while (true)
         {
-            m_tokenizer.nextToken();
-            int t = m_tokenizer.ttype;
+            int t = m_lexer.next();
             if (t == '(')
             {
                 // Better make sure that ( is followed by a node
-                m_tokenizer.nextToken();
-                t = m_tokenizer.ttype;
+                t = m_lexer.next();
                 if (t == ';')
                 {
-                    m_tokenizer.pushBack();
+                    m_lexer.pushBack();
                     return;
                 }
                 else
                     setWarning("Extra text before SGF tree");
             }
-            else if (t == StreamTokenizer.TT_EOF)
+            else if (t == SgfLexer.EOF)
                 throw getError("No root tree found");
             else
                 setWarning("Extra text before SGF tree");
         }
     }
 
-    private int getBoardSize()
+    /** Get the board size.
+        Returns the default size, if no size was read yet. */
+    int getBoardSize()
     {
         if (m_boardSize == -1)
             m_boardSize = 19; // Default size for Go in the SGF standard
@@ -326,7 +422,10 @@ public final class SgfReader
 
     private SgfError getError(String message)
     {
-        int lineNumber = m_tokenizer.lineno();
+        if (m_lexer == null)
+            // Converting nodes, the line number is unknown
+            return new SgfError(message);
+        int lineNumber = m_lexer.getLineNumber();
         if (m_file == null)
             return new SgfError(lineNumber + ": " + message);
         else
@@ -336,6 +435,18 @@ public final class SgfReader
         }
     }
 
+    /** Set the information of a node from the properties in m_props. */
+    private void handleNode(Node node, boolean isRoot)
+        throws IOException, SgfError, SgfCharsetChanged
+    {
+        m_ignoreOvertime = false;
+        m_byoyomiMoves = -1;
+        m_byoyomi = -1;
+        m_preByoyomi = -1;
+        handleProps(node, isRoot);
+        setTimeSettings(node);
+    }
+
     private void handleProps(Node node, boolean isRoot)
         throws IOException, SgfError, SgfCharsetChanged
     {
@@ -761,7 +872,11 @@ public final class SgfReader
             int percent;
             if (m_size > 0)
             {
-                long count = m_byteCountInputStream.getCount();
+                long count;
+                if (m_mappedInputStream != null)
+                    count = m_mappedInputStream.getPosition();
+                else
+                    count = m_byteCountInputStream.getCount();
                 percent = (int)(count * 100 / m_size);
             }
             else
@@ -770,8 +885,7 @@ public final class SgfReader
                 m_progressShow.showProgress(percent);
             m_lastPercent = percent;
         }
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
+        int ttype = m_lexer.next();
         if (ttype == '(')
         {
             Node node = father;
@@ -781,7 +895,7 @@ public final class SgfReader
         }
         if (ttype == ')')
             return null;
-        if (ttype == StreamTokenizer.TT_EOF)
+        if (ttype == SgfLexer.EOF)
         {
             setWarning("Game tree not closed");
             return null;
@@ -791,25 +905,18 @@ public final class SgfReader
         Node son = new Node();
         if (father != null)
             father.append(son);
-        m_ignoreOvertime = false;
-        m_byoyomiMoves = -1;
-        m_byoyomi = -1;
-        m_preByoyomi = -1;
         m_props.clear();
         while (readProp());
-        handleProps(son, isRoot);
-        setTimeSettings(son);
+        handleNode(son, isRoot);
         return son;
     }
 
     private boolean readProp() throws IOException, SgfError
     {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype == StreamTokenizer.TT_WORD)
+        if (m_lexer.next() == SgfLexer.PROPERTY)
         {
-            // Use intern() to allow fast comparsion with ==
-            String p = m_tokenizer.sval.toUpperCase(Locale.ENGLISH).intern();
+            // Interned by the lexer to allow fast comparsion with ==
+            String p = m_lexer.getProperty();
             ArrayList<String> values = new ArrayList<String>();
             String s;
             while ((s = readValue()) != null)
@@ -826,9 +933,7 @@ public final class SgfReader
             m_props.put(p, values);
             return true;
         }
-        if (ttype != '\n')
-            // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-            m_tokenizer.pushBack();
+        m_lexer.pushBack();
         return false;
     }
 
@@ -838,28 +943,20 @@ public final class SgfReader
         try
         {
             m_boardSize = -1;
-            if (m_progressShow != null)
+            m_mappedInputStream = null;
+            if (in instanceof MappedFileInputStream)
+                m_mappedInputStream = (MappedFileInputStream)in;
+            else if (m_progressShow != null)
             {
                 m_byteCountInputStream = new ByteCountInputStream(in);
                 in = m_byteCountInputStream;
             }
-            InputStreamReader reader;
-            try
-            {
-                reader = new InputStreamReader(in, charset);
-            }
-            catch (UnsupportedEncodingException e)
+            if (! SgfLexer.isAsciiCompatible(charset))
             {
-                // Should actually not happen, because this function is only
-                // called with charset ISO-8859-1 (should be supported on every
-                // Java platform according to Charset documentation) or with a
-                // CA property value, which was already checked with
-                // Charset.isSupported()
-                setWarning("Character set \"" + charset + "\" not supported");
-                reader = new InputStreamReader(in);
+                in = convertToUtf8(in, charset);
+                charset = "UTF-8";
             }
-            m_reader = new BufferedReader(reader);
-            m_tokenizer = new StreamTokenizer(m_reader);
+            m_lexer = new SgfLexer(in, charset);
             findRoot();
             Node root = readNext(null, true);
             Node node = root;
@@ -868,7 +965,7 @@ public final class SgfReader
             checkEndOfFile();
             getBoardSize(); // Set to default value if still unknown
             m_tree = new GameTree(m_boardSize, root);
-            applyFixes();
+            applyFixes(root);
         }
         catch (FileNotFoundException e)
         {
@@ -886,59 +983,15 @@ public final class SgfReader
 
     private String readValue() throws IOException, SgfError
     {
-        m_tokenizer.nextToken();
-        int ttype = m_tokenizer.ttype;
-        if (ttype != '[')
+        if (m_lexer.next() != '[')
         {
-            if (ttype != '\n')
-                // Don't pushBack newline, will confuse lineno() (Bug 4942853)
-                m_tokenizer.pushBack();
+            m_lexer.pushBack();
             return null;
         }
-        m_buffer.setLength(0);
-        boolean quoted = false;
-        Character last = null;
-        while (true)
-        {
-            int c = m_reader.read();
-            if (c < 0)
-                throw getError("Property value incomplete");
-            if (quoted)
-            {
-                if (c != '\n' && c != '\r')
-                    m_buffer.append((char)c);
-                last = Character.valueOf((char)c);
-                quoted = false;
-            }
-            else
-            {
-                if (c == ']')
-                    break;
-                quoted = (c == '\\');
-                if (! quoted)
-                {
-                    // Transform all linebreaks allowed in SGF (LF, CR, LFCR,
-                    // CRLF) to a single '\n'
-                    boolean isLinebreak = (c == '\n' || c == '\r');
-                    boolean lastLinebreak =
-                        (last != null && (last.charValue() == '\n'
-                                          || last.charValue() == '\r'));
-                    boolean filterSecondLinebreak =
-                        (isLinebreak && lastLinebreak && c != last.charValue());
-                    if (filterSecondLinebreak)
-                        last = null;
-                    else
-                    {
-                        if (isLinebreak)
-                            m_buffer.append('\n');
-                        else
-                            m_buffer.append((char)c);
-                        last = Character.valueOf((char)c);
-                    }
-                }
-            }
-        }
-        return m_buffer.toString();
+        String value = m_lexer.readValue();
+        if (value == null)
+            throw getError("Property value incomplete");
+        return value;
     }
 
     private void set(Node node, StringInfo type, String value)
@@ -9,6 +9,8 @@ import java.util.ArrayList;
 import java.util.Locale;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.gamefile.GameReader;
+import net.sf.gogui.sgf.SgfCollection;
+import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.sgf.SgfWriter;
 import net.sf.gogui.tex.TexWriter;
 import net.sf.gogui.util.ErrorMessage;
@@ -31,7 +33,9 @@ public final class Main
                 "config:",
                 "force",
                 "format:",
+                "game:",
                 "help",
+                "index",
                 "title:",
                 "version",
                 "werror"
@@ -51,6 +55,10 @@ public final class Main
             String title = opt.get("title", "");
             boolean werror = opt.contains("werror");
             boolean checkOnly = opt.contains("check");
+            int game = opt.getInteger("game", 0, 1);
+            boolean useIndex = opt.contains("index");
+            if (useIndex && game == 0)
+                throw new ErrorMessage("Option -index needs option -game");
             ArrayList<String> arguments = opt.getArguments();
             if (! (arguments.size() == 2
                    || (arguments.size() == 1 && checkOnly)))
@@ -79,9 +87,27 @@ public final class Main
             }
             if (! in.exists())
                 throw new ErrorMessage("File \"" + in + "\" not found");
-            GameReader reader = new GameReader(in);
-            ConstGameTree tree = reader.getTree();
-            String warnings = reader.getWarnings();
+            ConstGameTree tree;
+            String warnings;
+            if (game > 0)
+            {
+                File indexFile =
+                    (useIndex ? SgfCollection.getIndexFile(in) : null);
+                SgfCollection collection = new SgfCollection(in, indexFile);
+                if (game > collection.getNumberGames())
+                    throw new ErrorMessage("File \"" + in + "\" contains only "
+                                           + collection.getNumberGames()
+                                           + " games");
+                SgfReader reader = collection.readGame(game - 1);
+                tree = reader.getTree();
+                warnings = reader.getWarnings();
+            }
+            else
+            {
+                GameReader reader = new GameReader(in);
+                tree = reader.getTree();
+                warnings = reader.getWarnings();
+            }
             if (warnings != null)
             {
                 System.err.print(warnings);
@@ -123,7 +149,9 @@ public final class Main
                   "-config  config file\n" +
                   "-force   overwrite existing files\n" +
                   "-format  output format (sgf,tex,xml)\n" +
+                  "-game    number of game in SGF file with multiple games\n" +
                   "-help    display this help and exit\n" +
+                  "-index   use index file with -game (infile.index)\n" +
                   "-title   use title\n" +
                   "-version print version and exit\n" +
                   "-werror  handle read warnings as errors\n");
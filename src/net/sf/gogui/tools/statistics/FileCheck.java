@@ -6,17 +6,21 @@ import java.io.InputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
-import net.sf.gogui.game.ConstNode;
-import net.sf.gogui.game.GameTree;
+import java.util.Map;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
 import static net.sf.gogui.go.GoColor.EMPTY;
-import net.sf.gogui.go.Move;
-import net.sf.gogui.sgf.SgfReader;
+import net.sf.gogui.sgf.SgfError;
+import net.sf.gogui.sgf.SgfHandler;
+import net.sf.gogui.sgf.SgfParser;
 import net.sf.gogui.util.ErrorMessage;
 
-/** Check that SGF files meet the requirements for a Statistics run. */
+/** Check that SGF files meet the requirements for a Statistics run.
+    Uses SgfParser and checks only the main variation of the first game,
+    without creating a game tree. */
 public class FileCheck
 {
     public FileCheck(ArrayList<String> sgfFiles, int size, boolean allowSetup)
@@ -31,12 +35,93 @@ public class FileCheck
         }
     }
 
+    private final class Handler
+        implements SgfHandler
+    {
+        public void startGame()
+        {
+            m_isRoot = true;
+            m_toMove = BLACK;
+        }
+
+        public void startVariation()
+        {
+        }
+
+        public void node(Map<String,ArrayList<String>> properties)
+            throws SgfError
+        {
+            if (m_isRoot)
+            {
+                int size = 19; // Default size for Go in the SGF standard
+                if (properties.containsKey("SZ"))
+                {
+                    try
+                    {
+                        size = Integer.parseInt(properties.get("SZ").get(0)
+                                                .trim());
+                    }
+                    catch (NumberFormatException e)
+                    {
+                        throw new SgfError("invalid size");
+                    }
+                }
+                if (size != m_size)
+                    throw new SgfError("size is not " + m_size);
+            }
+            if (hasSetup(properties))
+            {
+                if (m_allowSetup)
+                {
+                    if (m_isRoot)
+                        m_toMove = EMPTY;
+                    else
+                        throw new SgfError("setup stones"
+                                           + " in non-root position");
+                }
+                else
+                    throw new SgfError("contains setup stones");
+            }
+            GoColor color = null;
+            if (properties.containsKey("B"))
+                color = BLACK;
+            else if (properties.containsKey("W"))
+                color = WHITE;
+            if (color != null)
+            {
+                if (m_toMove == EMPTY)
+                    m_toMove = color;
+                if (color != m_toMove)
+                    throw new SgfError("non-alternating moves");
+                m_toMove = m_toMove.otherColor();
+            }
+            m_isRoot = false;
+        }
+
+        /** Stop at the end of the main variation. */
+        public void endVariation()
+        {
+            m_parser.stop();
+        }
+
+        public void endGame()
+        {
+            m_parser.stop();
+        }
+
+        private boolean m_isRoot;
+
+        private GoColor m_toMove;
+    }
+
     private final boolean m_allowSetup;
 
     private final int m_size;
 
     private File m_file;
 
+    private final SgfParser m_parser = new SgfParser(new Handler());
+
     private void checkFile() throws ErrorMessage
     {
         InputStream in = null;
@@ -48,39 +133,40 @@ public class FileCheck
         {
             throwError("file not found");
         }
-        SgfReader reader = new SgfReader(in, m_file, null, 0);
-        GameTree tree = reader.getTree();
-        if (tree.getBoardSize() != m_size)
-            throwError("size is not " + m_size);
-        ConstNode root = tree.getRoot();
-        GoColor toMove = BLACK;
-        for (ConstNode node = root; node != null; node = node.getChildConst())
+        try
+        {
+            m_parser.parse(in);
+        }
+        catch (SgfError e)
         {
-            if (node.hasSetup())
+            throwError(e.getMessage());
+        }
+        finally
+        {
+            try
             {
-                if (m_allowSetup)
-                {
-                    if (node == root)
-                        toMove = EMPTY;
-                    else
-                        throw new ErrorMessage("setup stones"
-                                               + " in non-root position");
-                }
-                else
-                    throw new ErrorMessage("contains setup stones");
+                in.close();
             }
-            Move move = node.getMove();
-            if (move != null)
+            catch (IOException e)
             {
-                if (toMove == EMPTY)
-                    toMove = move.getColor();
-                if (move.getColor() != toMove)
-                    throwError("non-alternating moves");
-                toMove = toMove.otherColor();
             }
         }
     }
 
+    private static boolean hasSetup(Map<String,ArrayList<String>> properties)
+    {
+        for (String p : new String[] { "AB", "AE", "AW" })
+        {
+            ArrayList<String> values = properties.get(p);
+            if (values == null)
+                continue;
+            for (String v : values)
+                if (! v.trim().equals(""))
+                    return true;
+        }
+        return false;
+    }
+
     private void throwError(String reason) throws ErrorMessage
     {
         throw new ErrorMessage(m_file + ": " + reason);
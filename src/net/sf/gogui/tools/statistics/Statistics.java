@@ -2,10 +2,7 @@
 
 package net.sf.gogui.tools.statistics;
 
-import java.io.InputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.NumberFormat;
@@ -15,7 +12,9 @@ import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.ConstGameInfo;
 import net.sf.gogui.game.ConstGameTree;
 import net.sf.gogui.game.Game;
+import net.sf.gogui.game.GameTree;
 import net.sf.gogui.game.NodeUtil;
+import net.sf.gogui.gamefile.ParallelGameReader;
 import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.EMPTY;
@@ -26,8 +25,6 @@ import net.sf.gogui.gtp.GtpClient;
 import net.sf.gogui.gtp.GtpClientBase;
 import net.sf.gogui.gtp.GtpError;
 import net.sf.gogui.gtp.GtpSynchronizer;
-import net.sf.gogui.sgf.SgfError;
-import net.sf.gogui.sgf.SgfReader;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.Platform;
 import net.sf.gogui.util.StringUtil;
@@ -98,8 +95,20 @@ public class Statistics
         String host = Platform.getHostInfo();
         m_table.setProperty("Host", host);
         m_table.setProperty("Date", StringUtil.getDate());
-        for (int i = 0; i < sgfFiles.size(); ++i)
-            handleFile(sgfFiles.get(i));
+        ArrayList<File> files = new ArrayList<File>(sgfFiles.size());
+        for (String name : sgfFiles)
+            files.add(new File(name));
+        // Read the next files while the program runs the commands
+        ParallelGameReader reader = new ParallelGameReader(files);
+        try
+        {
+            for (int i = 0; i < sgfFiles.size(); ++i)
+                handleFile(sgfFiles.get(i), reader.next().getTree());
+        }
+        finally
+        {
+            reader.close();
+        }
         m_gtp.send("quit");
         m_gtp.close();
         m_gtp.waitForExit();
@@ -352,15 +361,11 @@ public class Statistics
         return m_commands.get(index);
     }
 
-    private void handleFile(String name)
-        throws ErrorMessage, FileNotFoundException, GtpError,
-               SgfError
+    private void handleFile(String name, GameTree tree)
+        throws ErrorMessage, GtpError
     {
-        File file = new File(name);
-        InputStream in = new FileInputStream(file);
-        SgfReader reader = new SgfReader(in, file, null, 0);
         ++m_numberGames;
-        Game game = new Game(reader.getTree());
+        Game game = new Game(tree);
         checkGame(game.getTree(), name);
         if (m_random)
             iteratePositionsRandom(game, name);
@@ -3,11 +3,11 @@
 package net.sf.gogui.tools.twogtp;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import net.sf.gogui.game.ConstNode;
 import net.sf.gogui.game.GameTree;
+import net.sf.gogui.gamefile.ParallelGameReader;
 import net.sf.gogui.go.Board;
 import net.sf.gogui.go.BoardUtil;
 import net.sf.gogui.go.ConstBoard;
@@ -16,7 +16,6 @@ import static net.sf.gogui.go.GoColor.BLACK_WHITE_EMPTY;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.go.PointList;
-import net.sf.gogui.sgf.SgfReader;
 
 /** Find duplicates in games. */
 public final class Compare
@@ -64,7 +63,7 @@ public final class Compare
                                         boolean isAlternated)
     {
         String result = "-";
-        int size = board.getSize();
+        int[][] rotation = BoardUtil.getRotationTable(board.getSize());
         for (int numberGame = 0; numberGame < games.size(); ++numberGame)
         {
             if (useAlternate && ((numberGame % 2 != 0) != isAlternated))
@@ -72,6 +71,7 @@ public final class Compare
             ArrayList<Placement> gameMoves = games.get(numberGame);
             for (int rot = 0; rot < BoardUtil.NUMBER_ROTATIONS; ++rot)
             {
+                int[] rotationIndex = rotation[rot];
                 int numberDifferent = 0;
                 int moveNumber = moves.size();
                 int maxDifferent = moveNumber / 5;
@@ -85,11 +85,16 @@ public final class Compare
                 {
                     Placement move = moves.get(i);
                     Placement gameMove = gameMoves.get(i);
-                    GoPoint gameRotatedPoint =
-                        BoardUtil.rotate(rot, gameMove.m_point, size);
+                    GoPoint gamePoint = gameMove.m_point;
+                    boolean isSamePoint;
+                    if (move.m_point == null || gamePoint == null)
+                        isSamePoint = (move.m_point == gamePoint);
+                    else
+                        isSamePoint = (move.m_point.getIndex()
+                                       == rotationIndex[gamePoint.getIndex()]);
                     if (move.m_isSetup != gameMove.m_isSetup
-                        || ! move.m_color.equals(gameMove.m_color)
-                        || ! GoPoint.equals(move.m_point, gameRotatedPoint))
+                        || move.m_color != gameMove.m_color
+                        || ! isSamePoint)
                         ++numberDifferent;
                 }
                 if (numberDifferent == 0)
@@ -112,25 +117,34 @@ public final class Compare
         Board board = null;
         ArrayList<ArrayList<Placement>> games =
             new ArrayList<ArrayList<Placement>>();
-        for (int gameNumber = 0; gameNumber < filenames.size(); ++gameNumber)
+        ArrayList<File> files = new ArrayList<File>(filenames.size());
+        for (String filename : filenames)
+            files.add(new File(filename));
+        ParallelGameReader reader = new ParallelGameReader(files);
+        try
         {
-            String filename = filenames.get(gameNumber);
-            File file = new File(filename);
-            FileInputStream fileStream = new FileInputStream(file);
-            SgfReader reader = new SgfReader(fileStream, file, null, 0);
-            GameTree tree = reader.getTree();
-            int size = tree.getBoardSize();
-            if (board == null)
-                board = new Board(size);
-            else if (size != board.getSize())
-                throw new Exception("Board size in " + filename +
-                                    " does not match other games");
-            ArrayList<Placement> moves = getPlacements(tree.getRoot());
-            String duplicate =
-                checkDuplicate(board, moves, games, false, false);
-            System.out.println(Integer.toString(gameNumber) + " " +
-                               filename + " " + duplicate);
-            games.add(moves);
+            for (int gameNumber = 0; gameNumber < filenames.size();
+                 ++gameNumber)
+            {
+                String filename = filenames.get(gameNumber);
+                GameTree tree = reader.next().getTree();
+                int size = tree.getBoardSize();
+                if (board == null)
+                    board = new Board(size);
+                else if (size != board.getSize())
+                    throw new Exception("Board size in " + filename +
+                                        " does not match other games");
+                ArrayList<Placement> moves = getPlacements(tree.getRoot());
+                String duplicate =
+                    checkDuplicate(board, moves, games, false, false);
+                System.out.println(Integer.toString(gameNumber) + " " +
+                                   filename + " " + duplicate);
+                games.add(moves);
+            }
+        }
+        finally
+        {
+            reader.close();
         }
     }
 
@@ -0,0 +1,141 @@
+// MappedFileInputStream.java
+
+package net.sf.gogui.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Input stream reading a file through memory mapping.
+    Reads the file without a system call per read operation and without
+    the intermediate buffer of a FileInputStream, which makes reading very
+    large files faster. The file is mapped in regions of at most
+    REGION_SIZE bytes, such that files larger than 2 GB can be read. The
+    current position can be queried, so no ByteCountInputStream is needed
+    for showing the progress.
+    Note that the mapped memory is only released after the garbage collector
+    has collected the buffer, not in close(), because Java has no API for
+    unmapping a file. On some platforms (e.g. Windows) the file cannot be
+    deleted or modified until then. */
+public final class MappedFileInputStream
+    extends InputStream
+{
+    /** Maximum size of a mapped region. */
+    public static final int REGION_SIZE = 1 << 28;
+
+    /** Open a file and map its first region.
+        The mapping is done in the constructor, such that the caller can
+        fall back to a FileInputStream, if the file cannot be mapped.
+        @param file The file.
+        @throws IOException If the file cannot be opened or mapped. */
+    public MappedFileInputStream(File file) throws IOException
+    {
+        m_in = new FileInputStream(file);
+        m_channel = m_in.getChannel();
+        try
+        {
+            m_size = m_channel.size();
+            if (m_size > 0)
+                m_buffer = m_channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                         Math.min(REGION_SIZE, m_size));
+        }
+        catch (IOException e)
+        {
+            m_in.close();
+            throw e;
+        }
+    }
+
+    public int available()
+    {
+        return (int)Math.min(m_size - getPosition(), Integer.MAX_VALUE);
+    }
+
+    /** Close the file.
+        Does not unmap the current region, it stays in memory until the
+        garbage collector has collected it. */
+    public void close() throws IOException
+    {
+        m_buffer = null;
+        m_in.close();
+    }
+
+    /** Get the number of bytes read so far. */
+    public long getPosition()
+    {
+        if (m_buffer == null)
+            return m_regionStart;
+        return m_regionStart + m_buffer.position();
+    }
+
+    /** Get the size of the file. */
+    public long getSize()
+    {
+        return m_size;
+    }
+
+    public int read() throws IOException
+    {
+        if (! hasData())
+            return -1;
+        return m_buffer.get() & 0xff;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+            return 0;
+        if (! hasData())
+            return -1;
+        int n = Math.min(len, m_buffer.remaining());
+        m_buffer.get(b, off, n);
+        return n;
+    }
+
+    public long skip(long n) throws IOException
+    {
+        if (n <= 0)
+            return 0;
+        long position = getPosition();
+        n = Math.min(n, m_size - position);
+        if (m_buffer != null && n <= m_buffer.remaining())
+            m_buffer.position(m_buffer.position() + (int)n);
+        else
+        {
+            // Map the region containing the new position on the next read
+            m_buffer = null;
+            m_regionStart = position + n;
+        }
+        return n;
+    }
+
+    /** Start of the current region in the file. */
+    private long m_regionStart;
+
+    private final long m_size;
+
+    private final FileInputStream m_in;
+
+    private final FileChannel m_channel;
+
+    /** Current region or null, if no region is mapped. */
+    private MappedByteBuffer m_buffer;
+
+    /** Map the next region, if the current region is completely read.
+        @return false, if the end of the file is reached. */
+    private boolean hasData() throws IOException
+    {
+        if (m_buffer != null && m_buffer.hasRemaining())
+            return true;
+        long start = getPosition();
+        if (start >= m_size)
+            return false;
+        long size = Math.min(REGION_SIZE, m_size - start);
+        m_buffer = m_channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        m_regionStart = start;
+        return true;
+    }
+}
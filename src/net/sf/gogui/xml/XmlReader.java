@@ -43,6 +43,7 @@ import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
 import net.sf.gogui.sgf.SgfUtil;
 import net.sf.gogui.util.ByteCountInputStream;
+import net.sf.gogui.util.MappedFileInputStream;
 import net.sf.gogui.util.ErrorMessage;
 import net.sf.gogui.util.ProgressShow;
 
@@ -64,11 +65,16 @@ public final class XmlReader
     {
         m_progressShow = progressShow;
         m_streamSize = streamSize;
+        if (in instanceof MappedFileInputStream)
+            m_mappedInputStream = (MappedFileInputStream)in;
         if (progressShow != null)
         {
             progressShow.showProgress(0);
-            m_byteCountInputStream = new ByteCountInputStream(in);
-            in = m_byteCountInputStream;
+            if (m_mappedInputStream == null)
+            {
+                m_byteCountInputStream = new ByteCountInputStream(in);
+                in = m_byteCountInputStream;
+            }
         }
         try
         {
@@ -444,6 +450,10 @@ public final class XmlReader
 
     private ByteCountInputStream m_byteCountInputStream;
 
+    /** Input stream, if it is a MappedFileInputStream.
+        Used instead of m_byteCountInputStream for showing the progress. */
+    private MappedFileInputStream m_mappedInputStream;
+
     private final ProgressShow m_progressShow;
 
     /** Time settings information for current node from legacy SGF
@@ -1023,7 +1033,11 @@ public final class XmlReader
         int percent;
         if (m_streamSize > 0)
         {
-            long count = m_byteCountInputStream.getCount();
+            long count;
+            if (m_mappedInputStream != null)
+                count = m_mappedInputStream.getPosition();
+            else
+                count = m_byteCountInputStream.getCount();
             percent = (int)(count * 100 / m_streamSize);
         }
         else
@@ -3,8 +3,10 @@
 package net.sf.gogui.game;
 
 import net.sf.gogui.go.Board;
+import net.sf.gogui.go.GoColor;
 import static net.sf.gogui.go.GoColor.BLACK;
 import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
 import net.sf.gogui.go.GoPoint;
 import net.sf.gogui.go.Komi;
 import net.sf.gogui.go.Move;
@@ -27,6 +29,120 @@ public final class BoardUpdaterTest
         m_updater = new BoardUpdater();
     }
 
+    /** Test navigating between variations compared to a full update. */
+    public void testIncremental()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        // Main variation and a variation starting at move 2 that captures
+        // the stone at A1
+        Node node1 = appendMove(root, BLACK, 0, 0);
+        Node node2 = appendMove(node1, WHITE, 1, 0);
+        Node node3 = appendMove(node2, BLACK, 5, 5);
+        Node node4 = appendMove(node3, WHITE, 6, 6);
+        Node variation3 = appendMove(node2, BLACK, 4, 4);
+        Node variation4 = appendMove(variation3, WHITE, 0, 1);
+        Board board = new Board(19);
+        Node[] targets = { node4, variation4, node1, root, node3, variation4,
+                           node4, node2, variation3 };
+        for (Node node : targets)
+        {
+            m_updater.update(tree, node, board);
+            Board expected = new Board(19);
+            new BoardUpdater().update(tree, node, expected);
+            assertEquals(expected.getHashCode(), board.getHashCode());
+            assertEquals(expected.getNumberMoves(), board.getNumberMoves());
+            assertEquals(expected.getCaptured(BLACK),
+                         board.getCaptured(BLACK));
+        }
+        m_updater.update(tree, variation4, board);
+        assertEquals(EMPTY, board.getColor(GoPoint.get(0, 0)));
+        m_updater.update(tree, node2, board);
+        assertEquals(BLACK, board.getColor(GoPoint.get(0, 0)));
+        assertEquals(2, board.getNumberMoves());
+    }
+
+    /** Test updates starting from a checkpoint. */
+    public void testCheckpoint()
+    {
+        GameTree tree = new GameTree();
+        Node node = tree.getRoot();
+        Node[] nodes = new Node[60];
+        for (int i = 0; i < nodes.length; ++i)
+        {
+            node = appendMove(node, (i % 2 == 0 ? BLACK : WHITE), i % 19,
+                              i / 19);
+            nodes[i] = node;
+        }
+        CheckpointCache cache = new CheckpointCache(3, 20);
+        BoardUpdater updater = new BoardUpdater(cache);
+        updater.update(tree, nodes[59], new Board(19));
+        // Checkpoints after 20, 40 and 60 nodes including the root, which
+        // are nodes[18], nodes[38] and nodes[58]
+        assertEquals(3, cache.size());
+        // The board is changed before each update, so the update needs to
+        // start from a checkpoint or from the root
+        Board board = new Board(19);
+        board.play(BLACK, GoPoint.get(10, 10));
+        for (int i = 59; i >= 0; i -= 7)
+        {
+            updater.update(tree, nodes[i], board);
+            Board expected = new Board(19);
+            new BoardUpdater().update(tree, nodes[i], expected);
+            assertEquals(expected.getHashCode(), board.getHashCode());
+            assertEquals(expected.getNumberMoves(), board.getNumberMoves());
+            assertEquals(expected.getCaptured(BLACK),
+                         board.getCaptured(BLACK));
+            assertEquals(expected.getToMove(), board.getToMove());
+            board.play(BLACK, GoPoint.get(10, 10));
+        }
+        // Changed node on the path of a checkpoint
+        nodes[10].setPlayer(BLACK);
+        board = new Board(19);
+        updater.update(tree, nodes[45], board);
+        Board expected = new Board(19);
+        new BoardUpdater().update(tree, nodes[45], expected);
+        assertEquals(expected.getHashCode(), board.getHashCode());
+        assertEquals(45 + 1, board.getNumberMoves());
+        // Changed setup on the path of a checkpoint
+        nodes[5].addStone(WHITE, GoPoint.get(15, 15));
+        board = new Board(19);
+        updater.update(tree, nodes[45], board);
+        assertEquals(WHITE, board.getColor(GoPoint.get(15, 15)));
+        nodes[5].removeSetup(GoPoint.get(15, 15));
+        updater.update(tree, nodes[45], board);
+        assertEquals(EMPTY, board.getColor(GoPoint.get(15, 15)));
+        GameTree otherTree = new GameTree();
+        updater.update(otherTree, otherTree.getRoot(), board);
+        assertEquals(0, cache.size());
+    }
+
+    /** Test that changes of the current node are detected. */
+    public void testIncrementalChangedNode()
+    {
+        GameTree tree = new GameTree();
+        Node node1 = appendMove(tree.getRoot(), BLACK, 0, 0);
+        Board board = new Board(19);
+        m_updater.update(tree, node1, board);
+        assertEquals(WHITE, board.getToMove());
+        node1.setPlayer(BLACK);
+        m_updater.update(tree, node1, board);
+        assertEquals(WHITE, board.getToMove());
+        Node node2 = new Node();
+        node2.setPlayer(BLACK);
+        node1.append(node2);
+        m_updater.update(tree, node2, board);
+        assertEquals(BLACK, board.getToMove());
+        m_updater.update(tree, node1, board);
+        assertEquals(WHITE, board.getToMove());
+        node2.addStone(WHITE, GoPoint.get(3, 3));
+        m_updater.update(tree, node2, board);
+        assertEquals(WHITE, board.getColor(GoPoint.get(3, 3)));
+        board.play(BLACK, GoPoint.get(4, 4));
+        m_updater.update(tree, node2, board);
+        assertEquals(EMPTY, board.getColor(GoPoint.get(4, 4)));
+    }
+
     public void testSetup()
     {
         GameTree tree = new GameTree();
@@ -82,4 +198,11 @@ public final class BoardUpdaterTest
     }
 
     private BoardUpdater m_updater;
+
+    private static Node appendMove(Node father, GoColor c, int x, int y)
+    {
+        Node node = new Node(Move.get(c, GoPoint.get(x, y)));
+        father.append(node);
+        return node;
+    }
 }
@@ -0,0 +1,130 @@
+// CommentIndexTest.java
+
+package net.sf.gogui.game;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public final class CommentIndexTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(CommentIndexTest.class);
+    }
+
+    public void testFindInComments() throws InterruptedException
+    {
+        Node root = new Node();
+        Node node1 = new Node();
+        node1.setComment("Black is alive");
+        root.append(node1);
+        Node node2 = new Node();
+        node2.setComment("White blunders");
+        node1.append(node2);
+        Node variation = new Node();
+        variation.setComment("Black dies here");
+        root.append(variation);
+        CommentIndex index = new CommentIndex(root);
+        waitReady(index);
+        Pattern pattern = Pattern.compile("black", Pattern.CASE_INSENSITIVE);
+        assertSame(node1, index.findInComments(root, pattern));
+        assertSame(variation, index.findInComments(node1, pattern));
+        assertNull(index.findInComments(variation, pattern));
+        // Part of a word
+        pattern = Pattern.compile("lunder", Pattern.CASE_INSENSITIVE);
+        assertSame(node2, index.findInComments(root, pattern));
+        // Regular expressions are checked for all nodes
+        pattern = Pattern.compile("d.es");
+        assertSame(variation, index.findInComments(root, pattern));
+        // Changed and new comments are found
+        node2.setComment("White is dead");
+        Node node3 = new Node();
+        node3.setComment("Another dead group");
+        node2.append(node3);
+        pattern = Pattern.compile("dead");
+        assertSame(node2, index.findInComments(root, pattern));
+        assertSame(node3, index.findInComments(node2, pattern));
+        pattern = Pattern.compile("blunders");
+        assertNull(index.findInComments(root, pattern));
+    }
+
+    public void testClose()
+    {
+        Node root = new Node();
+        root.setComment("Black is alive");
+        CommentIndex index = new CommentIndex(root);
+        index.close();
+        assertFalse(index.isReady());
+        Pattern pattern = Pattern.compile("alive");
+        assertNull(index.findInComments(root, pattern));
+    }
+
+    /** Test that words are not converted to lower case with the default
+        locale, which is different from the case-insensitive pattern
+        matching, for example for the dotless i in Turkish. */
+    public void testLocale() throws InterruptedException
+    {
+        Locale defaultLocale = Locale.getDefault();
+        try
+        {
+            Locale.setDefault(new Locale("tr", "TR"));
+            Node root = new Node();
+            Node node = new Node();
+            node.setComment("ISTANBUL");
+            root.append(node);
+            CommentIndex index = new CommentIndex(root);
+            waitReady(index);
+            Pattern pattern =
+                Pattern.compile("istanbul", Pattern.CASE_INSENSITIVE);
+            assertSame(node, index.findInComments(root, pattern));
+        }
+        finally
+        {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    /** Test patterns with several words, which match only parts of words
+        at the beginning and end of the pattern. */
+    public void testPartsOfWords() throws InterruptedException
+    {
+        Node root = new Node();
+        Node node1 = new Node();
+        node1.setComment("The ladder works");
+        root.append(node1);
+        Node node2 = new Node();
+        node2.setComment("A ladder breaker");
+        node1.append(node2);
+        Node node3 = new Node();
+        node3.setComment("Ladders are good");
+        node2.append(node3);
+        CommentIndex index = new CommentIndex(root);
+        waitReady(index);
+        Pattern pattern = Pattern.compile("he ladder wo");
+        assertSame(node1, index.findInComments(root, pattern));
+        assertNull(index.findInComments(node1, pattern));
+        pattern = Pattern.compile("ladder b", Pattern.CASE_INSENSITIVE);
+        assertSame(node2, index.findInComments(root, pattern));
+        assertNull(index.findInComments(node2, pattern));
+        pattern = Pattern.compile("adders ", Pattern.CASE_INSENSITIVE);
+        assertSame(node3, index.findInComments(root, pattern));
+        pattern = Pattern.compile(" ladder ");
+        assertSame(node1, index.findInComments(root, pattern));
+        assertSame(node2, index.findInComments(node1, pattern));
+        assertNull(index.findInComments(node2, pattern));
+    }
+
+    private static void waitReady(CommentIndex index)
+        throws InterruptedException
+    {
+        for (int i = 0; i < 1000 && ! index.isReady(); ++i)
+            Thread.sleep(10);
+        assertTrue(index.isReady());
+    }
+}
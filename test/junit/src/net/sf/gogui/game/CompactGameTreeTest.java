@@ -0,0 +1,175 @@
+// CompactGameTreeTest.java
+
+package net.sf.gogui.game;
+
+import net.sf.gogui.go.Board;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
+public final class CompactGameTreeTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(CompactGameTreeTest.class);
+    }
+
+    public void testCopy()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        root.addStone(BLACK, GoPoint.get(3, 3));
+        root.setPlayer(WHITE);
+        Node node1 = new Node(Move.get(WHITE, GoPoint.get(2, 2)));
+        node1.setComment("Comment");
+        node1.setValue(0.5f);
+        root.append(node1);
+        Node node2 = new Node(Move.get(BLACK, null));
+        node2.addMarked(GoPoint.get(4, 4), MarkType.TRIANGLE);
+        node2.setLabel(GoPoint.get(5, 5), "A");
+        node1.append(node2);
+        Node variation = new Node(Move.get(BLACK, GoPoint.get(18, 18)));
+        variation.setTimeLeft(BLACK, 10);
+        node1.append(variation);
+        CompactGameTree compact = new CompactGameTree(tree);
+        assertEquals(4, compact.getNumberNodes());
+        assertEquals(tree.getBoardSize(), compact.getBoardSize());
+        assertTrue(compact.hasVariations());
+        ConstNode compactRoot = compact.getRootConst();
+        assertSame(compactRoot, compact.getRootConst());
+        assertFalse(compactRoot.hasFather());
+        assertTrue(compactRoot.hasSetup());
+        assertEquals(WHITE, compactRoot.getToMove());
+        assertNotNull(compact.getGameInfoConst(compactRoot));
+        ConstNode compactNode1 = compactRoot.getChildConst();
+        assertSame(compactRoot, compactNode1.getFatherConst());
+        assertEquals(node1.getMove(), compactNode1.getMove());
+        assertEquals("Comment", compactNode1.getComment());
+        assertEquals(0.5f, compactNode1.getValue());
+        assertEquals(2, compactNode1.getNumberChildren());
+        ConstNode compactNode2 = compactNode1.getChildConst(0);
+        ConstNode compactVariation = compactNode1.getChildConst(1);
+        assertEquals(node2.getMove(), compactNode2.getMove());
+        assertTrue(compactNode2.getMarkedConst(MarkType.TRIANGLE)
+                   .contains(GoPoint.get(4, 4)));
+        assertNull(compactNode2.getMarkedConst(MarkType.CIRCLE));
+        assertEquals("A", compactNode2.getLabel(GoPoint.get(5, 5)));
+        assertTrue(Float.isNaN(compactNode2.getValue()));
+        assertSame(compactVariation,
+                   compactNode1.variationAfter(compactNode2));
+        assertSame(compactNode2,
+                   compactNode1.variationBefore(compactVariation));
+        assertEquals(1, compactNode1.getChildIndex(compactVariation));
+        assertEquals(10.0, compactVariation.getTimeLeft(BLACK));
+        assertEquals(-1, compactVariation.getMovesLeft(WHITE));
+        assertFalse(compactVariation.hasChildren());
+        assertSame(compact.getGameInfoConst(compactRoot),
+                   compact.getGameInfoConst(compactVariation));
+    }
+
+    /** Test changing nodes with Builder.set(), which stores the new
+        comments and markup after the data of the other nodes. */
+    public void testBuilderSet()
+    {
+        CompactGameTree.Builder builder = new CompactGameTree.Builder();
+        Node root = new Node();
+        root.setComment("Root");
+        int rootIndex = builder.add(-1, root);
+        Node node = new Node(Move.get(BLACK, GoPoint.get(1, 1)));
+        node.setComment("Child");
+        node.addMarked(GoPoint.get(2, 2), MarkType.CIRCLE);
+        int index = builder.add(rootIndex, node);
+        builder.add(index, new Node(Move.get(WHITE, GoPoint.get(2, 1))));
+        root.setComment("New root comment");
+        root.addMarked(GoPoint.get(3, 3), MarkType.SQUARE);
+        root.setLabel(GoPoint.get(4, 4), "X");
+        builder.set(rootIndex, root);
+        node.setComment(null);
+        builder.set(index, node);
+        CompactGameTree tree = builder.create(19);
+        ConstNode compactRoot = tree.getRootConst();
+        assertEquals("New root comment", compactRoot.getComment());
+        assertTrue(compactRoot.getMarkedConst(MarkType.SQUARE)
+                   .contains(GoPoint.get(3, 3)));
+        assertEquals("X", compactRoot.getLabel(GoPoint.get(4, 4)));
+        ConstNode child = compactRoot.getChildConst();
+        assertFalse(child.hasComment());
+        assertNull(child.getComment());
+        assertEquals(1, child.getMarkedConst(MarkType.CIRCLE).size());
+        assertNull(child.getLabelsUnmodifiable());
+        ConstNode last = child.getChildConst();
+        assertFalse(last.isEmpty());
+        assertNull(last.getComment());
+        assertNull(last.getMarkedConst(MarkType.CIRCLE));
+    }
+
+    /** Test that markup and labels of different types are kept apart and
+        that the setup lists are the same objects on each call, which
+        BoardUpdater needs for recognizing unchanged setups. */
+    public void testMarkupAndSetup()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        root.addStone(BLACK, GoPoint.get(3, 3));
+        root.addStone(BLACK, GoPoint.get(15, 15));
+        Node node = new Node(Move.get(WHITE, GoPoint.get(2, 2)));
+        node.addMarked(GoPoint.get(4, 4), MarkType.TRIANGLE);
+        node.addMarked(GoPoint.get(5, 5), MarkType.TRIANGLE);
+        node.addMarked(GoPoint.get(4, 4), MarkType.MARK);
+        node.setLabel(GoPoint.get(4, 4), "A");
+        node.setLabel(GoPoint.get(6, 6), "B");
+        root.append(node);
+        Node node2 = new Node();
+        node2.setLabel(GoPoint.get(7, 7), "A");
+        node.append(node2);
+        CompactGameTree compact = new CompactGameTree(tree);
+        ConstNode compactRoot = compact.getRootConst();
+        assertEquals(2, compactRoot.getSetup(BLACK).size());
+        assertSame(compactRoot.getSetup(BLACK),
+                   compactRoot.getSetup(BLACK));
+        assertTrue(compactRoot.getSetup(WHITE).isEmpty());
+        ConstNode compactNode = compactRoot.getChildConst();
+        assertEquals(2, compactNode.getMarkedConst(MarkType.TRIANGLE).size());
+        assertEquals(1, compactNode.getMarkedConst(MarkType.MARK).size());
+        assertNull(compactNode.getMarkedConst(MarkType.SQUARE));
+        assertEquals(node.getLabelsUnmodifiable(),
+                     compactNode.getLabelsUnmodifiable());
+        assertEquals("B", compactNode.getLabel(GoPoint.get(6, 6)));
+        assertNull(compactNode.getLabel(GoPoint.get(5, 5)));
+        ConstNode compactNode2 = compactNode.getChildConst();
+        assertEquals("A", compactNode2.getLabel(GoPoint.get(7, 7)));
+        assertNull(compactNode2.getMarkedConst(MarkType.TRIANGLE));
+    }
+
+    /** Test that BoardUpdater gives the same position for both trees. */
+    public void testBoardUpdater()
+    {
+        GameTree tree = new GameTree();
+        Node node = tree.getRoot();
+        for (int i = 0; i < 30; ++i)
+        {
+            Node child =
+                new Node(Move.get(i % 2 == 0 ? BLACK : WHITE,
+                                  GoPoint.get(i % 19, i / 19)));
+            node.append(child);
+            node = child;
+        }
+        CompactGameTree compact = new CompactGameTree(tree);
+        Board board = new Board(19);
+        new BoardUpdater().update(tree, node, board);
+        ConstNode compactNode = compact.getRootConst();
+        while (compactNode.hasChildren())
+            compactNode = compactNode.getChildConst();
+        Board compactBoard = new Board(19);
+        new BoardUpdater().update(compact, compactNode, compactBoard);
+        assertEquals(board.getHashCode(), compactBoard.getHashCode());
+        assertEquals(30, compactBoard.getNumberMoves());
+    }
+}
@@ -74,6 +74,29 @@ public final class GameTest
         assertEquals(0, node.getSetup(EMPTY).size());
     }
 
+    /** Test that the board is updated after changing setup stones in the
+        root node.
+        Regression test for a bug in the incremental update of
+        BoardUpdater, which did not detect changes of the setup stones of
+        a node with setup stones. */
+    public static void testSetupInRootUpdatesBoard()
+    {
+        Game game = new Game(19);
+        GoPoint c3 = GoPoint.get(2, 2);
+        GoPoint d4 = GoPoint.get(3, 3);
+        GoPoint e5 = GoPoint.get(4, 4);
+        game.setup(c3, BLACK);
+        game.setup(d4, BLACK);
+        game.setup(e5, WHITE);
+        assertEquals(BLACK, game.getBoard().getColor(c3));
+        assertEquals(BLACK, game.getBoard().getColor(d4));
+        assertEquals(WHITE, game.getBoard().getColor(e5));
+        game.setup(c3, EMPTY);
+        assertEquals(EMPTY, game.getBoard().getColor(c3));
+        assertEquals(BLACK, game.getBoard().getColor(d4));
+        assertEquals(WHITE, game.getBoard().getColor(e5));
+    }
+
     /** Test that clock is initialized with time settings. */
     public static void testTimeSettingsInit()
     {
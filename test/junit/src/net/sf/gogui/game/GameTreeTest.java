@@ -2,6 +2,13 @@
 
 package net.sf.gogui.game;
 
+import java.util.List;
+import net.sf.gogui.go.GoColor;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.GoPoint;
+import net.sf.gogui.go.Move;
+
 public final class GameTreeTest
     extends junit.framework.TestCase
 {
@@ -15,6 +22,115 @@ public final class GameTreeTest
         return new junit.framework.TestSuite(GameTreeTest.class);
     }
 
+    public void testGetSnapshot()
+    {
+        GameTree tree = new GameTree();
+        Node node = appendMove(tree.getRoot(), BLACK, 3, 3);
+        node.setComment("Comment");
+        ConstGameTree snapshot = tree.getSnapshot();
+        assertSame(snapshot, tree.getSnapshot());
+        ConstNode snapshotNode = snapshot.getRootConst().getChildConst();
+        assertEquals(node.getMove(), snapshotNode.getMove());
+        assertEquals("Comment", snapshotNode.getComment());
+        node.setComment("Changed");
+        appendMove(node, WHITE, 4, 4);
+        assertEquals("Comment", snapshotNode.getComment());
+        assertFalse(snapshotNode.hasChildren());
+        ConstGameTree newSnapshot = tree.getSnapshot();
+        assertNotSame(snapshot, newSnapshot);
+        snapshotNode = newSnapshot.getRootConst().getChildConst();
+        assertEquals("Changed", snapshotNode.getComment());
+        assertTrue(snapshotNode.hasChildren());
+    }
+
+    /** Test that reading node information does not invalidate the
+        snapshot, but changes of objects returned earlier do. */
+    public void testGetSnapshotGameInfo()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        root.addSgfProperty("XX", "foo");
+        GameInfo info = root.getGameInfo();
+        SgfProperties sgfProperties = root.getSgfProperties();
+        ConstGameTree snapshot = tree.getSnapshot();
+        root.getGameInfo();
+        root.getLabels();
+        root.getMarked(MarkType.MARK);
+        root.getSgfProperties();
+        root.createGameInfo();
+        assertSame(snapshot, tree.getSnapshot());
+        info.set(StringInfo.RESULT, "B+R");
+        ConstGameTree newSnapshot = tree.getSnapshot();
+        assertNotSame(snapshot, newSnapshot);
+        assertEquals("B+R", newSnapshot.getGameInfoConst(
+                         newSnapshot.getRootConst()).get(StringInfo.RESULT));
+        sgfProperties.remove("XX");
+        snapshot = tree.getSnapshot();
+        assertNotSame(newSnapshot, snapshot);
+        assertNull(snapshot.getRootConst().getSgfPropertiesConst());
+    }
+
+    /** Test that changes of another tree don't invalidate the snapshot. */
+    public void testGetSnapshotOtherTree()
+    {
+        GameTree tree = new GameTree();
+        appendMove(tree.getRoot(), BLACK, 3, 3);
+        ConstGameTree snapshot = tree.getSnapshot();
+        GameTree otherTree = new GameTree();
+        appendMove(otherTree.getRoot(), BLACK, 3, 3);
+        otherTree.getRoot().setComment("Comment");
+        assertSame(snapshot, tree.getSnapshot());
+    }
+
+    public void testGetTranspositions()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        Node node1 = appendMove(root, BLACK, 0, 0);
+        Node node2 = appendMove(node1, WHITE, 1, 1);
+        Node node3 = appendMove(node2, BLACK, 2, 2);
+        Node variation1 = appendMove(root, BLACK, 2, 2);
+        Node variation2 = appendMove(variation1, WHITE, 1, 1);
+        Node variation3 = appendMove(variation2, BLACK, 0, 0);
+        List<ConstNode> nodes = tree.getTranspositions(node3);
+        assertEquals(2, nodes.size());
+        assertSame(node3, nodes.get(0));
+        assertSame(variation3, nodes.get(1));
+        assertEquals(tree.getPositionHash(node3),
+                     tree.getPositionHash(variation3));
+        assertEquals(1, tree.getTranspositions(node2).size());
+        // Changed move is detected
+        variation3.setMove(Move.get(BLACK, GoPoint.get(3, 3)));
+        assertEquals(1, tree.getTranspositions(node3).size());
+        Node node4 = appendMove(node3, WHITE, 3, 3);
+        Node variation4 = appendMove(variation3, WHITE, 3, 3);
+        assertEquals(1, tree.getTranspositions(node4).size());
+        assertFalse(tree.getTranspositions(node4).contains(variation4));
+    }
+
+    /** Test that nodes appended after building the index are added,
+        including subtrees and nodes appended to appended nodes. */
+    public void testGetTranspositionsAppended()
+    {
+        GameTree tree = new GameTree();
+        Node root = tree.getRoot();
+        Node node1 = appendMove(root, BLACK, 0, 0);
+        Node node2 = appendMove(node1, WHITE, 1, 1);
+        assertEquals(1, tree.getTranspositions(node2).size());
+        Node variation1 = new Node(Move.get(BLACK, GoPoint.get(2, 2)));
+        Node variation2 = appendMove(variation1, WHITE, 1, 1);
+        root.append(variation1);
+        Node variation3 = appendMove(variation2, BLACK, 0, 0);
+        Node node3 = appendMove(node2, BLACK, 2, 2);
+        List<ConstNode> nodes = tree.getTranspositions(node3);
+        assertEquals(2, nodes.size());
+        assertTrue(nodes.contains(node3));
+        assertTrue(nodes.contains(variation3));
+        assertEquals(1, tree.getTranspositions(variation1).size());
+        root.removeChild(variation1);
+        assertEquals(1, tree.getTranspositions(node3).size());
+    }
+
     public void testHasVariations()
     {
         GameTree tree = new GameTree();
@@ -39,6 +155,13 @@ public final class GameTreeTest
         assertFalse(tree.hasVariations());
     }
 
+    private static Node appendMove(Node father, GoColor c, int x, int y)
+    {
+        Node node = new Node(Move.get(c, GoPoint.get(x, y)));
+        father.append(node);
+        return node;
+    }
+
     private static Node appendNewNode(Node father)
     {
         Node child = new Node();
@@ -47,6 +47,42 @@ public final class NodeTest
         assertTrue(child2.getFather() == node);
     }
 
+    /** Test that large comments are stored compressed and returned
+        unchanged. */
+    public void testCommentCompression()
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 200; ++i)
+            buffer.append("Black wins by ").append(i % 7)
+                .append(".5 points \u00e4\u4e00\n");
+        String comment = buffer.toString();
+        Node node = new Node();
+        node.setComment(comment);
+        assertTrue(node.hasComment());
+        assertEquals(comment, node.getComment());
+        assertTrue(node.getCommentBytes().length < comment.length());
+        node.setComment("short \u00e4");
+        assertEquals("short \u00e4", node.getComment());
+    }
+
+    /** Test that a truncated or corrupt compressed comment causes an
+        exception instead of returning a wrong comment. */
+    public void testCommentCompressionCorrupt()
+    {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < 200; ++i)
+            buffer.append("Black wins by ").append(i).append(" points\n");
+        byte[] bytes = Node.encodeComment(buffer.toString());
+        assertTrue(bytes.length < buffer.length());
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        checkDecodeFails(truncated);
+        byte[] corrupt = bytes.clone();
+        for (int i = 5; i < corrupt.length; ++i)
+            corrupt[i] = (byte)0xff;
+        checkDecodeFails(corrupt);
+    }
+
     public void testIsChildOf()
     {
         Node father = new Node();
@@ -167,4 +203,16 @@ public final class NodeTest
         assertEquals(p8, it.next());
         assertEquals(p9, it.next());
     }
+
+    private static void checkDecodeFails(byte[] bytes)
+    {
+        try
+        {
+            Node.decodeComment(bytes);
+            fail();
+        }
+        catch (IllegalStateException e)
+        {
+        }
+    }
 }
@@ -129,11 +129,121 @@ public final class NodeUtilTest
         assertEquals(NodeUtil.getMovesLeft(m_node7), 1);
     }
 
+    /** Test that cached depths and move numbers are updated after changes
+        of the tree. */
+    public void testGetMoveNumberAfterChange()
+    {
+        assertEquals(3, NodeUtil.getMoveNumber(m_node6));
+        assertEquals(7, NodeUtil.getNodesLeft(m_node0));
+        m_node2.setMove(null);
+        assertEquals(2, NodeUtil.getMoveNumber(m_node6));
+        assertEquals(2, NodeUtil.getMovesLeft(m_node0));
+        m_node5.removeChild(m_node6);
+        assertEquals(6, NodeUtil.getNodesLeft(m_node0));
+        m_node8.append(m_node6);
+        assertEquals(4, NodeUtil.getDepth(m_node6));
+        m_node6.setMove(Move.get(BLACK, GoPoint.get(5, 5)));
+        assertEquals(NodeUtil.getMoveNumber(m_node8) + 1,
+                     NodeUtil.getMoveNumber(m_node6));
+    }
+
+    /** Test the cached information while appending nodes and navigating
+        in the tree, which uses the information of neighboring nodes. */
+    public void testGetMoveNumberWhileAppending()
+    {
+        Node root = new Node();
+        Node node = root;
+        for (int i = 1; i <= 50; ++i)
+        {
+            Node child = new Node(Move.get(i % 2 == 0 ? WHITE : BLACK,
+                                           GoPoint.get(i % 19, i / 19)));
+            node.append(child);
+            node = child;
+            assertEquals(i, NodeUtil.getDepth(node));
+            assertEquals(i, NodeUtil.getMoveNumber(node));
+            assertEquals(i + 1, NodeUtil.getNodesLeft(root));
+            assertEquals(i, NodeUtil.getMovesLeft(root));
+        }
+        // Variations don't change the main variation
+        Node variation = new Node();
+        node.getFather().append(variation);
+        assertEquals(51, NodeUtil.getNodesLeft(root));
+        assertEquals(49, NodeUtil.getMoveNumber(variation));
+        for (int i = 50; i >= 0; --i)
+        {
+            assertEquals(i, NodeUtil.getDepth(node));
+            assertEquals(i, NodeUtil.getMoveNumber(node));
+            assertEquals(51 - i, NodeUtil.getNodesLeft(node));
+            assertEquals(50 - i, NodeUtil.getMovesLeft(node));
+            node = node.getFather();
+        }
+        node = root;
+        for (int i = 0; i <= 50; ++i)
+        {
+            assertEquals(51 - i, NodeUtil.getNodesLeft(node));
+            assertEquals(50 - i, NodeUtil.getMovesLeft(node));
+            node = node.getChild();
+        }
+    }
+
+    /** Test that cached depths are updated, if a subtree is moved to
+        another tree, which has its own versions. */
+    public void testGetDepthAfterMoveToOtherTree()
+    {
+        Node root = new Node();
+        Node node1 = new Node();
+        root.append(node1);
+        Node node2 = new Node();
+        node1.append(node2);
+        assertEquals(2, NodeUtil.getDepth(node2));
+        m_node5.removeChild(m_node6);
+        assertEquals(0, NodeUtil.getDepth(m_node6));
+        node2.append(m_node6);
+        assertEquals(3, NodeUtil.getDepth(m_node6));
+        assertEquals(0, NodeUtil.getMoveNumber(m_node6));
+    }
+
     public void testSubtreeSize()
     {
         assertEquals(12, NodeUtil.subtreeSize(m_node0));
     }
 
+    /** Test that cached subtree sizes are updated after changes of the
+        tree. */
+    /** Test that cached subtree sizes of the ancestors are updated, if
+        new nodes are appended. */
+    public void testSubtreeSizeWhileAppending()
+    {
+        assertEquals(12, NodeUtil.subtreeSize(m_node0));
+        int size2 = NodeUtil.subtreeSize(m_node2);
+        for (int i = 1; i <= 10; ++i)
+        {
+            m_node6.append(new Node());
+            assertEquals(12 + i, NodeUtil.subtreeSize(m_node0));
+            assertEquals(size2 + i, NodeUtil.subtreeSize(m_node2));
+            assertEquals(1 + i, NodeUtil.subtreeSize(m_node6));
+        }
+        m_node2.setMove(null);
+        assertEquals(22, NodeUtil.subtreeSize(m_node0));
+    }
+
+    public void testSubtreeSizeAfterChange()
+    {
+        assertEquals(12, NodeUtil.subtreeSize(m_node0));
+        int size2 = NodeUtil.subtreeSize(m_node2);
+        Node node = new Node();
+        node.append(new Node());
+        m_node2.append(node);
+        assertEquals(14, NodeUtil.subtreeSize(m_node0));
+        assertEquals(size2 + 2, NodeUtil.subtreeSize(m_node2));
+        assertTrue(NodeUtil.subtreeGreaterThan(m_node0, 13));
+        assertFalse(NodeUtil.subtreeGreaterThan(m_node0, 14));
+        NodeUtil.truncateChildren(m_node2);
+        assertEquals(1, NodeUtil.subtreeSize(m_node2));
+        assertEquals(14 - size2 - 1, NodeUtil.subtreeSize(m_node0));
+        assertEquals(2, NodeUtil.subtreeSize(node));
+    }
+
     public void testTruncateChildren()
     {
         Node node = new Node();
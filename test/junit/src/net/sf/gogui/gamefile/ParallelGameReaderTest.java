@@ -0,0 +1,82 @@
+// ParallelGameReaderTest.java
+
+package net.sf.gogui.gamefile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import net.sf.gogui.util.ErrorMessage;
+
+public final class ParallelGameReaderTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(ParallelGameReaderTest.class);
+    }
+
+    public void tearDown()
+    {
+        for (File file : m_files)
+            file.delete();
+    }
+
+    /** Test that the games are returned in the order of the files and that
+        an invalid file does not stop reading the other files. */
+    public void testOrder() throws ErrorMessage, IOException
+    {
+        for (int i = 0; i < 10; ++i)
+        {
+            if (i == 5)
+                createFile("(;FF[4]SZ[9");
+            else
+                createFile("(;FF[4]SZ[" + (i + 2) + "])");
+        }
+        ParallelGameReader reader = new ParallelGameReader(m_files, 3);
+        for (int i = 0; i < 10; ++i)
+        {
+            assertTrue(reader.hasNext());
+            if (i == 5)
+            {
+                try
+                {
+                    reader.next();
+                    fail();
+                }
+                catch (ErrorMessage e)
+                {
+                }
+            }
+            else
+                assertEquals(i + 2, reader.next().getTree().getBoardSize());
+            assertEquals(m_files.get(i), reader.getFile());
+        }
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    public void testEmpty()
+    {
+        ParallelGameReader reader = new ParallelGameReader(m_files);
+        assertFalse(reader.hasNext());
+        reader.close();
+    }
+
+    private final ArrayList<File> m_files = new ArrayList<File>();
+
+    private void createFile(String text) throws IOException
+    {
+        File file = File.createTempFile("gogui", ".sgf");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(text.getBytes("US-ASCII"));
+        out.close();
+        m_files.add(file);
+    }
+}
@@ -0,0 +1,104 @@
+// BatchScoreTest.java
+
+package net.sf.gogui.go;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.Score.ScoringMethod.AREA;
+import static net.sf.gogui.go.Score.ScoringMethod.TERRITORY;
+
+public final class BatchScoreTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(BatchScoreTest.class);
+    }
+
+    public void testScore()
+    {
+        BatchScore batchScore = new BatchScore(new Komi(0.5), AREA);
+        Score score = batchScore.score(createBoard(1));
+        // Black owns column A and B, White the remaining 3 columns
+        assertEquals(10, score.m_areaBlack);
+        assertEquals(15, score.m_areaWhite);
+        assertEquals(-5.5, score.m_result);
+    }
+
+    public void testScoreAll() throws InterruptedException
+    {
+        List<ConstBoard> boards = new ArrayList<ConstBoard>();
+        for (int i = 0; i < 200; ++i)
+            boards.add(createBoard(i % 4));
+        BatchScore batchScore = new BatchScore(new Komi(6.5), TERRITORY, 3);
+        List<Score> scores = batchScore.scoreAll(boards);
+        assertEquals(boards.size(), scores.size());
+        CountScore countScore = new CountScore();
+        for (int i = 0; i < boards.size(); ++i)
+        {
+            countScore.begin(boards.get(i), null);
+            Score expected = countScore.getScore(new Komi(6.5), TERRITORY);
+            assertEquals(expected.m_result, scores.get(i).m_result);
+            assertEquals(expected.m_territoryBlack,
+                         scores.get(i).m_territoryBlack);
+        }
+        // Reuses the threads
+        List<Score> scores2 = batchScore.scoreAll(boards);
+        assertEquals(boards.size(), scores2.size());
+        for (int i = 0; i < boards.size(); ++i)
+            assertEquals(scores.get(i).m_result, scores2.get(i).m_result);
+        batchScore.close();
+    }
+
+    /** Test scoring boards that are created by the iterator on demand. */
+    public void testScoreAllIterator() throws InterruptedException
+    {
+        final int numberBoards = 1000;
+        Iterator<ConstBoard> boards = new Iterator<ConstBoard>() {
+                public boolean hasNext()
+                {
+                    return m_index < numberBoards;
+                }
+
+                public ConstBoard next()
+                {
+                    return createBoard(m_index++ % 4);
+                }
+
+                public void remove()
+                {
+                    throw new UnsupportedOperationException();
+                }
+
+                private int m_index;
+            };
+        BatchScore batchScore = new BatchScore(new Komi(0.5), AREA, 2);
+        List<Score> scores = batchScore.scoreAll(boards);
+        assertEquals(numberBoards, scores.size());
+        for (int i = 0; i < numberBoards; ++i)
+            assertEquals(batchScore.score(createBoard(i % 4)).m_result,
+                         scores.get(i).m_result);
+        batchScore.close();
+    }
+
+    /** Create a 5x5 board with a black wall on a given column and a white
+        wall on the next column. */
+    private static Board createBoard(int column)
+    {
+        Board board = new Board(5);
+        for (int y = 0; y < 5; ++y)
+        {
+            board.play(BLACK, GoPoint.get(column, y));
+            board.play(WHITE, GoPoint.get(column + 1, y));
+        }
+        return board;
+    }
+}
@@ -0,0 +1,132 @@
+// BitBoardTest.java
+
+package net.sf.gogui.go;
+
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+public final class BitBoardTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(BitBoardTest.class);
+    }
+
+    public void testBasics()
+    {
+        Board board = new Board(19);
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(WHITE, GoPoint.get(18, 18));
+        board.play(BLACK, GoPoint.get(18, 0));
+        BitBoard bitBoard = new BitBoard(board);
+        assertEquals(19, bitBoard.getSize());
+        assertEquals(WHITE, bitBoard.getToMove());
+        assertEquals(BLACK, bitBoard.getColor(GoPoint.get(0, 0)));
+        assertEquals(WHITE, bitBoard.getColor(GoPoint.get(18, 18)));
+        assertEquals(BLACK, bitBoard.getColor(GoPoint.get(18, 0)));
+        assertEquals(EMPTY, bitBoard.getColor(GoPoint.get(0, 18)));
+        assertEquals(2, bitBoard.getNumberPoints(BLACK));
+        assertEquals(1, bitBoard.getNumberPoints(WHITE));
+        assertEquals(19 * 19 - 3, bitBoard.getNumberPoints(EMPTY));
+        assertEquals(0, bitBoard.getNumberMoves());
+        assertEquals(board.getHashCode(), bitBoard.getHashCode());
+    }
+
+    public void testCopy()
+    {
+        Board board = new Board(9);
+        board.play(BLACK, GoPoint.get(2, 2));
+        board.play(WHITE, GoPoint.get(3, 3));
+        Board copy = new Board(9);
+        BoardUtil.copy(copy, new BitBoard(board));
+        assertEquals(board.getHashCode(), copy.getHashCode());
+    }
+
+    public void testEquals()
+    {
+        Board board = new Board(9);
+        board.play(BLACK, GoPoint.get(2, 2));
+        BitBoard bitBoard1 = new BitBoard(board);
+        board.play(WHITE, GoPoint.get(3, 3));
+        BitBoard bitBoard2 = new BitBoard(board);
+        assertFalse(bitBoard1.equals(bitBoard2));
+        PointList difference = bitBoard1.getDifference(bitBoard2);
+        assertEquals(1, difference.size());
+        assertEquals(GoPoint.get(3, 3), difference.get(0));
+        board.undo();
+        assertEquals(bitBoard1, new BitBoard(board));
+        assertEquals(bitBoard1.hashCode(), new BitBoard(board).hashCode());
+    }
+
+    /** Test that positions with different ko points are not equal.
+        The ko point is part of hashCode(), so it must be part of equals()
+        too. */
+    public void testEqualsKo()
+    {
+        Board board = new Board(9);
+        board.play(BLACK, GoPoint.get(0, 1));
+        board.play(WHITE, GoPoint.get(2, 0));
+        board.play(BLACK, GoPoint.get(1, 0));
+        board.play(WHITE, GoPoint.get(3, 1));
+        board.play(BLACK, GoPoint.get(1, 2));
+        board.play(WHITE, GoPoint.get(2, 2));
+        board.play(BLACK, GoPoint.get(8, 8));
+        board.play(WHITE, GoPoint.get(1, 1));
+        board.play(BLACK, GoPoint.get(2, 1));
+        assertTrue(board.isKo(GoPoint.get(1, 1)));
+        BitBoard bitBoard1 = new BitBoard(board);
+        Board copy = new Board(9);
+        BoardUtil.copy(copy, bitBoard1);
+        assertFalse(copy.isKo(GoPoint.get(1, 1)));
+        assertEquals(board.getToMove(), copy.getToMove());
+        BitBoard bitBoard2 = new BitBoard(copy);
+        assertEquals(0, bitBoard1.getDifference(bitBoard2).size());
+        assertFalse(bitBoard1.equals(bitBoard2));
+        assertEquals(bitBoard1, new BitBoard(board));
+    }
+
+    public void testGetLiberties()
+    {
+        Board board = new Board(GoPoint.MAX_SIZE);
+        // Block on the last column next to the padding bits
+        for (int y = 0; y < GoPoint.MAX_SIZE; ++y)
+            board.play(BLACK, GoPoint.get(GoPoint.MAX_SIZE - 1, y));
+        board.play(WHITE, GoPoint.get(0, 1));
+        board.play(BLACK, GoPoint.get(0, 0));
+        BitBoard bitBoard = new BitBoard(board);
+        for (GoPoint p : board)
+            assertEquals(board.getLiberties(p), bitBoard.getLiberties(p));
+        assertTrue(bitBoard.isSuicide(WHITE, GoPoint.get(0, 0)) ==
+                   board.isSuicide(WHITE, GoPoint.get(0, 0)));
+    }
+
+    public void testGetTerritory()
+    {
+        Board board = new Board(5);
+        // 5 . . O . .
+        // 4 . . O . .
+        // 3 X X O . .
+        // 2 . X O . .
+        // 1 . X O . .
+        //   A B C D E
+        for (int y = 0; y < 5; ++y)
+            board.play(WHITE, GoPoint.get(2, y));
+        board.play(BLACK, GoPoint.get(1, 0));
+        board.play(BLACK, GoPoint.get(1, 1));
+        board.play(BLACK, GoPoint.get(1, 2));
+        board.play(BLACK, GoPoint.get(0, 2));
+        BitBoard bitBoard = new BitBoard(board);
+        assertEquals(2, bitBoard.getNumberTerritory(BLACK));
+        assertEquals(10, bitBoard.getNumberTerritory(WHITE));
+        ConstPointList territory = bitBoard.getTerritory(BLACK);
+        assertTrue(territory.contains(GoPoint.get(0, 0)));
+        assertTrue(territory.contains(GoPoint.get(0, 1)));
+    }
+}
@@ -0,0 +1,111 @@
+// BitPointListTest.java
+
+package net.sf.gogui.go;
+
+public final class BitPointListTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(BitPointListTest.class);
+    }
+
+    public void testBasics()
+    {
+        BitPointList list = new BitPointList();
+        assertTrue(list.isEmpty());
+        assertFalse(list.iterator().hasNext());
+        GoPoint p1 = GoPoint.get(18, 18);
+        GoPoint p2 = GoPoint.get(0, 0);
+        GoPoint p3 = GoPoint.get(3, 1);
+        assertTrue(list.add(p1));
+        assertTrue(list.add(p2));
+        assertFalse(list.add(p1));
+        assertTrue(list.add(p3));
+        assertEquals(3, list.size());
+        // Points are sorted by index
+        assertSame(p2, list.get(0));
+        assertSame(p3, list.get(1));
+        assertSame(p1, list.get(2));
+        assertSame(p2, list.get(0));
+        assertTrue(list.contains(p3));
+        assertFalse(list.contains(GoPoint.get(24, 24)));
+        assertTrue(list.remove(p3));
+        assertFalse(list.remove(p3));
+        assertSame(p1, list.get(1));
+        assertEquals("A1 T19", list.toString());
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertFalse(list.contains(p1));
+    }
+
+    public void testAddAll()
+    {
+        BitPointList list1 = new BitPointList();
+        list1.add(GoPoint.get(1, 2));
+        BitPointList list2 = new BitPointList();
+        list2.add(GoPoint.get(1, 2));
+        list2.add(GoPoint.get(18, 18));
+        list1.addAll(list2);
+        assertEquals(2, list1.size());
+        assertEquals(list2, list1);
+        assertSame(GoPoint.get(18, 18), list1.get(1));
+    }
+
+    /** Test get() with sequential and random positions, which use the
+        cursor of the previous call in different ways. */
+    public void testGet()
+    {
+        BitPointList list = new BitPointList();
+        PointList points = new PointList();
+        for (int x = 0; x < 19; x += 2)
+            for (int y = 0; y < 19; y += 3)
+                points.add(GoPoint.get(x, y));
+        list.addAll(points);
+        assertEquals(points.size(), list.size());
+        PointList sorted = list.toPointList();
+        for (int i = 0; i < list.size(); ++i)
+            assertSame(sorted.get(i), list.get(i));
+        for (int i = list.size() - 1; i >= 0; --i)
+            assertSame(sorted.get(i), list.get(i));
+        for (int i = 0; i < list.size(); i += 5)
+        {
+            assertSame(sorted.get(i), list.get(i));
+            assertSame(sorted.get(i), list.get(i));
+        }
+        // Modifications reset the cursor
+        assertSame(sorted.get(1), list.get(1));
+        list.remove(sorted.get(1));
+        assertSame(sorted.get(2), list.get(1));
+        list.add(sorted.get(1));
+        assertSame(sorted.get(1), list.get(1));
+    }
+
+    /** Test that the lists are only equal to BitPointList objects to keep
+        equals() symmetric with PointList.equals(). */
+    public void testEquals()
+    {
+        PointList points = new PointList();
+        points.add(GoPoint.get(1, 2));
+        points.add(GoPoint.get(3, 4));
+        BitPointList list = new BitPointList(points);
+        assertFalse(list.equals(points));
+        assertFalse(points.equals(list));
+        assertEquals(points.hashCode(), list.hashCode());
+        assertEquals(points, new PointList(list));
+        assertEquals(list, new BitPointList(points));
+        BitPointList other = new BitPointList(points);
+        // The removed point leaves unused words in the bit set
+        other.add(GoPoint.get(18, 18));
+        other.remove(GoPoint.get(18, 18));
+        assertEquals(list, other);
+        assertEquals(other, list);
+        other.add(GoPoint.get(0, 0));
+        assertFalse(list.equals(other));
+    }
+}
@@ -15,6 +15,35 @@ public final class BoardConstantsTest
         return new junit.framework.TestSuite(BoardConstantsTest.class);
     }
 
+    public void testGetAdjacentIndex()
+    {
+        BoardConstants constants = BoardConstants.get(9);
+        for (GoPoint p : constants.getPoints())
+        {
+            int index = p.getIndex();
+            ConstPointList adjacent = constants.getAdjacent(p);
+            assertEquals(adjacent.size(), constants.getNumberAdjacent(index));
+            for (int i = 0; i < adjacent.size(); ++i)
+                assertEquals(adjacent.get(i).getIndex(),
+                             constants.getAdjacentIndex(index, i));
+        }
+        assertEquals(0, constants.getNumberAdjacent(GoPoint.get(9, 0)
+                                                    .getIndex()));
+    }
+
+    public void testGetDiagonalIndex()
+    {
+        BoardConstants constants = BoardConstants.get(9);
+        int index = GoPoint.get(0, 0).getIndex();
+        assertEquals(1, constants.getNumberDiagonal(index));
+        assertEquals(GoPoint.get(1, 1).getIndex(),
+                     constants.getDiagonalIndex(index, 0));
+        assertEquals(2, constants.getNumberDiagonal(GoPoint.get(4, 0)
+                                                    .getIndex()));
+        assertEquals(4, constants.getNumberDiagonal(GoPoint.get(4, 4)
+                                                    .getIndex()));
+    }
+
     /** Test BoardConstants.getHandicapStones according to GTP
         specification. */
     public void testGetHandicapStones()
@@ -78,6 +107,14 @@ public final class BoardConstantsTest
         }
     }
 
+    public void testIsOnBoard()
+    {
+        BoardConstants constants = BoardConstants.get(9);
+        assertTrue(constants.isOnBoard(GoPoint.get(8, 8).getIndex()));
+        assertFalse(constants.isOnBoard(GoPoint.get(9, 8).getIndex()));
+        assertFalse(constants.isOnBoard(GoPoint.get(0, 9).getIndex()));
+    }
+
     private static GoPoint parsePoint(String s)
     {
         int boardSize = GoPoint.MAX_SIZE;
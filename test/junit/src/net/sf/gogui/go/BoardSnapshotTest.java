@@ -0,0 +1,77 @@
+// BoardSnapshotTest.java
+
+package net.sf.gogui.go;
+
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+import static net.sf.gogui.go.GoColor.EMPTY;
+
+public final class BoardSnapshotTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(BoardSnapshotTest.class);
+    }
+
+    public void testCopy()
+    {
+        Board board = new Board(9);
+        PointList black = new PointList();
+        black.add(GoPoint.get(4, 4));
+        board.setup(black, null, WHITE);
+        board.play(WHITE, GoPoint.get(2, 2));
+        board.play(BLACK, GoPoint.get(3, 3));
+        Board copy = new Board(9);
+        BoardUtil.copy(copy, board.getSnapshot());
+        assertEquals(board.getHashCode(), copy.getHashCode());
+        assertEquals(2, copy.getNumberMoves());
+        assertEquals(1, copy.getSetup(BLACK).size());
+    }
+
+    public void testGetSnapshot()
+    {
+        Board board = new Board(19);
+        board.play(BLACK, GoPoint.get(0, 0));
+        BoardSnapshot snapshot = board.getSnapshot();
+        assertSame(snapshot, board.getSnapshot());
+        board.play(WHITE, GoPoint.get(1, 0));
+        assertNotSame(snapshot, board.getSnapshot());
+        assertEquals(1, snapshot.getNumberMoves());
+        assertEquals(EMPTY, snapshot.getColor(GoPoint.get(1, 0)));
+        assertEquals(2, snapshot.getLiberties(GoPoint.get(0, 0)));
+        assertEquals(1, board.getLiberties(GoPoint.get(0, 0)));
+    }
+
+    public void testUndoAfterSnapshot()
+    {
+        Board board = new Board(19);
+        // 2 O . .
+        // 1 @ O .
+        //   A B C
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(WHITE, GoPoint.get(1, 0));
+        board.play(BLACK, GoPoint.get(5, 5));
+        board.play(WHITE, GoPoint.get(0, 1));
+        BoardSnapshot snapshot = board.getSnapshot();
+        long hashCode = board.getHashCode();
+        assertEquals(1, snapshot.getKilled().size());
+        assertEquals(1, snapshot.getCaptured(BLACK));
+        board.undo(2);
+        board.play(BLACK, GoPoint.get(0, 1));
+        assertEquals(BLACK, board.getColor(GoPoint.get(0, 0)));
+        assertEquals(EMPTY, snapshot.getColor(GoPoint.get(0, 0)));
+        assertEquals(WHITE, snapshot.getColor(GoPoint.get(0, 1)));
+        assertEquals(Move.get(WHITE, GoPoint.get(0, 1)),
+                     snapshot.getLastMove());
+        assertEquals(1, snapshot.getKilled().size());
+        assertEquals(hashCode, snapshot.getHashCode());
+        assertTrue(snapshot.isPositionalSuperko(Move.get(BLACK,
+                                                         GoPoint.get(0, 0))));
+    }
+}
@@ -63,6 +63,34 @@ public final class BoardTest
         assertFalse(board.contains(GoPoint.get(20, 20)));
     }
 
+    /** Test Board.copyFrom() including undo on the copy. */
+    public void testCopyFrom()
+    {
+        Board board = new Board(9);
+        PointList black = new PointList();
+        black.add(GoPoint.get(4, 4));
+        board.setup(black, null, WHITE);
+        board.play(WHITE, GoPoint.get(1, 0));
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(WHITE, GoPoint.get(0, 1));
+        Board copy = new Board(19);
+        copy.play(BLACK, GoPoint.get(10, 10));
+        copy.copyFrom(board);
+        assertEquals(9, copy.getSize());
+        assertEquals(board.getHashCode(), copy.getHashCode());
+        assertEquals(3, copy.getNumberMoves());
+        assertEquals(1, copy.getKilled().size());
+        assertEquals(1, copy.getCaptured(BLACK));
+        assertEquals(1, copy.getSetup(BLACK).size());
+        copy.undo();
+        assertEquals(BLACK, copy.getColor(GoPoint.get(0, 0)));
+        assertEquals(1, copy.getLiberties(GoPoint.get(0, 0)));
+        assertEquals(0, copy.getCaptured(BLACK));
+        // The original is not changed by the copy
+        assertEquals(EMPTY, board.getColor(GoPoint.get(0, 0)));
+        assertEquals(3, board.getNumberMoves());
+    }
+
     /** Test Board.getKilled(). */
     public void testGetKilled()
     {
@@ -158,6 +186,168 @@ public final class BoardTest
         assertTrue(board.isSuicide(WHITE, GoPoint.get(1, 0)));
     }
 
+    public void testGetHashCode()
+    {
+        Board board1 = new Board(19);
+        Board board2 = new Board(19);
+        assertEquals(board1.getHashCode(), board2.getHashCode());
+        long emptyHashCode = board1.getHashCode();
+        board1.play(BLACK, GoPoint.get(0, 0));
+        board1.play(WHITE, GoPoint.get(1, 1));
+        board2.play(BLACK, GoPoint.get(0, 0));
+        assertFalse(board1.getHashCode() == board2.getHashCode());
+        board2.play(WHITE, GoPoint.get(1, 1));
+        assertEquals(board1.getHashCode(), board2.getHashCode());
+        board1.undo(2);
+        assertEquals(emptyHashCode, board1.getHashCode());
+        // Same stones, different color to move
+        board1.setup(new PointList(GoPoint.get(0, 0)),
+                     new PointList(GoPoint.get(1, 1)), WHITE);
+        board2.setup(new PointList(GoPoint.get(0, 0)),
+                     new PointList(GoPoint.get(1, 1)), BLACK);
+        assertFalse(board1.getHashCode() == board2.getHashCode());
+        board2.setToMove(WHITE);
+        assertEquals(board1.getHashCode(), board2.getHashCode());
+    }
+
+    public void testGetHashCodeKo()
+    {
+        Board board1 = new Board(19);
+        // 3 . . . .
+        // 2 @ O . .
+        // 1 . @ O .
+        //   A B C D
+        PointList black = new PointList();
+        PointList white = new PointList();
+        black.add(GoPoint.get(0, 1));
+        black.add(GoPoint.get(1, 0));
+        white.add(GoPoint.get(1, 1));
+        white.add(GoPoint.get(2, 0));
+        board1.setup(black, white, WHITE);
+        board1.play(WHITE, GoPoint.get(0, 0));
+        Board board2 = new Board(19);
+        black.remove(GoPoint.get(1, 0));
+        white.add(GoPoint.get(0, 0));
+        board2.setup(black, white, BLACK);
+        assertTrue(board1.isKo(GoPoint.get(1, 0)));
+        assertFalse(board2.isKo(GoPoint.get(1, 0)));
+        assertFalse(board1.getHashCode() == board2.getHashCode());
+    }
+
+    public void testIsPositionalSuperko()
+    {
+        Board board = new Board(19);
+        // 3 . . . .
+        // 2 @ O . .
+        // 1 . @ O .
+        //   A B C D
+        PointList black = new PointList();
+        PointList white = new PointList();
+        black.add(GoPoint.get(0, 1));
+        black.add(GoPoint.get(1, 0));
+        white.add(GoPoint.get(1, 1));
+        white.add(GoPoint.get(2, 0));
+        board.setup(black, white, WHITE);
+        assertFalse(board.isPositionalSuperko(Move.get(WHITE, 0, 0)));
+        board.play(WHITE, GoPoint.get(0, 0));
+        assertTrue(board.isPositionalSuperko(Move.get(BLACK, 1, 0)));
+        assertFalse(board.isPositionalSuperko(Move.get(BLACK, 5, 5)));
+        assertFalse(board.isPositionalSuperko(Move.getPass(BLACK)));
+        board.play(BLACK, GoPoint.get(5, 5));
+        board.play(WHITE, GoPoint.get(6, 6));
+        assertFalse(board.isPositionalSuperko(Move.get(BLACK, 1, 0)));
+        board.undo(2);
+        assertTrue(board.isPositionalSuperko(Move.get(BLACK, 1, 0)));
+        board.undo();
+        assertFalse(board.isPositionalSuperko(Move.get(BLACK, 1, 0)));
+    }
+
+    public void testGetLegalMoves()
+    {
+        Board board = new Board(5);
+        assertEquals(25, board.getLegalMoves(BLACK).cardinality());
+        // 3 . . . .
+        // 2 @ O . .
+        // 1 . @ O .
+        //   A B C D
+        board.play(BLACK, GoPoint.get(0, 1));
+        board.play(WHITE, GoPoint.get(1, 1));
+        board.play(BLACK, GoPoint.get(1, 0));
+        board.play(WHITE, GoPoint.get(2, 0));
+        int a1 = GoPoint.get(0, 0).getIndex();
+        assertTrue(board.getLegalMoves(BLACK).get(a1));
+        assertTrue(board.getLegalMoves(WHITE).get(a1));
+        assertFalse(board.getLegalMoves(BLACK).get(GoPoint.get(1, 0)
+                                                   .getIndex()));
+        board.play(WHITE, GoPoint.get(0, 0));
+        int b1 = GoPoint.get(1, 0).getIndex();
+        assertFalse(board.getLegalMoves(BLACK).get(b1));
+        assertFalse(board.getLegalMoves(WHITE).get(b1));
+        board.play(BLACK, GoPoint.get(4, 4));
+        assertTrue(board.getLegalMoves(BLACK).get(b1));
+        // Black takes the liberties, White at B1 would now be suicide
+        board.play(WHITE, GoPoint.get(4, 3));
+        board.play(BLACK, GoPoint.get(1, 2));
+        board.play(WHITE, GoPoint.get(3, 4));
+        board.play(BLACK, GoPoint.get(2, 1));
+        board.play(WHITE, GoPoint.get(3, 3));
+        board.play(BLACK, GoPoint.get(3, 0));
+        assertFalse(board.getLegalMoves(WHITE).get(b1));
+        assertTrue(board.getLegalMoves(BLACK).get(b1));
+        board.undo(6);
+        assertTrue(board.getLegalMoves(WHITE).get(b1));
+        board.undo();
+        assertFalse(board.getLegalMoves(BLACK).get(b1));
+        assertFalse(board.getLegalMoves(WHITE).get(a1));
+        board.undo();
+        assertTrue(board.getLegalMoves(WHITE).get(a1));
+        assertEquals(21, board.getLegalMoves(WHITE).cardinality());
+    }
+
+    public void testGetLiberties()
+    {
+        Board board = new Board(19);
+        assertEquals(0, board.getLiberties(GoPoint.get(0, 0)));
+        board.play(BLACK, GoPoint.get(0, 0));
+        assertEquals(2, board.getLiberties(GoPoint.get(0, 0)));
+        board.play(BLACK, GoPoint.get(1, 0));
+        assertEquals(3, board.getLiberties(GoPoint.get(0, 0)));
+        board.play(WHITE, GoPoint.get(0, 1));
+        assertEquals(2, board.getLiberties(GoPoint.get(1, 0)));
+        assertEquals(2, board.getLiberties(GoPoint.get(0, 1)));
+        board.play(BLACK, GoPoint.get(1, 1));
+        assertEquals(1, board.getLiberties(GoPoint.get(0, 1)));
+        assertEquals(3, board.getLiberties(GoPoint.get(1, 1)));
+        board.play(BLACK, GoPoint.get(0, 2));
+        assertEquals(EMPTY, board.getColor(GoPoint.get(0, 1)));
+        assertEquals(4, board.getLiberties(GoPoint.get(0, 0)));
+        assertEquals(3, board.getLiberties(GoPoint.get(0, 2)));
+        board.undo();
+        assertEquals(WHITE, board.getColor(GoPoint.get(0, 1)));
+        assertEquals(1, board.getLiberties(GoPoint.get(0, 1)));
+        assertEquals(3, board.getLiberties(GoPoint.get(1, 1)));
+        board.undo();
+        assertEquals(2, board.getLiberties(GoPoint.get(0, 1)));
+        assertEquals(2, board.getLiberties(GoPoint.get(0, 0)));
+    }
+
+    /** Test that liberties are correct after a move on an occupied point.
+        Such a move does not preserve the incrementally updated blocks. */
+    public void testGetLibertiesPlayOnOccupied()
+    {
+        Board board = new Board(19);
+        board.play(BLACK, GoPoint.get(0, 0));
+        board.play(BLACK, GoPoint.get(1, 0));
+        board.play(BLACK, GoPoint.get(2, 0));
+        board.play(WHITE, GoPoint.get(1, 0));
+        assertEquals(1, board.getLiberties(GoPoint.get(0, 0)));
+        assertEquals(1, board.getLiberties(GoPoint.get(1, 0)));
+        board.undo();
+        assertEquals(4, board.getLiberties(GoPoint.get(0, 0)));
+        board.undo();
+        assertEquals(3, board.getLiberties(GoPoint.get(0, 0)));
+    }
+
     public void testGetLastMove()
     {
         Board board = new Board(19);
@@ -168,6 +358,26 @@ public final class BoardTest
         assertNull(board.getLastMove());
     }
 
+    /** Test that the move stack grows and reused entries are reset. */
+    public void testManyMoves()
+    {
+        Board board = new Board(9);
+        for (int i = 0; i < 1000; ++i)
+            board.play(i % 2 == 0 ? BLACK : WHITE, null);
+        assertEquals(1000, board.getNumberMoves());
+        board.undo(1000);
+        board.play(BLACK, GoPoint.get(0, 1));
+        board.play(WHITE, GoPoint.get(0, 0));
+        board.play(BLACK, GoPoint.get(1, 0));
+        assertEquals(1, board.getKilled().size());
+        board.undo(3);
+        board.play(BLACK, GoPoint.get(0, 1));
+        board.play(WHITE, GoPoint.get(0, 0));
+        board.play(BLACK, GoPoint.get(2, 0));
+        assertTrue(board.getKilled().isEmpty());
+        assertEquals(0, board.getCaptured(WHITE));
+    }
+
     /** Test that playing on a occupied field does not fail.
         Board.play spciefies that a play never fails.
         Also tests that the old stone is correctly restored. */
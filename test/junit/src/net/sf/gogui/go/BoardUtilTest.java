@@ -0,0 +1,55 @@
+// BoardUtilTest.java
+
+package net.sf.gogui.go;
+
+import static net.sf.gogui.go.GoColor.BLACK;
+import static net.sf.gogui.go.GoColor.WHITE;
+
+public final class BoardUtilTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(BoardUtilTest.class);
+    }
+
+    public void testCanonicalKey()
+    {
+        Board board = new Board(9);
+        board.play(BLACK, GoPoint.get(2, 3));
+        board.play(WHITE, GoPoint.get(6, 6));
+        long key = BoardUtil.canonicalKey(board);
+        for (int i = 0; i < BoardUtil.NUMBER_ROTATIONS; ++i)
+        {
+            Board rotated = new Board(9);
+            rotated.play(BLACK, BoardUtil.rotate(i, GoPoint.get(2, 3), 9));
+            rotated.play(WHITE, BoardUtil.rotate(i, GoPoint.get(6, 6), 9));
+            assertEquals(key, BoardUtil.canonicalKey(rotated));
+        }
+        board.undo();
+        board.play(WHITE, GoPoint.get(6, 5));
+        assertFalse(key == BoardUtil.canonicalKey(board));
+    }
+
+    public void testRotate()
+    {
+        GoPoint p = GoPoint.get(1, 2);
+        assertSame(GoPoint.get(1, 2), BoardUtil.rotate(0, p, 9));
+        assertSame(GoPoint.get(7, 2), BoardUtil.rotate(1, p, 9));
+        assertSame(GoPoint.get(1, 6), BoardUtil.rotate(2, p, 9));
+        assertSame(GoPoint.get(2, 1), BoardUtil.rotate(3, p, 9));
+        assertSame(GoPoint.get(6, 1), BoardUtil.rotate(4, p, 9));
+        assertSame(GoPoint.get(2, 7), BoardUtil.rotate(5, p, 9));
+        assertSame(GoPoint.get(7, 6), BoardUtil.rotate(6, p, 9));
+        assertSame(GoPoint.get(6, 7), BoardUtil.rotate(7, p, 9));
+        assertNull(BoardUtil.rotate(3, null, 9));
+        int[][] table = BoardUtil.getRotationTable(9);
+        assertSame(table, BoardUtil.getRotationTable(9));
+        assertEquals(-1, table[0][GoPoint.get(9, 0).getIndex()]);
+    }
+}
@@ -0,0 +1,58 @@
+// IntPointListTest.java
+
+package net.sf.gogui.go;
+
+public final class IntPointListTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(IntPointListTest.class);
+    }
+
+    public void testBasics()
+    {
+        IntPointList list = new IntPointList();
+        assertTrue(list.isEmpty());
+        GoPoint p1 = GoPoint.get(0, 0);
+        GoPoint p2 = GoPoint.get(5, 5);
+        GoPoint p3 = GoPoint.get(24, 24);
+        assertTrue(list.add(p1));
+        assertTrue(list.add(p2));
+        assertFalse(list.add(p1));
+        assertTrue(list.add(p3));
+        assertEquals(3, list.size());
+        assertTrue(list.contains(p2));
+        assertTrue(list.remove(p1));
+        assertFalse(list.remove(p1));
+        assertFalse(list.contains(p1));
+        assertEquals(2, list.size());
+        // Last point was moved to the position of the removed point
+        assertSame(p3, list.getPoint(0));
+        assertSame(p2, list.getPoint(1));
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertFalse(list.contains(p2));
+        assertFalse(list.contains(p3));
+    }
+
+    public void testConvert()
+    {
+        PointList points = new PointList();
+        points.add(GoPoint.get(1, 2));
+        points.add(GoPoint.get(3, 4));
+        points.add(GoPoint.get(1, 2));
+        IntPointList list = new IntPointList(points);
+        assertEquals(2, list.size());
+        assertEquals(GoPoint.get(3, 4).getIndex(), list.get(1));
+        PointList converted = list.toPointList();
+        assertEquals(2, converted.size());
+        assertEquals(GoPoint.get(1, 2), converted.get(0));
+        assertEquals("B3 D5", list.toString());
+    }
+}
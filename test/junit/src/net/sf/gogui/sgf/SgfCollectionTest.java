@@ -0,0 +1,113 @@
+// SgfCollectionTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import net.sf.gogui.game.ConstGameInfo;
+import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.StringInfoColor;
+import static net.sf.gogui.go.GoColor.WHITE;
+import net.sf.gogui.go.Move;
+
+public final class SgfCollectionTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfCollectionTest.class);
+    }
+
+    public void testCollection() throws Exception
+    {
+        File file = File.createTempFile("gogui", ".sgf");
+        file.deleteOnExit();
+        File indexFile = SgfCollection.getIndexFile(file);
+        indexFile.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        out.write("(;GM[1]PB[A]RE[B+R];B[aa](;W[bb])(;W[cc]))\n"
+                  .getBytes("ISO-8859-1"));
+        out.write("(;SZ[9]PB[a\\]\tb]C[x(y];W[aa])\n"
+                  .getBytes("ISO-8859-1"));
+        out.write("(;CA[UTF-8]PW[\u00e4];B[ab])".getBytes("UTF-8"));
+        out.close();
+        for (int i = 0; i < 2; ++i)
+        {
+            // Second iteration uses the index file
+            SgfCollection collection = new SgfCollection(file, indexFile);
+            assertTrue(indexFile.exists());
+            assertEquals(3, collection.getNumberGames());
+            assertEquals("A", collection.getHeader(0, "PB"));
+            assertEquals("B+R", collection.getHeader(0, "RE"));
+            assertNull(collection.getHeader(0, "PW"));
+            assertEquals("a]\tb", collection.getHeader(1, "PB"));
+            assertEquals("9", collection.getHeader(1, "SZ"));
+            assertEquals("\u00e4", collection.getHeader(2, "PW"));
+            SgfReader reader = collection.readGame(1);
+            assertNull(reader.getWarnings());
+            ConstGameTree tree = reader.getTree();
+            assertEquals(9, tree.getBoardSize());
+            assertEquals(Move.get(WHITE, 0, 8),
+                         tree.getRootConst().getChildConst().getMove());
+            tree = collection.readGame(2).getTree();
+            ConstGameInfo info = tree.getGameInfoConst(tree.getRootConst());
+            assertEquals("\u00e4", info.get(StringInfoColor.NAME, WHITE));
+        }
+        indexFile.delete();
+        file.delete();
+    }
+
+    public void testNoIndexFile() throws Exception
+    {
+        File file = File.createTempFile("gogui", ".sgf");
+        file.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        out.write("(;PB[A];B[aa])(;PB[B];W[bb])".getBytes("ISO-8859-1"));
+        out.close();
+        SgfCollection collection = new SgfCollection(file);
+        assertFalse(SgfCollection.getIndexFile(file).exists());
+        assertEquals(2, collection.getNumberGames());
+        assertEquals("B", collection.getHeader(1, "PB"));
+        file.delete();
+    }
+
+    /** Test a game in Shift_JIS with characters that contain the byte of
+        the backslash, which must not be handled as an escape character. */
+    public void testShiftJis() throws Exception
+    {
+        File file = File.createTempFile("gogui", ".sgf");
+        file.deleteOnExit();
+        File indexFile = SgfCollection.getIndexFile(file);
+        indexFile.deleteOnExit();
+        OutputStream out = new FileOutputStream(file);
+        // The second byte of U+8868 and U+30BD in Shift_JIS is 0x5C
+        out.write("(;CA[Shift_JIS]PB[\u8868];B[aa]C[\u30bd](;W[bb])(;W[cc]))\n"
+                  .getBytes("Shift_JIS"));
+        out.write("(;PB[X];W[dd])".getBytes("ISO-8859-1"));
+        out.close();
+        for (int i = 0; i < 2; ++i)
+        {
+            // Second iteration uses the index file
+            SgfCollection collection = new SgfCollection(file, indexFile);
+            assertEquals(2, collection.getNumberGames());
+            assertEquals("\u8868", collection.getHeader(0, "PB"));
+            assertEquals("X", collection.getHeader(1, "PB"));
+            ConstGameTree tree = collection.readGame(0).getTree();
+            ConstNode node = tree.getRootConst().getChildConst();
+            assertEquals("\u30bd", node.getComment());
+            assertEquals(2, node.getNumberChildren());
+            tree = collection.readGame(1).getTree();
+            assertEquals(Move.get(WHITE, 3, 15),
+                         tree.getRootConst().getChildConst().getMove());
+        }
+        indexFile.delete();
+        file.delete();
+    }
+}
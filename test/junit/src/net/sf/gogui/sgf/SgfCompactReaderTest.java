@@ -0,0 +1,112 @@
+// SgfCompactReaderTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import net.sf.gogui.game.CompactGameTree;
+import net.sf.gogui.game.ConstGameTree;
+import net.sf.gogui.game.ConstNode;
+import net.sf.gogui.game.MarkType;
+import net.sf.gogui.go.ConstPointList;
+import net.sf.gogui.go.GoColor;
+import net.sf.gogui.go.GoPoint;
+
+public final class SgfCompactReaderTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfCompactReaderTest.class);
+    }
+
+    /** Test that the tree is the same as the tree read with SgfReader. */
+    public void testSameAsSgfReader() throws Exception
+    {
+        String name = "ff4_ex.1.sgf";
+        ConstGameTree tree =
+            new SgfReader(getStream(name), null, null, 0).getTree();
+        CompactGameTree compact =
+            new SgfCompactReader(getStream(name)).getTree();
+        assertEquals(tree.getBoardSize(), compact.getBoardSize());
+        assertEquals(tree.getGameInfoConst(tree.getRootConst()).getKomi(),
+                     compact.getGameInfoConst(compact.getRootConst())
+                     .getKomi());
+        checkSameNode(tree.getRootConst(), compact.getRootConst());
+    }
+
+    /** Test that the fixes of SgfReader are applied.
+        The player to move in the root node with setup stones is set from
+        the moves of its children. */
+    public void testFixes() throws Exception
+    {
+        InputStream in = new ByteArrayInputStream(
+            "(;SZ[9]AB[cc](;B[ee])(;B[dd]))".getBytes("US-ASCII"));
+        CompactGameTree tree = new SgfCompactReader(in).getTree();
+        assertEquals(9, tree.getBoardSize());
+        ConstNode root = tree.getRootConst();
+        assertEquals(GoColor.BLACK, root.getPlayer());
+        assertEquals(2, root.getNumberChildren());
+        assertEquals(GoPoint.get(3, 5),
+                     root.getChildConst(1).getMove().getPoint());
+    }
+
+    public void testInvalid() throws Exception
+    {
+        InputStream in = new ByteArrayInputStream(
+            "(;SZ[9];B[ee".getBytes("US-ASCII"));
+        try
+        {
+            new SgfCompactReader(in);
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+    }
+
+    private static void checkSameList(ConstPointList list1,
+                                      ConstPointList list2)
+    {
+        if (list1 == null || list2 == null)
+        {
+            assertTrue(list1 == null || list1.isEmpty());
+            assertTrue(list2 == null || list2.isEmpty());
+            return;
+        }
+        assertEquals(list1.size(), list2.size());
+        for (GoPoint p : list1)
+            assertTrue(list2.contains(p));
+    }
+
+    private static void checkSameNode(ConstNode node1, ConstNode node2)
+    {
+        assertEquals(node1.getMove(), node2.getMove());
+        assertEquals(node1.getPlayer(), node2.getPlayer());
+        assertEquals(node1.getComment(), node2.getComment());
+        assertEquals(node1.getLabelsUnmodifiable(),
+                     node2.getLabelsUnmodifiable());
+        assertEquals(node1.hasSetup(), node2.hasSetup());
+        for (GoColor c : GoColor.BLACK_WHITE_EMPTY)
+            checkSameList(node1.getSetup(c), node2.getSetup(c));
+        for (MarkType type : MarkType.values())
+            checkSameList(node1.getMarkedConst(type),
+                          node2.getMarkedConst(type));
+        assertEquals(node1.getNumberChildren(), node2.getNumberChildren());
+        for (int i = 0; i < node1.getNumberChildren(); ++i)
+            checkSameNode(node1.getChildConst(i), node2.getChildConst(i));
+    }
+
+    private InputStream getStream(String name) throws Exception
+    {
+        InputStream in = getClass().getResourceAsStream(name);
+        if (in == null)
+            throw new Exception("Resource " + name + " not found");
+        return in;
+    }
+}
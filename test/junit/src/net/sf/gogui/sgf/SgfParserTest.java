@@ -0,0 +1,129 @@
+// SgfParserTest.java
+
+package net.sf.gogui.sgf;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Map;
+
+public final class SgfParserTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(SgfParserTest.class);
+    }
+
+    public void testCharset() throws Exception
+    {
+        byte[] bytes =
+            "(;CA[UTF-8]PB[\u00e4];C[\u00f6])".getBytes("UTF-8");
+        assertEquals("( PB=\u00e4 C=\u00f6 )", parse(bytes, -1));
+    }
+
+    public void testEvents() throws Exception
+    {
+        assertEquals("( B=aa,W=bb { B=cc } { W=dd { B=ee } } ) ( C=x )",
+                     parse("(;B[aa]W[bb](;B[cc])(;W[dd](;B[ee])))\n(;C[x])",
+                           -1));
+    }
+
+    public void testGameNotClosed() throws Exception
+    {
+        assertEquals("( B=aa { W=bb } )", parse("(;B[aa](;W[bb]", -1));
+        assertNotNull(m_parser.getWarnings());
+    }
+
+    public void testInvalid() throws Exception
+    {
+        try
+        {
+            parse("(;B[aa]\n\nx)", -1);
+            fail();
+        }
+        catch (SgfError e)
+        {
+            assertEquals("3: Property \"X\" has no value", e.getMessage());
+        }
+        try
+        {
+            parse("foo", -1);
+            fail();
+        }
+        catch (SgfError e)
+        {
+        }
+    }
+
+    /** Test stopping the parser at the end of the main variation. */
+    public void testStop() throws Exception
+    {
+        assertEquals("( B=aa { W=bb }",
+                     parse("(;B[aa](;W[bb])(;W[cc]))", 1));
+    }
+
+    private SgfParser m_parser;
+
+    /** Parse and create a string representation of the events.
+        @param stopAt Number of endVariation() events before stopping the
+        parser or -1. */
+    private String parse(String text, int stopAt) throws Exception
+    {
+        return parse(text.getBytes("ISO-8859-1"), stopAt);
+    }
+
+    private String parse(byte[] bytes, final int stopAt) throws Exception
+    {
+        final StringBuilder buffer = new StringBuilder();
+        m_parser = new SgfParser(new SgfHandler() {
+                public void startGame()
+                {
+                    buffer.append(" (");
+                }
+
+                public void startVariation()
+                {
+                    buffer.append(" {");
+                }
+
+                public void node(Map<String,ArrayList<String>> properties)
+                {
+                    buffer.append(' ');
+                    boolean isFirst = true;
+                    for (Map.Entry<String,ArrayList<String>> entry
+                             : properties.entrySet())
+                    {
+                        if (entry.getKey().equals("CA"))
+                            continue;
+                        if (! isFirst)
+                            buffer.append(',');
+                        buffer.append(entry.getKey());
+                        buffer.append('=');
+                        buffer.append(entry.getValue().get(0));
+                        isFirst = false;
+                    }
+                }
+
+                public void endVariation()
+                {
+                    buffer.append(" }");
+                    if (++m_numberEndVariation == stopAt)
+                        m_parser.stop();
+                }
+
+                public void endGame()
+                {
+                    buffer.append(" )");
+                }
+
+                private int m_numberEndVariation;
+            });
+        m_parser.parse(new ByteArrayInputStream(bytes));
+        return buffer.toString().trim();
+    }
+}
@@ -44,6 +44,21 @@ public final class SgfReaderTest
         readSgfFileString("(;C[foo]C[bar])", false, true);
     }
 
+    /** Test that error messages contain the correct line number, also if
+        property values contain line breaks. */
+    public void testErrorLineNumber() throws Exception
+    {
+        try
+        {
+            getReaderString("(;C[a\nb\r\nc\rd]\n;B[zz])");
+            fail("Reading should result in a failure");
+        }
+        catch (SgfError e)
+        {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("5: "));
+        }
+    }
+
     public void testFF4Example() throws Exception
     {
         SgfReader reader = getReader("ff4_ex.1.sgf");
@@ -110,6 +125,20 @@ public final class SgfReaderTest
         assertEquals("foo", getSgfPropertyValue(tree.getRootConst(), "XY"));
     }
 
+    /** Test property identifiers with lower case letters and digits. */
+    public void testPropertyNames() throws Exception
+    {
+        ConstGameTree tree =
+            readSgfFileString("(;sz[9]AddBlack[aa]XX2[foo];b[bb]BB[x])");
+        ConstNode root = tree.getRootConst();
+        assertEquals(9, tree.getBoardSize());
+        assertEquals(1, root.getSetup(BLACK).size());
+        assertEquals("foo", getSgfPropertyValue(root, "XX2"));
+        ConstNode node = root.getChildConst();
+        assertEquals(Move.get(BLACK, 1, 7), node.getMove());
+        assertEquals("x", getSgfPropertyValue(node, "BB"));
+    }
+
     public void testRead() throws Exception
     {
         readSgfFile("verbose-property-names.sgf", false, false);
@@ -0,0 +1,76 @@
+// MappedFileInputStreamTest.java
+
+package net.sf.gogui.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+public final class MappedFileInputStreamTest
+    extends junit.framework.TestCase
+{
+    public static void main(String args[])
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+
+    public static junit.framework.Test suite()
+    {
+        return new junit.framework.TestSuite(MappedFileInputStreamTest.class);
+    }
+
+    public void testRead() throws IOException
+    {
+        byte[] data = new byte[1000];
+        for (int i = 0; i < data.length; ++i)
+            data[i] = (byte)i;
+        File file = File.createTempFile("gogui", null);
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(data);
+        out.close();
+        MappedFileInputStream in = new MappedFileInputStream(file);
+        assertEquals(1000, in.getSize());
+        assertEquals(0, in.getPosition());
+        assertEquals(0, in.read());
+        assertEquals(1, in.getPosition());
+        byte[] buffer = new byte[500];
+        assertEquals(500, in.read(buffer, 0, 500));
+        assertEquals(data[500], buffer[499]);
+        assertEquals(100, in.skip(100));
+        assertEquals(601, in.getPosition());
+        assertEquals(399, in.available());
+        assertEquals(399, in.read(buffer));
+        assertEquals(data[999], buffer[398]);
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read(buffer));
+        in.close();
+        file.delete();
+    }
+
+    public void testEmptyFile() throws IOException
+    {
+        File file = File.createTempFile("gogui", null);
+        file.deleteOnExit();
+        MappedFileInputStream in = new MappedFileInputStream(file);
+        assertEquals(0, in.getSize());
+        assertEquals(-1, in.read());
+        in.close();
+        file.delete();
+    }
+
+    /** Test that errors are reported in the constructor, such that
+        callers can fall back to a FileInputStream. */
+    public void testNotFound()
+    {
+        File file = new File("gogui-test-nonexistent-file");
+        try
+        {
+            new MappedFileInputStream(file);
+            fail();
+        }
+        catch (IOException e)
+        {
+        }
+    }
+}